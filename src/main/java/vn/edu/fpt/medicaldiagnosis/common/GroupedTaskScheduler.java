@@ -0,0 +1,248 @@
+package vn.edu.fpt.medicaldiagnosis.common;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * TaskScheduler chạy các job @Scheduled trên thread pool riêng theo nhóm ({@link JobGroup}).
+ *
+ * - Thread của scheduler chỉ dùng để kích hoạt đúng giờ rồi chuyển job sang pool của nhóm, nên một job chậm
+ *   (ví dụ DB tenant treo) chỉ chiếm thread của nhóm mình, không làm trễ phân phòng hay các nhóm khác.
+ * - fixedDelay: lượt kế tiếp được hẹn sau khi lượt trước kết thúc (giữ nguyên ngữ nghĩa của Spring).
+ * - fixedRate / cron: nếu lượt trước chưa xong thì bỏ qua lượt này (skip-if-running) thay vì chồng lượt.
+ *
+ * Metrics:
+ * - scheduler.job.duration{group,job} : thời gian chạy.
+ * - scheduler.job.lag{group,job}      : độ trễ từ lúc đến hạn tới lúc bắt đầu chạy (chờ thread của nhóm).
+ * - scheduler.job.skipped{group,job}  : số lượt bị bỏ qua vì lượt trước chưa xong.
+ */
+@Slf4j
+public class GroupedTaskScheduler extends ThreadPoolTaskScheduler {
+
+    private static final String DEFAULT_GROUP = "default";
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ExecutorService> groupPools = new ConcurrentHashMap<>();
+
+    public GroupedTaskScheduler(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+        GroupedJob job = new GroupedJob(task);
+        return super.schedule(job::fire, trigger);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Duration period) {
+        GroupedJob job = new GroupedJob(task);
+        return super.scheduleAtFixedRate(job::fire, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Instant startTime, Duration period) {
+        GroupedJob job = new GroupedJob(task);
+        return super.scheduleAtFixedRate(job::fire, startTime, period);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Duration delay) {
+        return scheduleWithFixedDelay(task, Instant.now().plus(delay), delay);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Instant startTime, Duration delay) {
+        FixedDelayHandle handle = new FixedDelayHandle(new GroupedJob(task), delay);
+        handle.scheduleAt(startTime);
+        return handle;
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        groupPools.values().forEach(ExecutorService::shutdownNow);
+    }
+
+    private ExecutorService pool(String group) {
+        return groupPools.computeIfAbsent(group, g -> {
+            int threads = environment.getProperty("scheduler.groups." + g + ".threads", Integer.class, 1);
+            return Executors.newFixedThreadPool(Math.max(1, threads),
+                    Thread.ofPlatform().name("job-" + g + "-", 0).daemon(true).factory());
+        });
+    }
+
+    /**
+     * Một phương thức @Scheduled: xác định nhóm, chạy trên pool của nhóm, đo lag/duration.
+     */
+    private final class GroupedJob {
+        private final Runnable task;
+        private final String group;
+        private final String name;
+        private final AtomicBoolean running = new AtomicBoolean(false);
+        private final Timer duration;
+        private final Timer lag;
+        private final Counter skipped;
+
+        GroupedJob(Runnable task) {
+            this.task = task;
+            if (task instanceof ScheduledMethodRunnable smr) {
+                Class<?> type = ClassUtils.getUserClass(smr.getTarget());
+                JobGroup annotation = AnnotatedElementUtils.findMergedAnnotation(smr.getMethod(), JobGroup.class);
+                if (annotation == null) {
+                    annotation = AnnotatedElementUtils.findMergedAnnotation(type, JobGroup.class);
+                }
+                this.group = annotation != null ? annotation.value() : DEFAULT_GROUP;
+                this.name = type.getSimpleName() + "." + smr.getMethod().getName();
+            } else {
+                this.group = DEFAULT_GROUP;
+                this.name = task.toString();
+            }
+            this.duration = Timer.builder("scheduler.job.duration")
+                    .description("Thời gian chạy job định kỳ")
+                    .tag("group", group).tag("job", name)
+                    .register(meterRegistry);
+            this.lag = Timer.builder("scheduler.job.lag")
+                    .description("Độ trễ từ lúc job đến hạn tới lúc bắt đầu chạy")
+                    .tag("group", group).tag("job", name)
+                    .register(meterRegistry);
+            this.skipped = Counter.builder("scheduler.job.skipped")
+                    .description("Số lượt job bị bỏ qua vì lượt trước chưa xong")
+                    .tag("group", group).tag("job", name)
+                    .register(meterRegistry);
+        }
+
+        /**
+         * Gọi từ thread của scheduler khi đến hạn (fixedRate / cron): chuyển sang pool của nhóm, không chờ.
+         */
+        void fire() {
+            if (!running.compareAndSet(false, true)) {
+                skipped.increment();
+                log.warn("Job {} vẫn đang chạy, bỏ qua lượt này", name);
+                return;
+            }
+            long due = System.nanoTime();
+            try {
+                pool(group).execute(() -> runOnce(due, null));
+            } catch (RejectedExecutionException e) {
+                running.set(false);
+            }
+        }
+
+        void runOnce(long dueNanos, Runnable onDone) {
+            long start = System.nanoTime();
+            lag.record(Math.max(0, start - dueNanos), TimeUnit.NANOSECONDS);
+            try {
+                task.run();
+            } catch (Throwable ex) {
+                log.error("Job {} lỗi: {}", name, ex.getMessage(), ex);
+            } finally {
+                duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                running.set(false);
+                if (onDone != null) onDone.run();
+            }
+        }
+    }
+
+    /**
+     * fixedDelay: mỗi lượt tự hẹn lượt kế tiếp sau khi kết thúc trên pool của nhóm.
+     */
+    private final class FixedDelayHandle implements ScheduledFuture<Object> {
+        private final GroupedJob job;
+        private final Duration delay;
+        private volatile ScheduledFuture<?> current;
+        private volatile boolean cancelled;
+        // Tác vụ định kỳ chỉ kết thúc khi bị huỷ → get() chờ tới lúc đó
+        private final CountDownLatch cancellation = new CountDownLatch(1);
+
+        FixedDelayHandle(GroupedJob job, Duration delay) {
+            this.job = job;
+            this.delay = delay;
+        }
+
+        void scheduleAt(Instant time) {
+            if (cancelled) return;
+            long due = System.nanoTime() + Math.max(0, Duration.between(Instant.now(), time).toNanos());
+            try {
+                current = GroupedTaskScheduler.super.schedule(() -> dispatch(due), time);
+            } catch (RejectedExecutionException e) {
+                // scheduler đang tắt
+            }
+        }
+
+        private void dispatch(long due) {
+            if (cancelled) return;
+            job.running.set(true);
+            try {
+                pool(job.group).execute(() -> job.runOnce(due, () -> scheduleAt(Instant.now().plus(delay))));
+            } catch (RejectedExecutionException e) {
+                job.running.set(false);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (cancelled) return false;
+            cancelled = true;
+            cancellation.countDown();
+            // Lượt kế tiếp có thể đã được đẩy sang pool của nhóm → current đã xong, nhưng scheduleAt sẽ không lập lịch lại
+            ScheduledFuture<?> f = current;
+            if (f != null) f.cancel(mayInterruptIfRunning);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            ScheduledFuture<?> f = current;
+            return f == null ? 0 : f.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        /**
+         * Như ScheduledFuture của tác vụ định kỳ: chờ đến khi bị huỷ rồi ném CancellationException.
+         */
+        @Override
+        public Object get() throws InterruptedException {
+            cancellation.await();
+            throw new CancellationException();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            if (!cancellation.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            throw new CancellationException();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package vn.edu.fpt.medicaldiagnosis.common;
+
+import java.lang.annotation.*;
+
+/**
+ * Nhóm thread chạy các phương thức @Scheduled của class/phương thức được đánh dấu.
+ * Số thread của mỗi nhóm cấu hình tại scheduler.groups.&lt;tên nhóm&gt;.threads; không đánh dấu → nhóm "default".
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface JobGroup {
+
+    String QUEUE = "queue";
+    String TENANT_SYNC = "tenant-sync";
+    String DATASOURCE = "datasource";
+    String EMAIL = "email";
+    String DAILY = "daily";
+
+    String value();
+}
@@ -1,15 +1,27 @@
 package vn.edu.fpt.medicaldiagnosis.common;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.TaskScheduler;
-import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
 
 @Configuration
 public class SchedulerConfig {
+
+    /**
+     * Scheduler dùng thread pool riêng: thread "scheduler-" chỉ kích hoạt job, job chạy trên pool theo nhóm (@JobGroup).
+     */
     @Bean
-    public TaskScheduler taskScheduler() {
-        return new ConcurrentTaskScheduler(); // hoặc ThreadPoolTaskScheduler
+    public TaskScheduler taskScheduler(Environment environment,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${scheduler.trigger-threads:2}") int triggerThreads) {
+        GroupedTaskScheduler scheduler = new GroupedTaskScheduler(environment, meterRegistry);
+        scheduler.setPoolSize(Math.max(1, triggerThreads));
+        scheduler.setThreadNamePrefix("scheduler-");
+        scheduler.setDaemon(true);
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        return scheduler;
     }
 }
-
@@ -18,4 +18,19 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Thread pool ghi sự kiện SSE cho màn hình hàng đợi.
+     * Kết nối SSE không giữ thread; pool chỉ dùng khi có dữ liệu cần ghi, mỗi client tối đa 1 task tại một thời điểm.
+     */
+    @Bean("queueStreamExecutor")
+    public TaskExecutor queueStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(10000);   // tối đa 1 task/client nhờ cơ chế gom tín hiệu
+        executor.setThreadNamePrefix("QueueStream-");
+        executor.initialize();
+        return executor;
+    }
 }
@@ -1,5 +1,9 @@
 package vn.edu.fpt.medicaldiagnosis.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.annotation.Bean;
@@ -19,13 +23,28 @@ public class ControlDataSourceConfig {
     @Value("${spring.datasource.control.password}")
     private String password;
 
+    /**
+     * Pool DB control. Cũng dùng cho các lệnh quản trị cấp server (CREATE/DROP DATABASE, CREATE USER)
+     * vì dùng chung host và tài khoản root → không mở connection DriverManager riêng cho mỗi lệnh.
+     */
     @Bean("controlDataSource")
-    public DataSource controlDataSource() {
-        return DataSourceBuilder.create()
+    public DataSource controlDataSource(MeterRegistry meterRegistry) {
+        HikariDataSource ds = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
                 .url(url)
                 .username(username)
                 .password(password)
                 .driverClassName("com.mysql.cj.jdbc.Driver")
                 .build();
+        ds.setPoolName("ControlPool");
+
+        Counter opened = TenantPoolManager.connectionsOpened(meterRegistry, "ControlPool");
+        ds.setMetricsTrackerFactory((poolName, poolStats) -> new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                opened.increment();
+            }
+        });
+        return ds;
     }
 }
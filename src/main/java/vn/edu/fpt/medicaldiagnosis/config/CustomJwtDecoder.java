@@ -1,53 +1,50 @@
 package vn.edu.fpt.medicaldiagnosis.config;
 
-import java.text.ParseException;
-import java.util.Objects;
+import java.time.Duration;
 import javax.crypto.spec.SecretKeySpec;
 
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.stereotype.Component;
 
-import vn.edu.fpt.medicaldiagnosis.dto.request.IntrospectRequest;
-import vn.edu.fpt.medicaldiagnosis.dto.response.IntrospectResponse;
-import vn.edu.fpt.medicaldiagnosis.service.impl.AuthenticationServiceImpl;
-import com.nimbusds.jose.JOSEException;
-
+/**
+ * Giải mã JWT của mỗi request: một lần parse + kiểm tra chữ ký HS512 + hạn (Nimbus),
+ * sau đó tra jti trong RevokedTokenRegistry (bộ nhớ) thay vì truy vấn invalidated_tokens.
+ */
 @Component
 public class CustomJwtDecoder implements JwtDecoder {
-    @Value("${jwt.signedKey}")
-    private String signerKey;
-
-    @Autowired
-    private AuthenticationServiceImpl authenticationServiceImpl;
 
-    private NimbusJwtDecoder nimbusJwtDecoder = null;
+    private final NimbusJwtDecoder nimbusJwtDecoder;
+    private final RevokedTokenRegistry revokedTokenRegistry;
+
+    public CustomJwtDecoder(@Value("${jwt.signedKey}") String signerKey, RevokedTokenRegistry revokedTokenRegistry) {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
+        this.nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
+                .macAlgorithm(MacAlgorithm.HS512)
+                .build();
+        // Giữ như introspect trước đây: hết hạn là từ chối ngay, không cho lệch giờ 60 giây mặc định
+        this.nimbusJwtDecoder.setJwtValidator(new JwtTimestampValidator(Duration.ZERO));
+        this.revokedTokenRegistry = revokedTokenRegistry;
+    }
 
     @Override
     public Jwt decode(String token) throws JwtException {
-        try {
-            IntrospectResponse response = authenticationServiceImpl.introspect(
-                    IntrospectRequest.builder().token(token).build());
+        Jwt jwt = nimbusJwtDecoder.decode(token);
 
-            if (!response.isValid()) {
-                throw new JwtException("Invalid token");
-            }
-        } catch (JOSEException | ParseException e) {
-            throw new JwtException(e.getMessage());
+        boolean revoked;
+        try {
+            revoked = revokedTokenRegistry.isRevoked(jwt.getId());
+        } catch (RuntimeException e) {
+            throw new JwtException("Cannot check token revocation: " + e.getMessage());
         }
-
-        if (Objects.isNull(nimbusJwtDecoder)) {
-            SecretKeySpec secretKeySpec = new SecretKeySpec(signerKey.getBytes(), "HS512");
-            nimbusJwtDecoder = NimbusJwtDecoder.withSecretKey(secretKeySpec)
-                    .macAlgorithm(MacAlgorithm.HS512)
-                    .build();
+        if (revoked) {
+            throw new JwtException("Invalid token");
         }
-
-        return nimbusJwtDecoder.decode(token);
+        return jwt;
     }
 }
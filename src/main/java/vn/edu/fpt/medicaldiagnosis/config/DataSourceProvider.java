@@ -1,6 +1,9 @@
 package vn.edu.fpt.medicaldiagnosis.config;
 
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
@@ -10,17 +13,52 @@ import vn.edu.fpt.medicaldiagnosis.service.TenantService;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Quản lý connection pool (Hikari) theo tenant.
+ *
+ * - getDataSource: được gọi mỗi lần TenantRoutingDataSource lấy connection → đường nóng chỉ là một lần
+ *   ConcurrentHashMap.get, không khoá, không mở connection thử. Chỉ lần đầu (chưa có pool) mới tạo pool.
+ * - Kiểm tra sức khoẻ chạy nền (ensureDataSource, gọi định kỳ từ TenantDataSourceCleaner): probe connection trên
+ *   thread riêng, pool lỗi bị đánh dấu unhealthy và được tạo lại bất đồng bộ rồi thay thế nguyên tử.
+ * - Kích thước pool do {@link TenantPoolManager} quyết định theo tải và ngân sách connection của DB host.
+ *
+ * Metrics:
+ * - tenant.datasource.pools     : số pool tenant đang mở.
+ * - tenant.datasource.unhealthy : số pool đang bị đánh dấu lỗi (chờ tạo lại).
+ */
 @Slf4j
 @Component
 public class DataSourceProvider {
 
     private final TenantService tenantService;
-    private final Map<String, DataSource> cache = new ConcurrentHashMap<>();
+    private final TenantPoolManager poolManager;
+    private final Map<String, HikariDataSource> cache = new ConcurrentHashMap<>();
+
+    // Tenant có pool lỗi, đang chờ/đang tạo lại
+    private final Set<String> unhealthy = ConcurrentHashMap.newKeySet();
+
+    // Tenant đang được kiểm tra (tránh dồn nhiều lượt kiểm tra cho cùng tenant)
+    private final Set<String> validating = ConcurrentHashMap.newKeySet();
 
-    public DataSourceProvider(@Lazy TenantService tenantService) {
+    private final ExecutorService validator = Executors.newFixedThreadPool(2,
+            Thread.ofPlatform().name("datasource-validator-", 0).daemon(true).factory());
+
+    public DataSourceProvider(@Lazy TenantService tenantService, TenantPoolManager poolManager, MeterRegistry meterRegistry) {
         this.tenantService = tenantService;
+        this.poolManager = poolManager;
+
+        Gauge.builder("tenant.datasource.pools", cache, Map::size)
+                .description("Số connection pool tenant đang mở")
+                .register(meterRegistry);
+        Gauge.builder("tenant.datasource.unhealthy", unhealthy, Set::size)
+                .description("Số connection pool tenant đang lỗi, chờ tạo lại")
+                .register(meterRegistry);
     }
 
     public DataSource getDataSource(String tenantId) {
@@ -29,41 +67,46 @@ public class DataSourceProvider {
             return null;
         }
 
-        return cache.compute(tenantId, (key, existingDs) -> {
-            if (existingDs != null) {
-                try (Connection conn = existingDs.getConnection()) {
-                    return existingDs;
-                } catch (Exception e) {
-                    log.info("Lost connection to tenant '{}'. Reinitializing datasource. Reason: {}", tenantId, e.getMessage());
-                    closeQuietly(existingDs);
-                }
-            }
+        // Đường nóng: không khoá, không probe connection
+        HikariDataSource ds = cache.get(tenantId);
+        if (ds != null) {
+            return ds;
+        }
 
-            try {
-                log.info("Resolving datasource for tenant '{}'", tenantId);
-                Tenant tenant = tenantService.getTenantByCodeActive(tenantId);
+        // Chưa có pool → tạo (chỉ các luồng cùng tenant phải chờ nhau trong computeIfAbsent)
+        return cache.computeIfAbsent(tenantId, this::createDataSource);
+    }
 
-                if (tenant == null || tenant.getDbUrl() == null) {
-                    log.info("Tenant configuration not found or missing DB URL for '{}'", tenantId);
-                    return null;
-                }
+    /**
+     * Tạo và kiểm tra pool mới cho tenant. Trả về null nếu không tạo được (không lưu vào cache).
+     */
+    private HikariDataSource createDataSource(String tenantId) {
+        HikariDataSource newDs = null;
+        try {
+            log.info("Resolving datasource for tenant '{}'", tenantId);
+            Tenant tenant = tenantService.getTenantByCodeActive(tenantId);
+
+            if (tenant == null || tenant.getDbUrl() == null) {
+                log.info("Tenant configuration not found or missing DB URL for '{}'", tenantId);
+                return null;
+            }
 
-                HikariDataSource newDs = buildDataSource(tenant);
+            newDs = buildDataSource(tenant);
 
-                try (Connection conn = newDs.getConnection()) {
-                    log.info("Connected successfully to tenant '{}'", tenantId);
-                }
+            try (Connection conn = newDs.getConnection()) {
+                log.info("Connected successfully to tenant '{}'", tenantId);
+            }
 
-                return newDs;
+            return newDs;
 
-            } catch (Exception e) {
-                log.info("Failed to initialize datasource for tenant '{}'. Reason: {}", tenantId, e.getMessage());
-                return null;
-            }
-        });
+        } catch (Exception e) {
+            log.info("Failed to initialize datasource for tenant '{}'. Reason: {}", tenantId, e.getMessage());
+            closeQuietly(newDs);
+            return null;
+        }
     }
 
-    private HikariDataSource buildDataSource(Tenant tenant) {
+    protected HikariDataSource buildDataSource(Tenant tenant) {
         HikariDataSource ds = new HikariDataSource();
         ds.setJdbcUrl(tenant.getDbUrl());
         ds.setUsername(tenant.getDbUsername());
@@ -71,12 +114,13 @@ public class DataSourceProvider {
         ds.setDriverClassName("com.mysql.cj.jdbc.Driver");
 
         ds.setConnectionTimeout(10000);
-        ds.setMaximumPoolSize(5);
-        ds.setMinimumIdle(1);
         ds.setIdleTimeout(10000);
         ds.setValidationTimeout(2000);
         ds.setPoolName("TenantPool-" + tenant.getCode());
 
+        // Kích thước pool ban đầu + theo dõi tải để TenantPoolManager điều chỉnh
+        poolManager.configure(tenant, ds);
+
         return ds;
     }
 
@@ -92,6 +136,7 @@ public class DataSourceProvider {
     }
 
     public void resetDataSource(String tenantId) {
+        unhealthy.remove(tenantId);
         DataSource ds = cache.remove(tenantId);
         if (ds != null) {
             closeQuietly(ds);
@@ -99,21 +144,67 @@ public class DataSourceProvider {
         }
     }
 
+    /**
+     * Đảm bảo tenant ACTIVE có pool hoạt động. Không chặn luồng gọi:
+     * việc probe và tạo lại pool chạy trên thread validator.
+     */
     public void ensureDataSource(String tenantId) {
-        DataSource ds = cache.get(tenantId);
+        if (!validating.add(tenantId)) return;
+        try {
+            validator.execute(() -> {
+                try {
+                    validate(tenantId);
+                } finally {
+                    validating.remove(tenantId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            validating.remove(tenantId);
+        }
+    }
+
+    public boolean isHealthy(String tenantId) {
+        return cache.containsKey(tenantId) && !unhealthy.contains(tenantId);
+    }
+
+    private void validate(String tenantId) {
+        HikariDataSource ds = cache.get(tenantId);
         if (ds == null) {
             log.info("No datasource found for active tenant '{}'. Recreating...", tenantId);
             getDataSource(tenantId); // tự build lại pool
+            return;
+        }
+
+        try (Connection conn = ds.getConnection()) {
+            // Nếu lấy được connection thì pool vẫn OK
+            unhealthy.remove(tenantId);
+            log.debug("Datasource for tenant '{}' is healthy", tenantId);
+        } catch (Exception e) {
+            unhealthy.add(tenantId);
+            log.info("Datasource for tenant '{}' is broken. Recreating... Reason: {}", tenantId, e.getMessage());
+            rebuild(tenantId, ds);
+        }
+    }
+
+    /**
+     * Tạo pool mới trong khi pool cũ vẫn phục vụ request, chỉ thay khi pool mới kết nối được.
+     */
+    private void rebuild(String tenantId, HikariDataSource broken) {
+        HikariDataSource fresh = createDataSource(tenantId);
+        if (fresh == null) return; // giữ trạng thái unhealthy, thử lại ở lượt kiểm tra sau
+
+        if (cache.replace(tenantId, broken, fresh)) {
+            unhealthy.remove(tenantId);
+            closeQuietly(broken);
+            log.info("Datasource for tenant '{}' rebuilt", tenantId);
         } else {
-            try (Connection conn = ds.getConnection()) {
-                // Nếu lấy được connection thì pool vẫn OK
-                log.debug("Datasource for tenant '{}' is healthy", tenantId);
-            } catch (Exception e) {
-                log.info("Datasource for tenant '{}' is broken. Recreating...", tenantId);
-                resetDataSource(tenantId);
-                getDataSource(tenantId);
-            }
+            // Pool đã bị reset/thay bởi luồng khác trong lúc tạo
+            closeQuietly(fresh);
         }
     }
 
+    @PreDestroy
+    public void shutdown() {
+        validator.shutdownNow();
+    }
 }
@@ -11,24 +11,27 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import vn.edu.fpt.medicaldiagnosis.dto.response.ApiResponse;
-import vn.edu.fpt.medicaldiagnosis.entity.Account;
 import vn.edu.fpt.medicaldiagnosis.exception.ErrorCode;
-import vn.edu.fpt.medicaldiagnosis.repository.AccountRepository;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
+/**
+ * Kiểm tra quyền theo URI/method. Quyền của tài khoản lấy từ PrincipalPermissionCache, tên quyền cần có lấy từ
+ * PermissionRouteTable → đường nóng không truy vấn DB và không dùng regex.
+ */
 @Component
 @Slf4j
 public class PermissionFilter extends OncePerRequestFilter {
 
-    private final AccountRepository accountRepository;
+    private final PrincipalPermissionCache permissionCache;
+    private final PermissionRouteTable routeTable;
     private final ObjectMapper objectMapper;
 
-    public PermissionFilter(AccountRepository accountRepository, ObjectMapper objectMapper) {
-        this.accountRepository = accountRepository;
+    public PermissionFilter(PrincipalPermissionCache permissionCache,
+                            PermissionRouteTable routeTable,
+                            ObjectMapper objectMapper) {
+        this.permissionCache = permissionCache;
+        this.routeTable = routeTable;
         this.objectMapper = objectMapper;
     }
 
@@ -46,47 +49,31 @@ public class PermissionFilter extends OncePerRequestFilter {
         }
 
         String username = auth.getName();
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username).orElse(null);
+        PrincipalPermissionCache.Principal principal = permissionCache.get(username);
 
-        if (account == null) {
+        if (principal == null) {
             log.info("User '{}' not found in database", username);
             response.setStatus(ErrorCode.UNAUTHORIZED.getStatusCode().value());
             writeErrorResponse(response, ErrorCode.UNAUTHORIZED);
             return;
         }
 
-        boolean isAdminOrSuperAdmin = account.getRoles().stream()
-                .map(role -> role.getName().toUpperCase())
-                .anyMatch(roleName -> roleName.equals("ADMIN") || roleName.equals("SUPER_ADMIN"));
-
-        if (isAdminOrSuperAdmin) {
-            log.info("User '{}' has ADMIN or SUPER_ADMIN role, bypassing permission check.", username);
+        if (principal.admin()) {
+            log.debug("User '{}' has ADMIN or SUPER_ADMIN role, bypassing permission check.", username);
             filterChain.doFilter(request, response);
             return;
         }
 
-        String requiredPermission = resolvePermission(request.getRequestURI(), request.getMethod());
-
-        log.info("Checking permission '{}' for user '{}'", requiredPermission, username);
-
-//        account.getRoles().forEach(role -> log.info("User '{}' has role '{}'", username, role.getName()));
-
-        boolean allowed = account.getRoles().stream()
-                .flatMap(role -> role.getPermissions().stream())
-                .anyMatch(p -> p.getName().equalsIgnoreCase(requiredPermission));
-
-//        account.getRoles().stream()
-//                .flatMap(role -> role.getPermissions().stream())
-//                .forEach(p -> log.info("User '{}' has permission '{}'", username, p.getName()));
+        String requiredPermission = routeTable.resolve(request.getRequestURI(), request.getMethod());
 
-        if (!allowed) {
+        if (!principal.allows(requiredPermission)) {
             log.warn("User '{}' is missing permission '{}'", username, requiredPermission);
             response.setStatus(ErrorCode.UNAUTHORIZED.getStatusCode().value());
             writeErrorResponse(response, ErrorCode.UNAUTHORIZED);
             return;
         }
 
-        log.info("User '{}' allowed with permission '{}'", username, requiredPermission);
+        log.debug("User '{}' allowed with permission '{}'", username, requiredPermission);
         filterChain.doFilter(request, response);
     }
 
@@ -102,32 +89,4 @@ public class PermissionFilter extends OncePerRequestFilter {
         String json = objectMapper.writeValueAsString(apiResponse);
         response.getWriter().write(json);
     }
-
-    private String resolvePermission(String path, String method) {
-        String[] parts = path.split("/");
-
-        List<String> filtered = Arrays.stream(parts)
-                .filter(p -> !p.isBlank())
-                .filter(p -> !p.matches("[0-9a-fA-F\\-]{36}")) // UUID
-                .filter(p -> !p.matches("\\d+"))               // số
-                .toList();
-
-        String entity = filtered.stream()
-                .skip(1) // bỏ "medical-diagnosis"
-                .findFirst()
-                .map(String::toUpperCase)
-                .orElse("UNKNOWN");
-
-        String action = switch (method.toUpperCase()) {
-            case "GET" -> "READ";
-            case "POST" -> "CREATE";
-            case "PUT", "PATCH" -> "UPDATE";
-            case "DELETE" -> "DELETE";
-            default -> "UNKNOWN";
-        };
-
-        return entity + ":" + action;
-    }
-
-
 }
@@ -0,0 +1,97 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ánh xạ (URI, method) → tên quyền cần có, ví dụ GET /medical-diagnosis/patients/{id} → PATIENTS:READ.
+ *
+ * - Duyệt URI theo ký tự, bỏ các đoạn là UUID hoặc số, không dùng split/regex.
+ * - Tên quyền của mỗi entity (4 action) được dựng sẵn một lần và dùng lại; bảng giới hạn MAX_ENTITIES
+ *   để URI rác không làm phình bộ nhớ (vượt ngưỡng thì tính trực tiếp, không lưu).
+ */
+@Component
+public class PermissionRouteTable {
+
+    static final String UNKNOWN = "UNKNOWN";
+
+    private static final int MAX_ENTITIES = 1024;
+
+    private static final int READ = 0;
+    private static final int CREATE = 1;
+    private static final int UPDATE = 2;
+    private static final int DELETE = 3;
+    private static final int OTHER = 4;
+
+    private static final String[] ACTIONS = {"READ", "CREATE", "UPDATE", "DELETE", UNKNOWN};
+
+    private final Map<String, String[]> byEntity = new ConcurrentHashMap<>();
+
+    public String resolve(String path, String method) {
+        String entity = entitySegment(path);
+        String[] permissions = byEntity.get(entity);
+        if (permissions == null) {
+            permissions = compile(entity);
+            if (byEntity.size() < MAX_ENTITIES) {
+                byEntity.putIfAbsent(entity, permissions);
+            }
+        }
+        return permissions[action(method)];
+    }
+
+    private static String[] compile(String entity) {
+        String upper = entity.toUpperCase(Locale.ROOT);
+        String[] permissions = new String[ACTIONS.length];
+        for (int i = 0; i < ACTIONS.length; i++) {
+            permissions[i] = upper + ":" + ACTIONS[i];
+        }
+        return permissions;
+    }
+
+    /**
+     * Đoạn thứ hai không phải UUID/số của URI (đoạn đầu là context path "medical-diagnosis").
+     */
+    static String entitySegment(String path) {
+        int seen = 0;
+        int length = path.length();
+        int start = 0;
+        while (start <= length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = length;
+            if (end > start && !isIdOrBlank(path, start, end)) {
+                if (seen == 1) return path.substring(start, end);
+                seen++;
+            }
+            start = end + 1;
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean isIdOrBlank(String path, int start, int end) {
+        boolean blank = true;
+        boolean digits = true;
+        boolean uuidChars = end - start == 36;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (!Character.isWhitespace(c)) blank = false;
+            if (c < '0' || c > '9') digits = false;
+            if (uuidChars && !(c == '-' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                uuidChars = false;
+            }
+        }
+        return blank || digits || uuidChars;
+    }
+
+    private static int action(String method) {
+        return switch (method.toUpperCase(Locale.ROOT)) {
+            case "GET" -> READ;
+            case "POST" -> CREATE;
+            case "PUT", "PATCH" -> UPDATE;
+            case "DELETE" -> DELETE;
+            default -> OTHER;
+        };
+    }
+}
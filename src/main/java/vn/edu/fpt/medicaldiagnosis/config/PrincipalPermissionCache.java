@@ -0,0 +1,150 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.repository.AccountRepository;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Cache quyền đã làm phẳng của tài khoản theo tenant: username → (là ADMIN/SUPER_ADMIN?, tập tên quyền viết hoa).
+ * PermissionFilter chỉ đọc DB ở lần đầu của mỗi tài khoản thay vì mỗi request.
+ *
+ * - Huỷ khi role/quyền/tài khoản thay đổi (RoleServiceImpl, PermissionServiceImpl, AccountServiceImpl, StaffServiceImpl):
+ *   huỷ ngay và huỷ lại sau khi transaction commit, kèm generation để lượt nạp đang chạy dở không ghi đè dữ liệu cũ.
+ * - permission-cache.ttl-ms giới hạn độ trễ khi thay đổi đến từ node khác hoặc ghi trực tiếp vào DB.
+ * - Tài khoản không tồn tại không được cache.
+ *
+ * Metrics: permission.cache.lookups{result=hit|miss}.
+ */
+@Slf4j
+@Component
+public class PrincipalPermissionCache {
+
+    private static final String CONTROL_KEY = "__control__";
+
+    private final AccountRepository accountRepository;
+    private final long ttlMs;
+    private final int maxEntriesPerTenant;
+    private final Counter hits;
+    private final Counter misses;
+
+    private final Map<String, TenantPrincipals> tenants = new ConcurrentHashMap<>();
+
+    public PrincipalPermissionCache(AccountRepository accountRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${permission-cache.ttl-ms:300000}") long ttlMs,
+                                    @Value("${permission-cache.max-entries-per-tenant:5000}") int maxEntriesPerTenant) {
+        this.accountRepository = accountRepository;
+        this.ttlMs = ttlMs;
+        this.maxEntriesPerTenant = maxEntriesPerTenant;
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    /**
+     * Quyền của tài khoản trong tenant hiện tại (TenantContext); null nếu tài khoản không tồn tại.
+     */
+    public Principal get(String username) {
+        TenantPrincipals principals = tenants.computeIfAbsent(tenantKey(), t -> new TenantPrincipals());
+
+        Principal cached = principals.entries.get(username);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt() < ttlMs) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long generation = principals.generation.get();
+        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username).orElse(null);
+        if (account == null) {
+            principals.entries.remove(username);
+            return null;
+        }
+
+        Principal loaded = Principal.of(account);
+        if (principals.generation.get() == generation) {
+            if (principals.entries.size() >= maxEntriesPerTenant) principals.entries.clear();
+            principals.entries.put(username, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Role/quyền của tenant hiện tại thay đổi → bỏ toàn bộ cache của tenant.
+     */
+    public void invalidateTenant() {
+        String tenant = tenantKey();
+        invalidate(tenant);
+        afterCommit(() -> invalidate(tenant));
+    }
+
+    private void invalidate(String tenant) {
+        TenantPrincipals principals = tenants.get(tenant);
+        if (principals == null) return;
+        principals.generation.incrementAndGet();
+        principals.entries.clear();
+        log.debug("Đã huỷ cache quyền của tenant {}", tenant);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private static String tenantKey() {
+        String tenantId = TenantContext.getTenantId();
+        return tenantId == null || tenantId.isBlank() ? CONTROL_KEY : tenantId;
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("permission.cache.lookups")
+                .description("Số lần tra quyền tài khoản trong PermissionFilter")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static final class TenantPrincipals {
+        private final AtomicLong generation = new AtomicLong();
+        private final Map<String, Principal> entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Quyền đã làm phẳng của một tài khoản (bất biến).
+     */
+    public record Principal(boolean admin, Set<String> permissions, long loadedAt) {
+
+        static Principal of(Account account) {
+            boolean admin = account.getRoles().stream()
+                    .map(role -> role.getName().toUpperCase(Locale.ROOT))
+                    .anyMatch(roleName -> roleName.equals("ADMIN") || roleName.equals("SUPER_ADMIN"));
+            Set<String> permissions = account.getRoles().stream()
+                    .filter(role -> role.getPermissions() != null)
+                    .flatMap(role -> role.getPermissions().stream())
+                    .map(p -> p.getName().toUpperCase(Locale.ROOT))
+                    .collect(Collectors.toUnmodifiableSet());
+            return new Principal(admin, permissions, System.currentTimeMillis());
+        }
+
+        public boolean allows(String permission) {
+            return admin || permissions.contains(permission);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.InvalidatedToken;
+import vn.edu.fpt.medicaldiagnosis.repository.InvalidatedTokenRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Danh sách JWT đã thu hồi (logout/refresh) còn hạn, giữ trong bộ nhớ theo tenant,
+ * để CustomJwtDecoder không phải gọi invalidatedTokenRepository.existsById ở mỗi request.
+ *
+ * - Mỗi tenant: bloom filter (loại nhanh jti chưa từng bị thu hồi) + tập chính xác jti → hạn giữ.
+ * - Nạp từ bảng invalidated_tokens ở lần đầu tenant được dùng; logout/refresh trên node này cập nhật ngay (revoke).
+ * - jwt-revocation.refresh-ms: nạp lại định kỳ để thấy token bị thu hồi trên node khác, đồng thời bỏ jti hết hạn
+ *   và dựng lại bloom filter. Tenant không được dùng quá jwt-revocation.idle-ms bị bỏ khỏi bộ nhớ.
+ * - Không nạp được từ DB ở lần đầu → báo lỗi (token bị từ chối như trước đây), không coi là "chưa thu hồi".
+ *
+ * Metrics: jwt.revocation.checks{result=bloom_negative|revoked|false_positive}.
+ */
+@Slf4j
+@Component
+@JobGroup(JobGroup.TENANT_SYNC)
+public class RevokedTokenRegistry {
+
+    private static final String CONTROL_KEY = "__control__";
+
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final long idleMs;
+
+    private final Counter bloomNegatives;
+    private final Counter revokedHits;
+    private final Counter falsePositives;
+
+    private final Map<String, TenantRevocations> tenants = new ConcurrentHashMap<>();
+
+    public RevokedTokenRegistry(InvalidatedTokenRepository invalidatedTokenRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${jwt-revocation.idle-ms:3600000}") long idleMs) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.idleMs = idleMs;
+        this.bloomNegatives = checks(meterRegistry, "bloom_negative");
+        this.revokedHits = checks(meterRegistry, "revoked");
+        this.falsePositives = checks(meterRegistry, "false_positive");
+    }
+
+    /**
+     * jti đã bị thu hồi trong tenant hiện tại (TenantContext) và chưa hết hạn giữ.
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) return false;
+
+        Snapshot snapshot = tenant(tenantKey()).snapshot();
+        if (!snapshot.bloom().mightContain(jti)) {
+            bloomNegatives.increment();
+            return false;
+        }
+
+        Long retainUntil = snapshot.exact().get(jti);
+        if (retainUntil != null && retainUntil > System.currentTimeMillis()) {
+            revokedHits.increment();
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * Ghi nhận jti vừa bị thu hồi (đã lưu vào invalidated_tokens) của tenant hiện tại.
+     */
+    public void revoke(String jti, Date retainUntil) {
+        if (jti == null || retainUntil == null) return;
+
+        TenantRevocations revocations = tenants.get(tenantKey());
+        // Tenant chưa nạp: lần nạp đầu tiên sẽ đọc bản ghi vừa lưu từ DB
+        if (revocations == null) return;
+        revocations.add(jti, retainUntil.getTime());
+    }
+
+    @Scheduled(fixedDelayString = "${jwt-revocation.refresh-ms:30000}")
+    public void refreshAll() {
+        long now = System.currentTimeMillis();
+        tenants.forEach((tenant, revocations) -> {
+            if (now - revocations.lastAccess > idleMs) {
+                tenants.remove(tenant, revocations);
+                return;
+            }
+            if (revocations.current == null) return;
+
+            String previous = TenantContext.getTenantId();
+            try {
+                TenantContext.setTenantId(CONTROL_KEY.equals(tenant) ? null : tenant);
+                revocations.reload(load());
+            } catch (Exception e) {
+                log.warn("Không nạp lại được danh sách token thu hồi của tenant {}: {}", tenant, e.getMessage());
+            } finally {
+                TenantContext.setTenantId(previous);
+            }
+        });
+    }
+
+    private TenantRevocations tenant(String key) {
+        TenantRevocations revocations = tenants.computeIfAbsent(key, k -> new TenantRevocations());
+        revocations.lastAccess = System.currentTimeMillis();
+        if (revocations.current == null) {
+            synchronized (revocations) {
+                if (revocations.current == null) {
+                    revocations.current = Snapshot.of(load());
+                    log.debug("Đã nạp {} token thu hồi của tenant {}", revocations.current.exact().size(), key);
+                }
+            }
+        }
+        return revocations;
+    }
+
+    private List<InvalidatedToken> load() {
+        return invalidatedTokenRepository.findByExpireTimeAfter(new Date());
+    }
+
+    private static String tenantKey() {
+        String tenantId = TenantContext.getTenantId();
+        return tenantId == null || tenantId.isBlank() ? CONTROL_KEY : tenantId;
+    }
+
+    private static Counter checks(MeterRegistry registry, String result) {
+        return Counter.builder("jwt.revocation.checks")
+                .description("Số lần kiểm tra JWT đã bị thu hồi")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static final class TenantRevocations {
+        private volatile Snapshot current;
+        private volatile long lastAccess;
+
+        Snapshot snapshot() {
+            return current;
+        }
+
+        void add(String jti, long retainUntil) {
+            Snapshot target = current;
+            if (target == null) return;
+            target.put(jti, retainUntil);
+            // reload() vừa thay snapshot trong lúc ghi → ghi cả vào snapshot mới
+            Snapshot latest = current;
+            if (latest != target) latest.put(jti, retainUntil);
+        }
+
+        void reload(List<InvalidatedToken> tokens) {
+            Snapshot previous = current;
+            Snapshot next = Snapshot.of(tokens);
+            current = next;
+            // Giữ các jti được revoke trên node này mà lượt đọc DB chưa thấy
+            long now = System.currentTimeMillis();
+            previous.exact().forEach((jti, retainUntil) -> {
+                if (retainUntil > now) next.put(jti, retainUntil);
+            });
+        }
+    }
+
+    private record Snapshot(BloomFilter bloom, Map<String, Long> exact) {
+
+        static Snapshot of(List<InvalidatedToken> tokens) {
+            Snapshot snapshot = new Snapshot(BloomFilter.forExpected(tokens.size() * 2),
+                    new ConcurrentHashMap<>(Math.max(16, tokens.size() * 2)));
+            for (InvalidatedToken token : tokens) {
+                if (token.getId() != null && token.getExpireTime() != null) {
+                    snapshot.put(token.getId(), token.getExpireTime().getTime());
+                }
+            }
+            return snapshot;
+        }
+
+        void put(String jti, long retainUntil) {
+            exact.merge(jti, retainUntil, Math::max);
+            bloom.put(jti);
+        }
+    }
+
+    /**
+     * Bloom filter tối thiểu (tỉ lệ dương tính giả ~1% ở số phần tử dự kiến), an toàn khi ghi đồng thời.
+     * Không hỗ trợ xoá: jti hết hạn chỉ biến mất khi snapshot được dựng lại.
+     */
+    static final class BloomFilter {
+
+        private static final int HASHES = 7;
+        private static final int MIN_EXPECTED = 1024;
+
+        private final AtomicLongArray words;
+        private final long bits;
+
+        private BloomFilter(long bits) {
+            this.words = new AtomicLongArray((int) ((bits + 63) >>> 6));
+            this.bits = (long) words.length() << 6;
+        }
+
+        static BloomFilter forExpected(int expected) {
+            // m = -n ln(p) / (ln 2)^2 với p = 0.01 ≈ 9.6 bit/phần tử
+            return new BloomFilter(Math.max(MIN_EXPECTED, expected) * 10L);
+        }
+
+        void put(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                    if ((current & mask) != 0) break;
+                } while (!words.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1);
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        private static long hash(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h | 1;
+        }
+    }
+}
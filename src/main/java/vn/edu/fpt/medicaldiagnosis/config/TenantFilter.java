@@ -3,15 +3,26 @@ package vn.edu.fpt.medicaldiagnosis.config;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantShardManager;
 
 import java.io.IOException;
 
 @Component
 public class TenantFilter extends OncePerRequestFilter {
 
+    private final TenantShardManager tenantShardManager;
+    private final boolean redirectToOwner;
+
+    public TenantFilter(TenantShardManager tenantShardManager,
+                        @Value("${tenant-shard.redirect-to-owner:false}") boolean redirectToOwner) {
+        this.tenantShardManager = tenantShardManager;
+        this.redirectToOwner = redirectToOwner;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -28,6 +39,21 @@ public class TenantFilter extends OncePerRequestFilter {
 
         if (tenantId != null && !tenantId.isBlank()) {
             TenantContext.setTenantId(tenantId);
+
+            // 3. Gợi ý định tuyến: node sở hữu tenant giữ hàng đợi, room worker và feed polling của tenant
+            TenantShardManager.ClusterNode owner = tenantShardManager.ownerOf(tenantId);
+            response.setHeader("X-Tenant-Node", owner.nodeId());
+            if (owner.address() != null) {
+                response.setHeader("X-Tenant-Node-Address", owner.address());
+                if (redirectToOwner && !tenantShardManager.owns(tenantId)) {
+                    // 307 giữ nguyên method và body khi client gửi lại sang node sở hữu
+                    String query = request.getQueryString();
+                    response.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+                    response.setHeader("Location", owner.address() + request.getRequestURI() + (query != null ? "?" + query : ""));
+                    TenantContext.clear();
+                    return;
+                }
+            }
         }
 
         try {
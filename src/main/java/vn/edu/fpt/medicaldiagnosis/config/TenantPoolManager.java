@@ -0,0 +1,288 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
+import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Điều chỉnh kích thước pool Hikari của từng tenant theo tải thực tế.
+ *
+ * - Mỗi pool gắn một {@link LoadTracker} (metrics tracker của Hikari) để đếm số lần lấy connection,
+ *   tổng thời gian chờ và số lần timeout; kết hợp với HikariPoolMXBean (active, số thread đang chờ).
+ * - Định kỳ (tenant-pool.sample-interval-ms): pool bị nghẽn (timeout, có thread chờ, chờ trung bình vượt ngưỡng)
+ *   được tăng maximumPoolSize; pool dùng dưới một nửa liên tục nhiều chu kỳ được giảm dần.
+ * - Tổng maximumPoolSize của các tenant trên cùng một DB host không vượt quá tenant-pool.budget-per-host:
+ *   các pool co lại trước, phần ngân sách còn lại ưu tiên cho pool nghẽn nặng nhất.
+ * - Giới hạn riêng từng tenant lấy từ bản ghi tenant (db_pool_min_size / db_pool_max_size), null = mặc định.
+ *
+ * Metrics:
+ * - tenant.datasource.pool.max{tenant}              : maximumPoolSize hiện tại.
+ * - tenant.datasource.pool.resize{tenant,direction} : số lần tăng (grow) / giảm (shrink) / bị từ chối do hết ngân sách (denied).
+ * - db.connections.opened{pool}                     : số connection vật lý (TCP + xác thực) được mở.
+ */
+@Slf4j
+@Component
+@JobGroup(JobGroup.DATASOURCE)
+public class TenantPoolManager {
+
+    private final MeterRegistry meterRegistry;
+    private final int defaultMinSize;
+    private final int defaultMaxSize;
+    private final int initialSize;
+    private final int budgetPerHost;
+    private final long growWaitMs;
+    private final int shrinkAfterSamples;
+
+    private final Map<String, PoolState> pools = new ConcurrentHashMap<>();
+
+    public TenantPoolManager(MeterRegistry meterRegistry,
+                             @Value("${tenant-pool.min-size:2}") int defaultMinSize,
+                             @Value("${tenant-pool.max-size:20}") int defaultMaxSize,
+                             @Value("${tenant-pool.initial-size:5}") int initialSize,
+                             @Value("${tenant-pool.budget-per-host:150}") int budgetPerHost,
+                             @Value("${tenant-pool.grow-wait-ms:20}") long growWaitMs,
+                             @Value("${tenant-pool.shrink-after-samples:6}") int shrinkAfterSamples) {
+        this.meterRegistry = meterRegistry;
+        this.defaultMinSize = Math.max(1, defaultMinSize);
+        this.defaultMaxSize = Math.max(this.defaultMinSize, defaultMaxSize);
+        this.initialSize = initialSize;
+        this.budgetPerHost = budgetPerHost;
+        this.growWaitMs = growWaitMs;
+        this.shrinkAfterSamples = Math.max(1, shrinkAfterSamples);
+    }
+
+    /**
+     * Gắn kích thước ban đầu và bộ đếm tải cho pool mới (gọi trước khi pool được khởi động).
+     */
+    public void configure(Tenant tenant, HikariDataSource ds) {
+        int floor = tenant.getDbPoolMinSize() != null ? Math.max(1, tenant.getDbPoolMinSize()) : defaultMinSize;
+        int ceiling = tenant.getDbPoolMaxSize() != null ? Math.max(floor, tenant.getDbPoolMaxSize()) : Math.max(floor, defaultMaxSize);
+        String hostKey = tenant.getDbHost() + ":" + tenant.getDbPort();
+
+        PoolState state = new PoolState(tenant.getCode(), hostKey, floor, ceiling, ds,
+                connectionsOpened(meterRegistry, "TenantPool-" + tenant.getCode()));
+        int remaining = budgetPerHost - usedBudget(hostKey, tenant.getCode());
+        int size = clamp(Math.min(initialSize, remaining), floor, ceiling);
+
+        ds.setMaximumPoolSize(size);
+        ds.setMinimumIdle(Math.min(1, size));
+        ds.setMetricsTrackerFactory((poolName, poolStats) -> state.tracker);
+
+        PoolState previous = pools.put(tenant.getCode(), state);
+        if (previous == null) {
+            registerMeters(tenant.getCode());
+        }
+    }
+
+    /**
+     * Lấy mẫu tải và điều chỉnh kích thước các pool, nhóm theo DB host.
+     */
+    @Scheduled(fixedDelayString = "${tenant-pool.sample-interval-ms:10000}")
+    public void rebalance() {
+        List<Candidate> candidates = new ArrayList<>();
+        for (PoolState state : pools.values()) {
+            if (state.ds.isClosed()) {
+                // Pool đã bị reset/thay thế → bỏ khỏi ngân sách (bản ghi mới nếu có đã ghi đè)
+                pools.remove(state.tenantCode, state);
+                continue;
+            }
+            HikariPoolMXBean pool = state.ds.getHikariPoolMXBean();
+            if (pool == null) continue; // pool chưa khởi động
+
+            Sample sample = state.tracker.drain(state.ds.getMaximumPoolSize(),
+                    pool.getActiveConnections(), pool.getThreadsAwaitingConnection());
+            candidates.add(new Candidate(state, sample, decide(state, sample)));
+        }
+
+        candidates.stream()
+                .collect(Collectors.groupingBy(c -> c.state.hostKey))
+                .values()
+                .forEach(this::allocate);
+    }
+
+    /**
+     * Kích thước mong muốn của một pool dựa trên mẫu tải gần nhất.
+     */
+    int decide(PoolState state, Sample sample) {
+        int current = sample.currentSize;
+        boolean congested = sample.timeouts > 0
+                || sample.awaiting > 0
+                || sample.avgWaitMs() >= growWaitMs;
+
+        if (congested) {
+            state.idleSamples = 0;
+            return clamp(current + Math.max(1, sample.awaiting), state.floor, state.ceiling);
+        }
+
+        if (sample.active * 2 < current) {
+            if (++state.idleSamples >= shrinkAfterSamples) {
+                state.idleSamples = 0;
+                return clamp(current - 1, state.floor, state.ceiling);
+            }
+        } else {
+            state.idleSamples = 0;
+        }
+        return clamp(current, state.floor, state.ceiling);
+    }
+
+    /**
+     * Áp dụng kích thước cho các pool cùng một host trong giới hạn ngân sách:
+     * co lại trước, sau đó chia phần còn lại cho pool nghẽn nặng nhất.
+     */
+    void allocate(List<Candidate> host) {
+        int used = 0;
+        List<Candidate> growing = new ArrayList<>();
+        for (Candidate c : host) {
+            if (c.target > c.sample.currentSize) {
+                used += c.sample.currentSize;
+                growing.add(c);
+            } else {
+                used += c.target;
+                apply(c.state, c.sample.currentSize, c.target);
+            }
+        }
+
+        growing.sort(Comparator.comparingLong((Candidate c) -> c.sample.timeouts)
+                .thenComparingInt(c -> c.sample.awaiting)
+                .reversed());
+
+        for (Candidate c : growing) {
+            int wanted = c.target - c.sample.currentSize;
+            int granted = Math.max(0, Math.min(wanted, budgetPerHost - used));
+            if (granted < wanted) {
+                counter(c.state.tenantCode, "denied").increment();
+                log.info("Pool of tenant '{}' needs {} more connection(s) but host {} budget ({}) is exhausted",
+                        c.state.tenantCode, wanted - granted, c.state.hostKey, budgetPerHost);
+            }
+            used += granted;
+            apply(c.state, c.sample.currentSize, c.sample.currentSize + granted);
+        }
+    }
+
+    private void apply(PoolState state, int current, int size) {
+        if (size == current) return;
+        state.ds.getHikariConfigMXBean().setMaximumPoolSize(size);
+        counter(state.tenantCode, size > current ? "grow" : "shrink").increment();
+        log.info("Resized pool of tenant '{}': {} -> {}", state.tenantCode, current, size);
+    }
+
+    private int usedBudget(String hostKey, String excludeTenant) {
+        return pools.values().stream()
+                .filter(s -> s.hostKey.equals(hostKey) && !s.tenantCode.equals(excludeTenant) && !s.ds.isClosed())
+                .mapToInt(s -> s.ds.getMaximumPoolSize())
+                .sum();
+    }
+
+    private void registerMeters(String tenantCode) {
+        Gauge.builder("tenant.datasource.pool.max", pools, m -> {
+                    PoolState s = m.get(tenantCode);
+                    return s == null || s.ds.isClosed() ? 0 : s.ds.getMaximumPoolSize();
+                })
+                .description("maximumPoolSize hiện tại của pool tenant")
+                .tag("tenant", tenantCode)
+                .register(meterRegistry);
+    }
+
+    private Counter counter(String tenantCode, String direction) {
+        return Counter.builder("tenant.datasource.pool.resize")
+                .description("Số lần điều chỉnh kích thước pool tenant")
+                .tag("tenant", tenantCode)
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Bộ đếm connection vật lý được mở của một pool (dùng chung cho pool tenant và pool control).
+     */
+    public static Counter connectionsOpened(MeterRegistry meterRegistry, String poolName) {
+        return Counter.builder("db.connections.opened")
+                .description("Số connection vật lý được mở tới database")
+                .tag("pool", poolName)
+                .register(meterRegistry);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    static final class PoolState {
+        final String tenantCode;
+        final String hostKey;
+        final int floor;
+        final int ceiling;
+        final HikariDataSource ds;
+        final LoadTracker tracker;
+        int idleSamples; // chỉ truy cập từ luồng rebalance
+
+        PoolState(String tenantCode, String hostKey, int floor, int ceiling, HikariDataSource ds, Counter opened) {
+            this.tenantCode = tenantCode;
+            this.hostKey = hostKey;
+            this.floor = floor;
+            this.ceiling = ceiling;
+            this.ds = ds;
+            this.tracker = new LoadTracker(opened);
+        }
+    }
+
+    record Sample(int currentSize, int active, int awaiting, long acquires, long waitNanos, long timeouts) {
+        long avgWaitMs() {
+            return acquires == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos / acquires);
+        }
+    }
+
+    record Candidate(PoolState state, Sample sample, int target) {
+    }
+
+    /**
+     * Bộ đếm tải do Hikari gọi trên mỗi lần mở connection vật lý / lấy connection / timeout.
+     */
+    static final class LoadTracker implements IMetricsTracker {
+        private final Counter opened;
+        private final LongAdder acquires = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+
+        LoadTracker(Counter opened) {
+            this.opened = opened;
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            opened.increment();
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquires.increment();
+            waitNanos.add(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+
+        Sample drain(int currentSize, int active, int awaiting) {
+            return new Sample(currentSize, active, awaiting,
+                    acquires.sumThenReset(), waitNanos.sumThenReset(), timeouts.sumThenReset());
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package vn.edu.fpt.medicaldiagnosis.config;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 
 import javax.sql.DataSource;
 
+@Slf4j
 public class TenantRoutingDataSource extends AbstractRoutingDataSource {
 
     private final DataSourceProvider provider;
@@ -28,9 +30,9 @@ public class TenantRoutingDataSource extends AbstractRoutingDataSource {
             if (ds != null) {
                 return ds;
             }
-            System.out.println("Datasource unavailable for tenant: " + tenantId + " → using dummy datasource.");
+            log.warn("Datasource unavailable for tenant: {} → using dummy datasource.", tenantId);
         } catch (Exception e) {
-            System.err.println("Exception getting datasource for tenant " + tenantId + ": " + e.getMessage());
+            log.error("Exception getting datasource for tenant {}: {}", tenantId, e.getMessage());
         }
 
         return dummyDataSource;
@@ -39,7 +41,7 @@ public class TenantRoutingDataSource extends AbstractRoutingDataSource {
     @Override
     protected Object determineCurrentLookupKey() {
         String tenantId = TenantContext.getTenantId();
-        System.out.println("Routing for tenantId: " + tenantId);
+        log.trace("Routing for tenantId: {}", tenantId);
         return tenantId;
     }
 }
@@ -1,27 +1,153 @@
 package vn.edu.fpt.medicaldiagnosis.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
-import vn.edu.fpt.medicaldiagnosis.service.impl.TenantServiceImpl;
+import vn.edu.fpt.medicaldiagnosis.service.TenantService;
 
+import javax.sql.DataSource;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+/**
+ * Tạo schema cho DB tenant từ sql/tenant_schema.sql và nâng cấp schema của các DB đã tồn tại.
+ *
+ * tenant_schema.sql chỉ dùng CREATE TABLE IF NOT EXISTS nên cột/index/bảng thêm về sau không tới được DB cũ.
+ * Các thay đổi đó được khai báo thêm trong UPGRADES: mỗi bước kiểm tra information_schema trước khi chạy
+ * (idempotent), được áp dụng sau mỗi lần chạy script và một lượt khi ứng dụng khởi động cho DB control
+ * cùng mọi tenant ACTIVE (schema-upgrade.on-startup).
+ *
+ * Bước sửa dữ liệu chỉ được chạy một lần cho mỗi DB: tên bước được ghi vào bảng schema_upgrades
+ * trong cùng transaction với lệnh sửa.
+ */
+@Slf4j
 @Component
 public class TenantSchemaInitializer {
 
+    private static final List<SchemaUpgrade> UPGRADES = List.of(
+            SchemaUpgrade.column("email_tasks", "next_attempt_at",
+                    "ALTER TABLE email_tasks ADD COLUMN next_attempt_at DATETIME NULL AFTER status"),
+            SchemaUpgrade.index("email_tasks", "idx_email_tasks_claim",
+                    "CREATE INDEX idx_email_tasks_claim ON email_tasks (status, next_attempt_at, created_at)"),
+            SchemaUpgrade.table("queue_order_sequences", """
+                    CREATE TABLE IF NOT EXISTS queue_order_sequences (
+                        queue_id VARCHAR(36) NOT NULL,
+                        room_number VARCHAR(36) NOT NULL,
+                        current_value BIGINT NOT NULL,
+                        PRIMARY KEY (queue_id, room_number)
+                    )"""),
+            SchemaUpgrade.index("invalidated_tokens", "idx_invalidated_tokens_expire",
+                    "CREATE INDEX idx_invalidated_tokens_expire ON invalidated_tokens (expire_time)"),
+            SchemaUpgrade.index("queue_patients", "idx_queue_patients_queue_updated",
+                    "CREATE INDEX idx_queue_patients_queue_updated ON queue_patients (queue_id, updated_at, id)"),
+            SchemaUpgrade.index("accounts", "idx_accounts_updated",
+                    "CREATE INDEX idx_accounts_updated ON accounts (updated_at, id)")
+    );
+
+    private static final String TABLE_EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.tables "
+            + "WHERE table_schema = DATABASE() AND table_name = ?";
+    private static final String COLUMN_EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.columns "
+            + "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?";
+    private static final String INDEX_EXISTS_SQL = "SELECT COUNT(*) FROM information_schema.statistics "
+            + "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?";
+    private static final String MARKER_TABLE_SQL = "CREATE TABLE IF NOT EXISTS schema_upgrades ("
+            + "name VARCHAR(100) PRIMARY KEY, applied_at DATETIME NOT NULL)";
+    private static final String MARK_APPLIED_SQL = "INSERT IGNORE INTO schema_upgrades (name, applied_at) VALUES (?, NOW())";
+
     private final String sqlContent;
+    private final DataSourceProvider dataSourceProvider;
+    private final DataSource controlDataSource;
+    private final TenantService tenantService;
+    private final List<SchemaUpgrade> upgrades;
+
+    @Value("${schema-upgrade.on-startup:true}")
+    private boolean upgradeOnStartup;
 
-    public TenantSchemaInitializer() {
+    public TenantSchemaInitializer(DataSourceProvider dataSourceProvider,
+                                   @Qualifier("controlDataSource") DataSource controlDataSource,
+                                   @Lazy TenantService tenantService,
+                                   @Value("${jwt.valid-duration}") long validDuration,
+                                   @Value("${jwt.refreshable-duration}") long refreshableDuration) {
+        this.dataSourceProvider = dataSourceProvider;
+        this.controlDataSource = controlDataSource;
+        this.tenantService = tenantService;
+        this.upgrades = upgrades(refreshableDuration - validDuration);
         this.sqlContent = loadSqlFile("/sql/tenant_schema.sql");
     }
 
+    /**
+     * UPGRADES cùng bước sửa dữ liệu phụ thuộc cấu hình JWT.
+     */
+    private static List<SchemaUpgrade> upgrades(long legacyTokenExtensionSeconds) {
+        if (legacyTokenExtensionSeconds <= 0) return UPGRADES;
+
+        List<SchemaUpgrade> upgrades = new ArrayList<>(UPGRADES);
+        // Token thu hồi trước khi expire_time được giữ tới hết hạn refresh (max(exp, iat + refreshable)) chỉ lưu exp
+        // → kéo dài thêm (refreshable - valid) để registry/refreshToken vẫn coi là đã thu hồi và job dọn không xoá sớm
+        upgrades.add(SchemaUpgrade.once("invalidated_tokens_refresh_window", "invalidated_tokens",
+                "UPDATE invalidated_tokens SET expire_time = TIMESTAMPADD(SECOND, "
+                        + legacyTokenExtensionSeconds + ", expire_time)"));
+        return List.copyOf(upgrades);
+    }
+
+    /**
+     * Nâng cấp schema của DB control và các tenant ACTIVE đã tạo trước phiên bản hiện tại.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void upgradeExistingDatabases() {
+        if (!upgradeOnStartup) return;
+
+        // DB control không có các bảng nghiệp vụ của tenant → chỉ bổ sung cột/index cho bảng dùng chung
+        applyUpgrades("control", controlDataSource, false);
+        for (Tenant tenant : tenantService.getAllTenantsActive()) {
+            DataSource dataSource = dataSourceProvider.getDataSource(tenant.getCode());
+            if (dataSource == null) {
+                log.warn("Bỏ qua nâng cấp schema tenant {}: không có datasource", tenant.getCode());
+                continue;
+            }
+            applyUpgrades(tenant.getCode(), dataSource);
+        }
+    }
+
+    /**
+     * Chạy các bước trong UPGRADES (và bước sửa dữ liệu theo cấu hình) còn thiếu trên DB của một tenant; bước lỗi được ghi log và không chặn các bước sau.
+     */
+    public void applyUpgrades(String name, DataSource dataSource) {
+        applyUpgrades(name, dataSource, true);
+    }
+
+    private void applyUpgrades(String name, DataSource dataSource, boolean createTables) {
+        try (Connection conn = dataSource.getConnection()) {
+            for (SchemaUpgrade upgrade : upgrades) {
+                if (upgrade.createsTable() && !createTables) continue;
+                try {
+                    if (upgrade.apply(conn)) {
+                        log.info("Schema {}: đã áp dụng \"{}\"", name, upgrade.ddl());
+                    }
+                } catch (SQLException e) {
+                    log.error("Schema {}: nâng cấp \"{}\" thất bại: {}", name, upgrade.ddl(), e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Schema {}: không lấy được connection để nâng cấp: {}", name, e.getMessage());
+        }
+    }
+
     // Khởi tạo schema cho tất cả tenant khi app start
 //    @PostConstruct
 //    public void initAllTenants() {
@@ -37,8 +163,14 @@ public class TenantSchemaInitializer {
 
     // Cho phép gọi lại khi tenant reconnect
     public void initializeSchema(Tenant tenant) {
-        try (Connection conn = DriverManager.getConnection(
-                tenant.getDbUrl(), tenant.getDbUsername(), tenant.getDbPassword());
+        // Dùng connection từ pool của tenant (pool được tạo nếu chưa có) thay vì DriverManager
+        DataSource dataSource = dataSourceProvider.getDataSource(tenant.getCode());
+        if (dataSource == null) {
+            log.warn("Schema sync failed for tenant {}: no datasource available", tenant.getId());
+            return;
+        }
+
+        try (Connection conn = dataSource.getConnection();
              Statement stmt = conn.createStatement()) {
 
             for (String query : sqlContent.split(";")) {
@@ -47,11 +179,13 @@ public class TenantSchemaInitializer {
                 }
             }
 
-            System.out.println("Schema synced for tenant: " + tenant.getId());
+            log.info("Schema synced for tenant: {}", tenant.getId());
 
         } catch (Exception e) {
-            System.out.println("Schema sync failed for tenant " + tenant.getId() + ": " + e.getMessage());
+            log.error("Schema sync failed for tenant {}: {}", tenant.getId(), e.getMessage(), e);
         }
+
+        applyUpgrades(tenant.getCode(), dataSource);
     }
 
     private String loadSqlFile(String path) {
@@ -62,4 +196,84 @@ public class TenantSchemaInitializer {
             throw new RuntimeException("Cannot read SQL file: " + path, e);
         }
     }
+
+    /**
+     * Một bước nâng cấp: tạo bảng khi bảng chưa có, thêm cột/index khi bảng đã có mà cột/index chưa có,
+     * hoặc sửa dữ liệu một lần (marker) khi bảng đã có (bảng không tồn tại, ví dụ ở DB control, thì bỏ qua).
+     */
+    record SchemaUpgrade(String table, String column, String index, String marker, String ddl) {
+
+        static SchemaUpgrade column(String table, String column, String ddl) {
+            return new SchemaUpgrade(table, column, null, null, ddl);
+        }
+
+        static SchemaUpgrade index(String table, String index, String ddl) {
+            return new SchemaUpgrade(table, null, index, null, ddl);
+        }
+
+        static SchemaUpgrade table(String table, String ddl) {
+            return new SchemaUpgrade(table, null, null, null, ddl);
+        }
+
+        static SchemaUpgrade once(String marker, String table, String ddl) {
+            return new SchemaUpgrade(table, null, null, marker, ddl);
+        }
+
+        boolean createsTable() {
+            return column == null && index == null && marker == null;
+        }
+
+        boolean apply(Connection conn) throws SQLException {
+            boolean tableExists = exists(conn, TABLE_EXISTS_SQL, table);
+            if (createsTable() == tableExists) return false;
+            if (column != null && exists(conn, COLUMN_EXISTS_SQL, table, column)) return false;
+            if (index != null && exists(conn, INDEX_EXISTS_SQL, table, index)) return false;
+            if (marker != null) return applyOnce(conn);
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(ddl);
+            }
+            return true;
+        }
+
+        /**
+         * Ghi marker và sửa dữ liệu trong một transaction: node khởi động cùng lúc chờ khoá của marker
+         * rồi thấy bước đã chạy (INSERT IGNORE không thêm dòng) nên không sửa lần hai.
+         */
+        private boolean applyOnce(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(MARKER_TABLE_SQL);
+            }
+
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement mark = conn.prepareStatement(MARK_APPLIED_SQL);
+                 Statement stmt = conn.createStatement()) {
+                mark.setString(1, marker);
+                if (mark.executeUpdate() == 0) {
+                    conn.rollback();
+                    return false;
+                }
+                stmt.execute(ddl);
+                conn.commit();
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        private static boolean exists(Connection conn, String sql, String... args) throws SQLException {
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < args.length; i++) {
+                    stmt.setString(i + 1, args[i]);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() && rs.getLong(1) > 0;
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,22 @@
+package vn.edu.fpt.medicaldiagnosis.context;
+
+import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.entity.Staff;
+import vn.edu.fpt.medicaldiagnosis.exception.AppException;
+import vn.edu.fpt.medicaldiagnosis.exception.ErrorCode;
+
+/**
+ * Người đang thao tác trong request hiện tại: tài khoản đăng nhập và nhân viên gắn với tài khoản (null nếu không có).
+ */
+public record CurrentActor(String username, Account account, Staff staff) {
+
+    /**
+     * Nhân viên đang đăng nhập; ném STAFF_NOT_FOUND nếu tài khoản không gắn với nhân viên.
+     */
+    public Staff requireStaff() {
+        if (staff == null) {
+            throw new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên");
+        }
+        return staff;
+    }
+}
@@ -0,0 +1,60 @@
+package vn.edu.fpt.medicaldiagnosis.context;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.entity.Staff;
+import vn.edu.fpt.medicaldiagnosis.exception.AppException;
+import vn.edu.fpt.medicaldiagnosis.exception.ErrorCode;
+import vn.edu.fpt.medicaldiagnosis.repository.AccountRepository;
+import vn.edu.fpt.medicaldiagnosis.repository.StaffRepository;
+
+/**
+ * Xác định tài khoản + nhân viên đang đăng nhập một lần cho mỗi request (lưu trong request attribute),
+ * các service trong cùng request dùng lại thay vì tự đọc SecurityContextHolder rồi truy vấn account/staff.
+ *
+ * Ngoài request (job, thread nền) không có nơi lưu → mỗi lần gọi đều truy vấn lại.
+ * Staff/Account trả về có thể đã detached (open-in-view tắt): chỉ dùng để đọc hoặc gán làm tham chiếu.
+ */
+@Component
+@RequiredArgsConstructor
+public class CurrentActorResolver {
+
+    private static final String ATTRIBUTE = CurrentActorResolver.class.getName() + ".actor";
+
+    private final AccountRepository accountRepository;
+    private final StaffRepository staffRepository;
+
+    public CurrentActor current() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập");
+        }
+        String username = auth.getName();
+
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof CurrentActor cached
+                && cached.username().equals(username)) {
+            return cached;
+        }
+
+        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
+                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
+        Staff staff = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId()).orElse(null);
+
+        CurrentActor actor = new CurrentActor(username, account, staff);
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, actor, RequestAttributes.SCOPE_REQUEST);
+        }
+        return actor;
+    }
+
+    public Staff currentStaff() {
+        return current().requireStaff();
+    }
+}
@@ -5,13 +5,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
 import vn.edu.fpt.medicaldiagnosis.dto.request.QueuePatientsRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.*;
 import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
 import vn.edu.fpt.medicaldiagnosis.service.QueuePollingService;
+import vn.edu.fpt.medicaldiagnosis.service.QueueStreamService;
 
 import java.util.List;
 import java.util.Map;
@@ -29,6 +33,8 @@ public class QueuePatientsController {
 
     QueuePollingService queuePollingService;
 
+    QueueStreamService queueStreamService;
+
     @PostMapping
     public ApiResponse<QueuePatientsResponse> createQueuePatients(@RequestBody @Valid QueuePatientsRequest request) {
         log.info("Controller: create queue patient {}", request);
@@ -82,9 +88,25 @@ public class QueuePatientsController {
     }
 
     @GetMapping("/polling")
-    public DeferredResult<List<QueuePatientsResponse>> pollUpdates() {
-        log.info("Client long-polling for queue patient updates");
-        return queuePollingService.registerListener();
+    public DeferredResult<?> pollUpdates(@RequestParam(required = false) Long sinceVersion,
+                                         @RequestParam(required = false) String roomNumber) {
+        if (sinceVersion == null) {
+            log.info("Client long-polling for queue patient updates");
+            return queuePollingService.registerListener();
+        }
+        log.debug("Client long-polling for queue patient changes since version {} (room {})", sinceVersion, roomNumber);
+        return queuePollingService.registerDeltaListener(sinceVersion, roomNumber);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamUpdates(@RequestParam(required = false) Long sinceVersion,
+                                    @RequestParam(required = false) String roomNumber,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        // EventSource tự gửi Last-Event-ID khi kết nối lại → nối tiếp từ version đó
+        Long resumeVersion = sinceVersion != null ? sinceVersion
+                : (lastEventId != null ? DataUtil.parseLong(lastEventId) : null);
+        log.info("Client streaming queue updates from version {} (room {})", resumeVersion, roomNumber);
+        return queueStreamService.subscribe(resumeVersion, roomNumber);
     }
 
     @GetMapping("/search")
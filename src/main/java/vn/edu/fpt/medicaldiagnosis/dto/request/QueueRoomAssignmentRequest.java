@@ -0,0 +1,22 @@
+package vn.edu.fpt.medicaldiagnosis.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một lượt gán phòng + thứ tự hàng đợi cho bệnh nhân, dùng khi AutoRoomAssignmentJob gán theo lô.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QueueRoomAssignmentRequest {
+
+    private String queuePatientId;
+
+    private Integer roomNumber;
+
+    private Long queueOrder;
+}
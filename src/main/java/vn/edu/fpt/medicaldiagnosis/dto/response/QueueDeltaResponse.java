@@ -0,0 +1,28 @@
+package vn.edu.fpt.medicaldiagnosis.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Kết quả long-polling dạng delta cho bảng hàng đợi.
+ * - version: phiên bản hiện tại của hàng đợi tenant, client gửi lại ở lần poll kế tiếp (sinceVersion).
+ * - changes: các lượt khám thêm mới / thay đổi kể từ sinceVersion (mỗi id chỉ giữ bản mới nhất).
+ * - removedIds: các lượt khám đã bị xoá.
+ * - resyncRequired: sinceVersion quá cũ hoặc không hợp lệ → client tải lại toàn bộ (GET /queue-patients) rồi poll tiếp từ version.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueueDeltaResponse {
+    private long version;
+    private boolean resyncRequired;
+    private List<QueuePatientsResponse> changes;
+    private List<String> removedIds;
+}
@@ -10,7 +10,7 @@ import vn.edu.fpt.medicaldiagnosis.enums.DepartmentType;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @AllArgsConstructor
 @NoArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -25,6 +25,7 @@ public class QueuePatientsResponse {
     private String roomNumber;
     private DepartmentType type;
     private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
     private LocalDateTime calledTime;
     private Boolean isPriority;
     private LocalDateTime registeredTime;
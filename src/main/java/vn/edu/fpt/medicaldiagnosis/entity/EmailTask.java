@@ -7,6 +7,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import vn.edu.fpt.medicaldiagnosis.enums.Status;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "email_tasks")
 @Data
@@ -32,4 +34,8 @@ public class EmailTask extends AuditableEntity {
     @Enumerated(EnumType.STRING)
     private Status status;
 
+    // Thời điểm sớm nhất được gửi lại sau lỗi (backoff); null → gửi ngay
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
 }
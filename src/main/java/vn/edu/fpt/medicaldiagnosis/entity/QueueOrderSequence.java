@@ -0,0 +1,43 @@
+package vn.edu.fpt.medicaldiagnosis.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Bộ đếm queueOrder theo (hàng đợi trong ngày, phòng).
+ * Mỗi lần cấp số chỉ tăng một dòng duy nhất thay vì SELECT MAX(queue_order) ... FOR UPDATE trên queue_patients.
+ */
+@Entity
+@Table(name = "queue_order_sequences")
+@IdClass(QueueOrderSequence.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueOrderSequence {
+    @Id
+    @Column(name = "queue_id", length = 36)
+    private String queueId;
+
+    @Id
+    @Column(name = "room_number", length = 36)
+    private String roomNumber;
+
+    @Column(name = "current_value", nullable = false)
+    private Long currentValue;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String queueId;
+        private String roomNumber;
+    }
+}
@@ -26,6 +26,10 @@ public class Tenant {
     private String phone;
     private String servicePackageId;
 
+    // Giới hạn kích thước pool connection riêng cho tenant (null = dùng cấu hình tenant-pool mặc định)
+    private Integer dbPoolMinSize;
+    private Integer dbPoolMaxSize;
+
     public String getDbUrl() {
         return "jdbc:mysql://" + dbHost + ":" + dbPort + "/" + dbName;
     }
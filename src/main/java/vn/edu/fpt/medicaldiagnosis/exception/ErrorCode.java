@@ -164,6 +164,7 @@ public enum ErrorCode {
     INVALID_STATUS_TRANSITION(1712, "Không thể cập nhật trạng thái vì bệnh nhân đã hoàn thành khám", HttpStatus.BAD_REQUEST),
     INVALID_QUEUE_ORDER(1713, "Không thể gọi bệnh nhân vì còn người đến trước chưa khám hoặc có người ưu tiên", HttpStatus.BAD_REQUEST),
     ROOMS_OVERLOADED(1714, "Tất cả phòng của chuyên khoa này đã quá tải", HttpStatus.BAD_REQUEST),
+    TOO_MANY_STREAM_CLIENTS(1715, "Số màn hình hàng chờ kết nối đã đạt giới hạn", HttpStatus.SERVICE_UNAVAILABLE),
 
     // ===== INVOICE =====
     INVOICE_NOT_FOUND(1801, "Không tìm thấy hóa đơn", HttpStatus.NOT_FOUND),
@@ -1,6 +1,9 @@
 package vn.edu.fpt.medicaldiagnosis.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
 import vn.edu.fpt.medicaldiagnosis.enums.Status;
 
@@ -8,4 +11,57 @@ import java.util.List;
 
 public interface EmailTaskRepository extends JpaRepository<EmailTask, String> {
     List<EmailTask> findTop10ByStatusOrderByCreatedAtAsc(Status status);
+
+    /**
+     * Khoá các task PENDING đã đến hạn gửi. SKIP LOCKED → các worker/node khác bỏ qua dòng đang bị khoá
+     * thay vì chờ, nên mỗi task chỉ được một worker nhận. Phải gọi trong transaction.
+     */
+    @Query(value = """
+        SELECT id FROM email_tasks
+        WHERE status = 'PENDING'
+          AND (next_attempt_at IS NULL OR next_attempt_at <= NOW())
+        ORDER BY created_at
+        LIMIT :limit
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    List<String> lockClaimable(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "UPDATE email_tasks SET status = 'IN_PROGRESS', updated_at = NOW() WHERE id IN (:ids)", nativeQuery = true)
+    int markInProgress(@Param("ids") List<String> ids);
+
+    @Modifying
+    @Query(value = "UPDATE email_tasks SET status = 'DONE', updated_at = NOW() WHERE id IN (:ids)", nativeQuery = true)
+    int markDone(@Param("ids") List<String> ids);
+
+    /**
+     * Thời điểm gửi lại tính theo NOW() của DB (cùng đồng hồ với lockClaimable).
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE email_tasks
+        SET status = :status,
+            retry_count = :retryCount,
+            next_attempt_at = NOW() + INTERVAL :delayMs * 1000 MICROSECOND,
+            updated_at = NOW()
+        WHERE id = :id
+    """, nativeQuery = true)
+    int markAttemptFailed(@Param("id") String id,
+                          @Param("status") String status,
+                          @Param("retryCount") int retryCount,
+                          @Param("delayMs") long delayMs);
+
+    /**
+     * Trả lại hàng đợi các task đã nhận quá :seconds giây mà chưa xong (worker/node chết giữa chừng).
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE email_tasks SET status = 'PENDING', updated_at = NOW()
+        WHERE status = 'IN_PROGRESS'
+          AND updated_at < NOW() - INTERVAL :seconds SECOND
+    """, nativeQuery = true)
+    int releaseStale(@Param("seconds") long seconds);
+
+    @Query(value = "SELECT COUNT(*) FROM email_tasks WHERE status = 'PENDING'", nativeQuery = true)
+    long countPending();
 }
@@ -1,7 +1,30 @@
 package vn.edu.fpt.medicaldiagnosis.repository;
 
+import java.util.Date;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import vn.edu.fpt.medicaldiagnosis.entity.InvalidatedToken;
 
-public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {}
+public interface InvalidatedTokenRepository extends JpaRepository<InvalidatedToken, String> {
+
+    List<InvalidatedToken> findByExpireTimeAfter(Date time);
+
+    /**
+     * Xoá tối đa :limit token đã hết hạn giữ, mỗi lần gọi là một transaction ngắn (dùng idx_invalidated_tokens_expire).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+        DELETE FROM invalidated_tokens
+        WHERE expire_time < NOW()
+        ORDER BY expire_time
+        LIMIT :limit
+    """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("limit") int limit);
+}
@@ -0,0 +1,45 @@
+package vn.edu.fpt.medicaldiagnosis.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.edu.fpt.medicaldiagnosis.entity.QueueOrderSequence;
+
+@Repository
+public interface QueueOrderSequenceRepository extends JpaRepository<QueueOrderSequence, QueueOrderSequence.Key> {
+
+    /**
+     * Tăng bộ đếm thêm :count trong một câu lệnh (khoá đúng một dòng).
+     * Giá trị mới được giữ lại qua LAST_INSERT_ID(expr) để đọc bằng {@link #lastInsertId()} trên cùng kết nối.
+     */
+    @Modifying
+    @Query(value = """
+        UPDATE queue_order_sequences
+        SET current_value = LAST_INSERT_ID(current_value + :count)
+        WHERE queue_id = :queueId
+          AND room_number = :roomNumber
+    """, nativeQuery = true)
+    int increment(@Param("queueId") String queueId,
+                  @Param("roomNumber") String roomNumber,
+                  @Param("count") long count);
+
+    /**
+     * Khởi tạo bộ đếm cho phòng lần đầu trong ngày từ MAX(queue_order) hiện có (dữ liệu cũ / gán tay).
+     * INSERT IGNORE → nhiều luồng cùng khởi tạo thì chỉ một dòng được tạo.
+     */
+    @Modifying
+    @Query(value = """
+        INSERT IGNORE INTO queue_order_sequences (queue_id, room_number, current_value)
+        SELECT :queueId, :roomNumber, COALESCE(MAX(queue_order), 0)
+        FROM queue_patients
+        WHERE room_number = :roomNumber
+          AND queue_id = :queueId
+    """, nativeQuery = true)
+    int seedFromQueuePatients(@Param("queueId") String queueId,
+                              @Param("roomNumber") String roomNumber);
+
+    @Query(value = "SELECT LAST_INSERT_ID()", nativeQuery = true)
+    Long lastInsertId();
+}
@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vn.edu.fpt.medicaldiagnosis.entity.QueuePatients;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,15 +36,6 @@ public interface QueuePatientsRepository extends JpaRepository<QueuePatients, St
     """, nativeQuery = true)
     List<QueuePatients> findAllByStatusAndQueueId(@Param("status") String status, @Param("queueId") String queueId);
 
-    @Query(value = """
-        SELECT COALESCE(MAX(queue_order), 0)
-        FROM queue_patients
-        WHERE room_number = :roomNumber
-          AND queue_id = :queueId
-        FOR UPDATE
-    """, nativeQuery = true)
-    Long findMaxQueueOrderByRoom(@Param("roomNumber") String roomNumber, @Param("queueId") String queueId);
-
     @Query(value = """
         SELECT * FROM queue_patients 
         WHERE deleted_at IS NULL
@@ -55,6 +47,42 @@ public interface QueuePatientsRepository extends JpaRepository<QueuePatients, St
     """, nativeQuery = true)
     List<QueuePatients> findTopUnassignedWaiting(@Param("queueId") String queueId, @Param("limit") int limit);
 
+    /**
+     * Lấy các bệnh nhân WAITING có thay đổi sau mốc (updated_at, id) — phân trang keyset theo watermark,
+     * dùng cho phân phòng tăng dần (chỉ xét bản ghi mới/được cập nhật).
+     */
+    @Query(value = """
+        SELECT * FROM queue_patients
+        WHERE deleted_at IS NULL
+          AND status = 'WAITING'
+          AND queue_id = :queueId
+          AND (updated_at > :sinceTime OR (updated_at = :sinceTime AND id > :sinceId))
+        ORDER BY updated_at ASC, id ASC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<QueuePatients> findWaitingChangedSince(@Param("queueId") String queueId,
+                                                @Param("sinceTime") LocalDateTime sinceTime,
+                                                @Param("sinceId") String sinceId,
+                                                @Param("limit") int limit);
+
+    /**
+     * Lấy mọi lượt khám (mọi trạng thái, kể cả đã xoá mềm) có thay đổi sau mốc (updated_at, id) và không muộn hơn :until
+     * — phân trang keyset theo watermark, dùng để đối soát hàng đợi trong bộ nhớ với thay đổi ghi trên node khác.
+     */
+    @Query(value = """
+        SELECT * FROM queue_patients
+        WHERE queue_id = :queueId
+          AND (updated_at > :sinceTime OR (updated_at = :sinceTime AND id > :sinceId))
+          AND updated_at <= :until
+        ORDER BY updated_at ASC, id ASC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<QueuePatients> findChangedSince(@Param("queueId") String queueId,
+                                         @Param("sinceTime") LocalDateTime sinceTime,
+                                         @Param("sinceId") String sinceId,
+                                         @Param("until") LocalDateTime until,
+                                         @Param("limit") int limit);
+
     @Query(value = """
         SELECT * FROM queue_patients 
         WHERE deleted_at IS NULL
@@ -125,5 +125,18 @@ public interface WorkScheduleRepository extends JpaRepository<WorkSchedule, Stri
                                  @Param("scheduled") WorkStatus scheduled,
                                  @Param("absent") WorkStatus absent);
 
-    List<WorkSchedule> findAllByStaff_IdAndShiftDateBetweenAndDeletedAtIsNull(String staffId, LocalDate yesterday, LocalDate today);
+    /**
+     * Lịch trong khoảng ngày của toàn tenant cho ShiftRosterCache: [staffId, shiftDate, startTime, endTime].
+     */
+    @Query("""
+        select ws.staff.id, ws.shiftDate, s.startTime, s.endTime
+          from WorkSchedule ws
+          join ws.shift s
+         where ws.shiftDate between :from and :to
+           and ws.deletedAt is null
+           and ws.status <> :excluded
+    """)
+    List<Object[]> findRosterRows(@Param("from") LocalDate from,
+                                  @Param("to") LocalDate to,
+                                  @Param("excluded") WorkStatus excluded);
 }
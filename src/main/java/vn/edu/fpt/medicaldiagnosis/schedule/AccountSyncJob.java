@@ -1,101 +1,223 @@
 package vn.edu.fpt.medicaldiagnosis.schedule;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
+import vn.edu.fpt.medicaldiagnosis.config.DataSourceProvider;
 import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
-import vn.edu.fpt.medicaldiagnosis.enums.Status;
 import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
 
 import javax.sql.DataSource;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Đồng bộ tài khoản tenant (is_tenant = TRUE) từ DB tenant lên DB control theo kiểu tăng dần.
+ *
+ * - Mỗi tenant giữ một watermark (updated_at, id): mỗi lượt chỉ đọc các tài khoản mới/thay đổi sau watermark,
+ *   theo lô account-sync.batch-size. Định kỳ (account-sync.full-scan-interval-ms) quét lại toàn bộ để bắt
+ *   các bản ghi không có updated_at hoặc bị bỏ lỡ.
+ * - Ghi lên DB control bằng một câu INSERT IGNORE nhiều dòng cho cả lô (accounts + account_roles) trong một transaction,
+ *   không còn SELECT COUNT(*) cho từng tài khoản. Watermark chỉ tiến khi lô đã ghi thành công.
+ * - Các tenant được xử lý song song qua TenantFanOutExecutor, có timeout riêng từng tenant.
+ */
 @Component
 @Slf4j
-@RequiredArgsConstructor
+@JobGroup(JobGroup.TENANT_SYNC)
 public class AccountSyncJob {
 
+    private static final String SELECT_COLUMNS = "SELECT id, username, password, updated_at FROM accounts ";
+
     private final TenantService tenantService;
 
     private final DataSource controlDataSource;
 
+    private final DataSourceProvider dataSourceProvider;
+
+    private final Map<String, SyncCursor> cursors = new ConcurrentHashMap<>();
+
+    @Value("${account-sync.batch-size:500}")
+    private int batchSize;
+
+    @Value("${account-sync.full-scan-interval-ms:600000}")
+    private long fullScanIntervalMs;
+
+    @Value("${account-sync.tenant-timeout-ms:30000}")
+    private long tenantTimeoutMs;
+
+    private final TenantFanOutExecutor tenantFanOutExecutor;
+
+    public AccountSyncJob(TenantService tenantService,
+                          @Qualifier("controlDataSource") DataSource controlDataSource,
+                          DataSourceProvider dataSourceProvider,
+                          TenantFanOutExecutor tenantFanOutExecutor) {
+        this.tenantService = tenantService;
+        this.controlDataSource = controlDataSource;
+        this.dataSourceProvider = dataSourceProvider;
+        this.tenantFanOutExecutor = tenantFanOutExecutor;
+    }
+
     @Scheduled(fixedDelay = 3000)
     public void syncTenantAccountsToControl() {
-        List<Tenant> tenants = tenantService.getAllTenantsActive();
+        // Chờ cả lượt kết thúc để fixedDelay không chồng lượt; tenant chậm bị huỷ sau timeout
+        tenantFanOutExecutor.forEachTenant("account-sync", tenantService.getAllTenantsActive(),
+                tenantTimeoutMs, this::syncTenant);
+    }
 
-        for (Tenant tenant : tenants) {
-            try (Connection tenantConn = getTenantConnection(tenant);
-                 PreparedStatement stmt = tenantConn.prepareStatement(
-                         "SELECT * FROM accounts WHERE is_tenant = TRUE AND deleted_at IS NULL");
-                 ResultSet rs = stmt.executeQuery()) {
+    private void syncTenant(Tenant tenant) {
+        String tenantCode = tenant.getCode();
+        SyncCursor cursor = cursors.computeIfAbsent(tenantCode, t -> new SyncCursor());
 
-                while (rs.next()) {
-                    String id = rs.getString("id");
-                    String username = rs.getString("username");
-                    String password = rs.getString("password");
+        try {
+            if (System.currentTimeMillis() - cursor.lastFullScanMillis >= fullScanIntervalMs) {
+                fullScan(tenant, cursor);
+                return;
+            }
 
-                    if (!accountExistsInControl(id)) {
-                        insertToControlDb(id, username, password);
-                    }
-                }
+            List<AccountRow> page;
+            do {
+                page = readChangedSince(tenant, cursor);
+                if (page.isEmpty()) break;
+
+                insertToControlDb(page);
+                cursor.advance(page);
+            } while (page.size() >= batchSize);
+
+        } catch (Exception e) {
+            log.error("Error syncing accounts for tenant {}: {}", tenantCode, e.getMessage());
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("Error syncing accounts for tenant {}: {}", tenant.getCode(), e.getMessage());
+    /**
+     * Quét toàn bộ tài khoản tenant (lần đầu và định kỳ), đặt lại watermark theo bản ghi mới nhất.
+     */
+    private void fullScan(Tenant tenant, SyncCursor cursor) throws SQLException {
+        List<AccountRow> rows = new ArrayList<>();
+        try (Connection tenantConn = getTenantConnection(tenant);
+             PreparedStatement stmt = tenantConn.prepareStatement(SELECT_COLUMNS
+                     + "WHERE is_tenant = TRUE AND deleted_at IS NULL ORDER BY updated_at, id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                rows.add(AccountRow.from(rs));
             }
         }
+
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            insertToControlDb(rows.subList(from, Math.min(rows.size(), from + batchSize)));
+        }
+
+        cursor.reset();
+        cursor.advance(rows);
+        cursor.lastFullScanMillis = System.currentTimeMillis();
     }
 
-    private boolean accountExistsInControl(String accountId) {
-        String sql = "SELECT COUNT(*) FROM accounts WHERE id = ?";
-        try (Connection conn = controlDataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, accountId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) return rs.getInt(1) > 0;
-        } catch (Exception e) {
-            log.warn("Error checking account existence in control DB: {}", e.getMessage());
+    private List<AccountRow> readChangedSince(Tenant tenant, SyncCursor cursor) throws SQLException {
+        List<AccountRow> rows = new ArrayList<>();
+        String sql = SELECT_COLUMNS
+                + "WHERE is_tenant = TRUE AND deleted_at IS NULL "
+                + "AND (updated_at > ? OR (updated_at = ? AND id > ?)) "
+                + "ORDER BY updated_at, id LIMIT ?";
+
+        try (Connection tenantConn = getTenantConnection(tenant);
+             PreparedStatement stmt = tenantConn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, cursor.watermarkTime);
+            stmt.setTimestamp(2, cursor.watermarkTime);
+            stmt.setString(3, cursor.watermarkId);
+            stmt.setInt(4, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(AccountRow.from(rs));
+                }
+            }
         }
-        return false;
+        return rows;
     }
 
-    private void insertToControlDb(String id, String username, String password) {
-        String insertAccountSql = "INSERT IGNORE INTO accounts (id, username, password, is_tenant) VALUES (?, ?, ?, TRUE)";
-        String insertRoleSql = "INSERT IGNORE INTO account_roles (account_id, role_name) VALUES (?, ?)";
-
-            try (Connection conn = controlDataSource.getConnection()) {
-                conn.setAutoCommit(false); // đảm bảo atomic insert
-
-                try (
-                        PreparedStatement insertAccountStmt = conn.prepareStatement(insertAccountSql);
-                        PreparedStatement insertRoleStmt = conn.prepareStatement(insertRoleSql)
-                ) {
-                    // Insert account
-                    insertAccountStmt.setString(1, id);
-                    insertAccountStmt.setString(2, username);
-                    insertAccountStmt.setString(3, password);
-                    insertAccountStmt.executeUpdate();
-
-                    // Insert role
-                    insertRoleStmt.setString(1, id);
-                    insertRoleStmt.setString(2, "TENANT");
+    /**
+     * Ghi cả lô lên DB control bằng INSERT IGNORE nhiều dòng (tài khoản đã tồn tại được bỏ qua).
+     */
+    private void insertToControlDb(List<AccountRow> rows) throws SQLException {
+        if (rows.isEmpty()) return;
+
+        String insertAccountSql = "INSERT IGNORE INTO accounts (id, username, password, is_tenant) VALUES "
+                + String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, TRUE)"));
+        String insertRoleSql = "INSERT IGNORE INTO account_roles (account_id, role_name) VALUES "
+                + String.join(", ", Collections.nCopies(rows.size(), "(?, 'TENANT')"));
+
+        try (Connection conn = controlDataSource.getConnection()) {
+            conn.setAutoCommit(false); // đảm bảo atomic insert
+
+            try (PreparedStatement insertAccountStmt = conn.prepareStatement(insertAccountSql);
+                 PreparedStatement insertRoleStmt = conn.prepareStatement(insertRoleSql)) {
+                int idx = 1;
+                for (AccountRow row : rows) {
+                    insertAccountStmt.setString(idx++, row.id());
+                    insertAccountStmt.setString(idx++, row.username());
+                    insertAccountStmt.setString(idx++, row.password());
+                }
+                insertAccountStmt.executeUpdate();
+
+                for (int i = 0; i < rows.size(); i++) {
+                    insertRoleStmt.setString(i + 1, rows.get(i).id());
+                }
                 insertRoleStmt.executeUpdate();
 
                 conn.commit();
-                } catch (SQLException e) {
+            } catch (SQLException e) {
                 conn.rollback();
-                log.error("Failed to insert account {} or role to control DB: {}", username, e.getMessage());
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-
-        } catch (Exception e) {
-            log.error("Error opening connection to control DB: {}", e.getMessage());
         }
     }
 
     private Connection getTenantConnection(Tenant tenant) throws SQLException {
-        String url = "jdbc:mysql://" + tenant.getDbHost() + ":" + tenant.getDbPort() + "/" + tenant.getDbName();
-        return DriverManager.getConnection(url, tenant.getDbUsername(), tenant.getDbPassword());
+        // Mượn connection từ pool của tenant thay vì mở kết nối mới mỗi 3 giây
+        DataSource dataSource = dataSourceProvider.getDataSource(tenant.getCode());
+        if (dataSource == null) {
+            throw new SQLException("No datasource available for tenant " + tenant.getCode());
+        }
+        return dataSource.getConnection();
+    }
+
+    private record AccountRow(String id, String username, String password, Timestamp updatedAt) {
+        static AccountRow from(ResultSet rs) throws SQLException {
+            return new AccountRow(rs.getString("id"), rs.getString("username"),
+                    rs.getString("password"), rs.getTimestamp("updated_at"));
+        }
+    }
+
+    /**
+     * Vị trí đã đồng bộ của một tenant. Mỗi tenant chỉ được xử lý bởi một luồng trong một lượt.
+     */
+    private static final class SyncCursor {
+        private Timestamp watermarkTime;
+        private String watermarkId;
+        private long lastFullScanMillis; // 0 → lượt đầu tiên quét toàn bộ
+
+        void reset() {
+            watermarkTime = new Timestamp(0);
+            watermarkId = "";
+        }
+
+        void advance(List<AccountRow> rows) {
+            for (AccountRow row : rows) {
+                if (row.updatedAt() == null) continue; // chỉ được bắt lại ở lượt quét toàn bộ
+                if (watermarkTime == null || row.updatedAt().after(watermarkTime)
+                        || (row.updatedAt().equals(watermarkTime) && row.id().compareTo(watermarkId) > 0)) {
+                    watermarkTime = row.updatedAt();
+                    watermarkId = row.id();
+                }
+            }
+        }
     }
 }
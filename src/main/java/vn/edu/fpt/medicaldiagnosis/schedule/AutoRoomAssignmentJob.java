@@ -2,23 +2,36 @@ package vn.edu.fpt.medicaldiagnosis.schedule;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.config.CallbackRegistry;
-import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 import vn.edu.fpt.medicaldiagnosis.dto.request.DepartmentUpdateRequest;
+import vn.edu.fpt.medicaldiagnosis.dto.request.QueueRoomAssignmentRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.DepartmentResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.PatientResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
 import vn.edu.fpt.medicaldiagnosis.enums.Status;
 import vn.edu.fpt.medicaldiagnosis.repository.PatientRepository;
 import vn.edu.fpt.medicaldiagnosis.service.*;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.event.TenantShardsChangedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.DispatchCursor;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.QueueOrderAllocator;
 import vn.edu.fpt.medicaldiagnosis.thread.manager.RoomQueueHolder;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.RoomWorkerScheduler;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantShardManager;
 
 import jakarta.annotation.PreDestroy;
-import java.util.List;
-import java.util.Map;
+import java.time.LocalDateTime;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -26,61 +39,152 @@ import java.util.concurrent.ConcurrentHashMap;
  *
  * Chức năng chính:
  * - Duyệt qua các tenant đang hoạt động.
- * - Gán tối đa 5 bệnh nhân ưu tiên và 5 bệnh nhân thường vào các phòng phù hợp.
- * - Cập nhật thứ tự hàng đợi (queueOrder) và đẩy vào hàng đợi trong bộ nhớ (in-memory).
+ * - Chỉ xét các bệnh nhân WAITING mới/được cập nhật sau watermark (DispatchCursor), định kỳ quét lại toàn bộ.
+ * - Gán phòng phù hợp theo lô (ưu tiên trước), cấp queueOrder từ bộ đếm theo phòng (QueueOrderAllocator) và đẩy vào hàng đợi (in-memory).
  * - Khởi tạo RoomWorker cho mỗi phòng (nếu chưa tồn tại).
  * - Gửi email callback nếu bệnh nhân đã đăng ký nhận thông báo.
+ * - Chỉ giữ RoomQueueHolder/RoomWorker cho tenant thuộc node này (TenantShardManager); khi cluster đổi thành viên,
+ *   tenant chuyển sang node khác được dừng worker và xoá khỏi bộ nhớ.
+ * - Khi chạy nhiều node: thay đổi ghi trên node không sở hữu tenant (tenant-shard.redirect-to-owner = false) không phát
+ *   QueuePatientChangedEvent trên node này → định kỳ đối soát mọi lượt khám thay đổi sau watermark riêng
+ *   (reconcile-interval-ms) và phát lại sự kiện cho thay đổi mà hàng đợi trong bộ nhớ chưa phản ánh.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@JobGroup(JobGroup.QUEUE)
 public class AutoRoomAssignmentJob {
 
     private final CallbackRegistry callbackRegistry;
     private final EmailService emailService;
-    private final TenantService tenantService;
     private final QueuePatientsService queuePatientsService;
     private final DailyQueueService dailyQueueService;
     private final DepartmentService departmentService;
     private final PatientService patientService;
-    private final QueuePollingService queuePollingService;
     private final TextToSpeechService textToSpeechService;
     private final WorkScheduleService workScheduleService;
     private final SettingService settingService;
     private final PatientRepository patientRepository;
+    private final RoomWorkerScheduler roomWorkerScheduler;
+    private final QueueOrderAllocator queueOrderAllocator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TenantFanOutExecutor tenantFanOutExecutor;
+    private final TenantShardManager tenantShardManager;
+
+    /**
+     * Thứ tự phân phòng trong một lô: ưu tiên trước, sau đó theo thời gian đăng ký / tạo
+     * (giống thứ tự của findTopPriorityWaiting / findTopUnassignedWaiting).
+     */
+    private static final Comparator<QueuePatientsResponse> DISPATCH_ORDER = Comparator
+            .comparing((QueuePatientsResponse p) -> Boolean.TRUE.equals(p.getIsPriority()) ? 0 : 1)
+            .thenComparing(QueuePatientsResponse::getRegisteredTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(QueuePatientsResponse::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(QueuePatientsResponse::getId);
+
+    @Value("${queue-dispatch.batch-size:200}")
+    private int dispatchBatchSize;
+
+    @Value("${queue-dispatch.rescan-interval-ms:60000}")
+    private long rescanIntervalMs;
+
+    @Value("${queue-dispatch.tenant-timeout-ms:10000}")
+    private long tenantTimeoutMs;
+
+    @Value("${queue-dispatch.reconcile-interval-ms:5000}")
+    private long reconcileIntervalMs;
+
+    /**
+     * Chỉ đối soát bản ghi có updated_at cũ hơn mốc này: transaction trên node khác có thể commit muộn hơn
+     * thời điểm ghi updated_at, đọc sát hiện tại sẽ vượt watermark qua bản ghi chưa commit.
+     */
+    private static final long RECONCILE_SETTLE_MS = 2000;
 
     private final Map<String, RoomQueueHolder> tenantQueues = new ConcurrentHashMap<>();
 
+    private final Map<String, DispatchCursor> dispatchCursors = new ConcurrentHashMap<>();
+
+    private final Map<String, DispatchCursor> reconcileCursors = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> reconcileDue = new ConcurrentHashMap<>();
+
     @Scheduled(fixedDelay = 2000)
     public void dispatchAndProcess() {
-        tenantService.getAllTenantsActive().parallelStream().forEach(tenant -> {
+        // Chạy trên TenantFanOutExecutor (pool riêng, có timeout từng tenant) thay vì common ForkJoinPool
+        tenantFanOutExecutor.forEachActiveTenant("auto-room-assignment", tenantTimeoutMs, tenant -> {
             String tenantCode = tenant.getCode();
-            try {
-                TenantContext.setTenantId(tenantCode);
-                String queueId = dailyQueueService.getActiveQueueIdForToday();
-                if (queueId == null) return;
+            String queueId = dailyQueueService.getActiveQueueIdForToday();
+            if (queueId == null) return;
 
-                RoomQueueHolder queueHolder = tenantQueues.computeIfAbsent(tenantCode, t -> initTenantQueues(t, queueId));
+            RoomQueueHolder queueHolder = tenantQueues.computeIfAbsent(tenantCode, t -> initTenantQueues(t, queueId));
 
-                // ========= 1. PHÂN BỆNH NHÂN ƯU TIÊN =========
-                dispatchPatients(queueHolder, tenantCode, queueId, queuePatientsService.getTopWaitingPriority(queueId, 1000));
+            // Sang ngày mới (queueId khác) → tạo cursor mới và bỏ các khối queueOrder còn dư của ngày cũ
+            DispatchCursor cursor = dispatchCursors.compute(tenantCode, (t, c) -> {
+                if (c != null && queueId.equals(c.getQueueId())) return c;
+                if (c != null) queueOrderAllocator.evictQueue(t, c.getQueueId());
+                return new DispatchCursor(queueId);
+            });
+
+            // Định kỳ quét lại từ đầu để thử lại các bệnh nhân bị bỏ qua (phòng đầy, chưa có phòng phù hợp)
+            boolean rescan = System.currentTimeMillis() - cursor.getLastRewindMillis() >= rescanIntervalMs;
+            if (rescan) {
+                cursor.rewind();
+            }
+
+            // ========= 1. CHỈ LẤY BỆNH NHÂN MỚI / THAY ĐỔI SAU WATERMARK =========
+            List<QueuePatientsResponse> page = queuePatientsService.getWaitingChangedSince(
+                    queueId, cursor.getWatermarkTime(), cursor.getWatermarkId(), dispatchBatchSize);
+            cursor.advance(page);
 
-                // ========= 2. PHÂN BỆNH NHÂN THƯỜNG =========
-                dispatchPatients(queueHolder, tenantCode, queueId, queuePatientsService.getTopWaitingUnassigned(queueId, 1000));
+            // ========= 2. PHÂN PHÒNG THEO LÔ (ƯU TIÊN TRƯỚC, SAU ĐÓ THEO THỜI GIAN ĐĂNG KÝ) =========
+            int dispatched = dispatchPatients(queueHolder, cursor, tenantCode, queueId, page);
 
-                // ========= 3. ĐỒNG BỘ TRẠNG THÁI QUÁ TẢI LÊN DB =========
+            // ========= 3. ĐỒNG BỘ TRẠNG THÁI QUÁ TẢI LÊN DB =========
+            // Số bệnh nhân trong phòng chỉ thay đổi khi có phân phòng → không cần đồng bộ khi không có gì mới
+            if (dispatched > 0 || rescan) {
                 reconcileOverloadStatus(queueHolder, queueId);
+            }
 
-            } catch (Exception e) {
-                log.error("Lỗi xử lý AutoRoomAssignmentJob cho tenant {}: {}", tenantCode, e.getMessage(), e);
-            } finally {
-                TenantContext.clear();
+            // ========= 4. ĐỐI SOÁT THAY ĐỔI GHI TRÊN NODE KHÁC =========
+            if (tenantShardManager.isClustered()) {
+                reconcileRemoteChanges(tenantCode, queueId, queueHolder);
             }
         });
     }
 
+    /**
+     * Đối soát hàng đợi trong bộ nhớ với các lượt khám (mọi trạng thái) thay đổi sau watermark đối soát.
+     *
+     * - Thay đổi ghi trên node không sở hữu tenant chỉ phát sự kiện trên node đó → node sở hữu không biết
+     *   để cập nhật RoomQueueHolder, đánh thức RoomWorker hay đẩy feed/bảng hàng đợi.
+     * - Mỗi reconcile-interval-ms đọc các bản ghi có updated_at ≤ hiện tại − RECONCILE_SETTLE_MS và phát lại
+     *   QueuePatientChangedEvent cho bản ghi hàng đợi chưa phản ánh (thay đổi ghi tại node này đã được áp dụng → bỏ qua).
+     */
+    private void reconcileRemoteChanges(String tenantCode, String queueId, RoomQueueHolder queueHolder) {
+        long now = System.currentTimeMillis();
+        Long due = reconcileDue.get(tenantCode);
+        if (due != null && now < due) return;
+        reconcileDue.put(tenantCode, now + reconcileIntervalMs);
+
+        LocalDateTime until = LocalDateTime.now().minusNanos(RECONCILE_SETTLE_MS * 1_000_000);
+        // Cursor mới bắt đầu từ mốc hiện tại: hàng đợi vừa dựng từ DB đã chứa các thay đổi trước đó
+        DispatchCursor cursor = reconcileCursors.compute(tenantCode, (t, c) ->
+                c != null && queueId.equals(c.getQueueId()) ? c : new DispatchCursor(queueId, until));
+
+        List<QueuePatientChangedEvent> page;
+        do {
+            page = queuePatientsService.getChangesSince(
+                    queueId, cursor.getWatermarkTime(), cursor.getWatermarkId(), until, dispatchBatchSize);
+            cursor.advance(page.stream().map(QueuePatientChangedEvent::getPatient).toList());
+
+            for (QueuePatientChangedEvent change : page) {
+                if (queueHolder.isCurrent(change.getPatient(), change.isDeleted())) continue;
+                eventPublisher.publishEvent(change);
+            }
+        } while (page.size() >= dispatchBatchSize);
+    }
+
     private RoomQueueHolder initTenantQueues(String tenantCode, String queueId) {
-        RoomQueueHolder holder = new RoomQueueHolder();
+        RoomQueueHolder holder = new RoomQueueHolder(roomWorkerScheduler);
         List<DepartmentResponse> departments = departmentService.getAllAvailableDepartments();
         for (DepartmentResponse dep : departments) {
             long countShifts = workScheduleService.countShiftsToday(dep.getId());
@@ -102,8 +206,22 @@ public class AutoRoomAssignmentJob {
         return holder;
     }
 
-    private void dispatchPatients(RoomQueueHolder queueHolder, String tenantCode, String queueId, List<QueuePatientsResponse> patients) {
-        for (QueuePatientsResponse patient : patients) {
+    /**
+     * Phân phòng cho một lô bệnh nhân:
+     * - Chọn phòng (giữ phòng chỉ định nếu có) và cấp queueOrder từ QueueOrderAllocator.
+     * - Ghi DB một lần cho cả lô (assignPatientsToRooms), không đọc lại từng bệnh nhân.
+     * - Refresh/notify một lần cho mỗi phòng bị ảnh hưởng thay vì mỗi bệnh nhân.
+     * @return số bệnh nhân được đưa vào hàng đợi trong bộ nhớ
+     */
+    private int dispatchPatients(RoomQueueHolder queueHolder, DispatchCursor cursor, String tenantCode, String queueId, List<QueuePatientsResponse> patients) {
+        List<QueuePatientsResponse> ordered = patients.stream()
+                .sorted(DISPATCH_ORDER)
+                .toList();
+
+        List<QueueRoomAssignmentRequest> assignments = new ArrayList<>();
+        Map<String, QueuePatientsResponse> enqueued = new LinkedHashMap<>();
+
+        for (QueuePatientsResponse patient : ordered) {
             if (!Status.WAITING.name().equalsIgnoreCase(patient.getStatus())
                     && !Status.CALLING.name().equalsIgnoreCase(patient.getStatus())) continue;
 
@@ -111,6 +229,9 @@ public class AutoRoomAssignmentJob {
                     ? DataUtil.parseInt(patient.getRoomNumber())
                     : null;
 
+            // Đã nằm trong hàng đợi của phòng → không xử lý lại
+            if (roomNumber != null && patient.getQueueOrder() != null && queueHolder.contains(roomNumber, patient.getId())) continue;
+
             // Nếu đã có phòng → check quá tải ngay
             if (roomNumber != null && !queueHolder.canAcceptNewPatient(roomNumber)) {
                 log.info("Phòng {} đã đầy — bỏ qua patient {}", roomNumber, patient.getPatientId());
@@ -129,11 +250,16 @@ public class AutoRoomAssignmentJob {
                 }
             }
 
-            // Gán queueOrder nếu chưa có
+            // Gán queueOrder nếu chưa có (cấp từ bộ đếm queue_order_sequences, ghi phòng/thứ tự theo lô bên dưới)
             if (patient.getQueueOrder() == null) {
-                long nextOrder = queuePatientsService.getMaxQueueOrderForRoom(String.valueOf(roomNumber), queueId) + 1;
-                if (!queuePatientsService.tryAssignPatientToRoom(patient.getId(), roomNumber, nextOrder)) continue;
-                patient = queuePatientsService.getQueuePatientsById(patient.getId());
+                long nextOrder = queueOrderAllocator.next(queueId, roomNumber);
+                assignments.add(QueueRoomAssignmentRequest.builder()
+                        .queuePatientId(patient.getId())
+                        .roomNumber(roomNumber)
+                        .queueOrder(nextOrder)
+                        .build());
+                patient.setRoomNumber(String.valueOf(roomNumber));
+                patient.setQueueOrder(nextOrder);
             }
 
             // Khởi tạo phòng nếu chưa có
@@ -146,16 +272,35 @@ public class AutoRoomAssignmentJob {
                 log.info("Khởi tạo mới phòng {} cho patient {}", roomNumber, patient.getPatientId());
             }
 
-            Integer finalRoomNumber = roomNumber;
-            Integer finalRoomNumber1 = roomNumber;
-            queueHolder.enqueuePatientAndNotifyListeners(roomNumber, patient, () -> {
-                queueHolder.refreshQueue(finalRoomNumber, queuePatientsService);
-                queuePollingService.notifyListeners(queuePatientsService.getAllQueuePatients());
-//                queuePollingService.notifyListeners(queuePatientsService.getAllQueuePatientsByRoomNumber(String.valueOf(finalRoomNumber1)));
-            });
+            // Đưa vào hàng đợi trong bộ nhớ ngay để lần chọn phòng kế tiếp trong lô thấy được số lượng mới
+            queueHolder.enqueue(roomNumber, patient);
+            enqueued.put(patient.getId(), patient);
+        }
 
-            handleCallback(patient.getPatientId(), roomNumber, patient.getQueueOrder());
+        if (enqueued.isEmpty()) return 0;
+
+        // Ghi DB theo lô; bản ghi không cập nhật được (đã bị xoá) thì loại khỏi hàng đợi
+        if (!assignments.isEmpty()) {
+            Set<String> assigned = queuePatientsService.assignPatientsToRooms(assignments);
+            for (QueueRoomAssignmentRequest assignment : assignments) {
+                if (!assigned.contains(assignment.getQueuePatientId())) {
+                    queueHolder.remove(assignment.getRoomNumber(), assignment.getQueuePatientId());
+                    enqueued.remove(assignment.getQueuePatientId());
+                }
+            }
         }
+
+        Set<Integer> touchedRooms = new TreeSet<>();
+        enqueued.values().forEach(p -> touchedRooms.add(DataUtil.parseInt(p.getRoomNumber())));
+        touchedRooms.forEach(room -> queueHolder.refreshQueue(room, queuePatientsService));
+
+        // Ghi phòng/thứ tự theo lô không đi qua QueuePatientsServiceImpl → tự phát sự kiện để feed delta, snapshot
+        // và bảng hàng đợi (QueueBoardPublisher gộp cả lô thành một lần dựng bảng) được cập nhật
+        // p chỉ thuộc job này: RoomQueueHolder.enqueue và TenantQueueFeed.append đều giữ bản sao riêng
+        enqueued.values().forEach(p -> eventPublisher.publishEvent(new QueuePatientChangedEvent(tenantCode, p, false)));
+
+        enqueued.values().forEach(p -> handleCallback(p.getPatientId(), DataUtil.parseInt(p.getRoomNumber()), p.getQueueOrder()));
+        return enqueued.size();
     }
 
     /**
@@ -192,6 +337,41 @@ public class AutoRoomAssignmentJob {
         });
     }
 
+    /**
+     * Nhận sự kiện thay đổi lượt khám (sau khi DB commit) và cập nhật hàng đợi trong bộ nhớ của tenant.
+     * - Thay thế cơ chế RoomWorker tự đọc lại DB mỗi giây.
+     * - fallbackExecution = true để vẫn nhận sự kiện từ các hàm không chạy trong transaction.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onQueuePatientChanged(QueuePatientChangedEvent event) {
+        if (event.getTenantCode() == null || event.getPatient() == null) return;
+
+        RoomQueueHolder queueHolder = tenantQueues.get(event.getTenantCode());
+        if (queueHolder == null) return;
+
+        queueHolder.applyChange(event.getPatient(), event.isDeleted());
+    }
+
+    /**
+     * Vòng hash tenant thay đổi: dừng worker và bỏ trạng thái của tenant không còn thuộc node này.
+     * Node mới nhận tenant sẽ dựng lại hàng đợi từ DB ở lượt dispatch đầu tiên.
+     */
+    @EventListener
+    public void onTenantShardsChanged(TenantShardsChangedEvent event) {
+        for (String tenantCode : List.copyOf(tenantQueues.keySet())) {
+            if (tenantShardManager.owns(tenantCode)) continue;
+
+            RoomQueueHolder holder = tenantQueues.remove(tenantCode);
+            if (holder != null) holder.stopAllWorkers();
+            DispatchCursor cursor = dispatchCursors.remove(tenantCode);
+            if (cursor != null) queueOrderAllocator.evictQueue(tenantCode, cursor.getQueueId());
+            reconcileCursors.remove(tenantCode);
+            reconcileDue.remove(tenantCode);
+            log.info("Tenant {} đã chuyển sang node {}, dừng RoomWorker trên node này",
+                    tenantCode, tenantShardManager.ownerOf(tenantCode).nodeId());
+        }
+    }
+
     @PreDestroy
     public void shutdownAllWorkers() {
         tenantQueues.values().forEach(RoomQueueHolder::stopAllWorkers);
@@ -5,9 +5,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.entity.CloudflareTask;
 import vn.edu.fpt.medicaldiagnosis.enums.Status;
 import vn.edu.fpt.medicaldiagnosis.repository.CloudflareTaskRepository;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.JobLeaseManager;
 
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
@@ -16,6 +18,7 @@ import java.util.List;
 
 @Slf4j
 @Component
+@JobGroup(JobGroup.TENANT_SYNC)
 public class CloudflareTaskJob {
 
     private static final int MAX_RETRIES = 3;
@@ -23,12 +26,17 @@ public class CloudflareTaskJob {
     @Autowired
     private CloudflareTaskRepository taskRepository;
 
+    @Autowired
+    private JobLeaseManager jobLeaseManager;
+
     @Value("${cloudflare.zone-id}") private String zoneId;
     @Value("${cloudflare.api-token}") private String apiToken;
     @Value("${cloudflare.ip-address}") private String ipAddress;
 
     @Scheduled(fixedDelay = 15000)
     public void processCloudflareTasks() {
+        if (!jobLeaseManager.tryAcquire("cloudflare-task")) return;
+
         List<CloudflareTask> tasks = taskRepository.findTop10ByStatusOrderByCreatedAtAsc(Status.PENDING);
 
         for (CloudflareTask task : tasks) {
@@ -4,88 +4,70 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.dto.request.DailyQueueRequest;
 import vn.edu.fpt.medicaldiagnosis.entity.DailyQueue;
-import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
 import vn.edu.fpt.medicaldiagnosis.enums.Status;
 import vn.edu.fpt.medicaldiagnosis.repository.DailyQueueRepository;
 import vn.edu.fpt.medicaldiagnosis.repository.DepartmentRepository;
 import vn.edu.fpt.medicaldiagnosis.service.DailyQueueService;
-import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.List;
 import java.util.Optional;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@JobGroup(JobGroup.DAILY)
 public class DailyQueueJob {
 
     private final DailyQueueService dailyQueueService;
-    private final TenantService tenantService;
+    private final TenantFanOutExecutor tenantFanOutExecutor;
     private final DailyQueueRepository dailyQueueRepository;
     private final DepartmentRepository departmentRepository;
 
     @Scheduled(cron = "0 0 7 * * *") // 7h sáng mỗi ngày
     public void createDailyQueue() {
-        List<Tenant> tenants = tenantService.getAllTenantsActive();
         LocalDate today = LocalDate.now();
         LocalDateTime queueDateTime = today.atTime(7, 0);
 
-        for (Tenant tenant : tenants) {
-            try {
-                TenantContext.setTenantId(tenant.getCode());
-                log.info("[{}] Bắt đầu xử lý hàng đợi ngày {}", tenant.getCode(), today);
+        tenantFanOutExecutor.forEachActiveTenant("daily-queue-open", tenant -> {
+            log.info("[{}] Bắt đầu xử lý hàng đợi ngày {}", tenant.getCode(), today);
 
-                Optional<DailyQueue> existingQueueOpt = dailyQueueRepository.findByQueueDateAndDeletedAtIsNull(queueDateTime);
+            Optional<DailyQueue> existingQueueOpt = dailyQueueRepository.findByQueueDateAndDeletedAtIsNull(queueDateTime);
 
-                if (existingQueueOpt.isPresent()) {
-                    DailyQueue existingQueue = existingQueueOpt.get();
-                    existingQueue.setStatus(Status.ACTIVE.name());
-                    dailyQueueRepository.save(existingQueue);
-                    log.info("[{}] Cập nhật hàng đợi ngày {} thành ACTIVE", tenant.getCode(), today);
-                } else {
-                    DailyQueueRequest request = DailyQueueRequest.builder()
-                            .queueDate(queueDateTime)
-                            .status(Status.ACTIVE.name())
-                            .build();
-                    dailyQueueService.createDailyQueue(request);
-                    log.info("[{}] Tạo mới hàng đợi ngày {} thành công", tenant.getCode(), today);
-                }
-            } catch (Exception e) {
-                log.error("[{}] Lỗi khi xử lý hàng đợi ngày {}: {}", tenant.getCode(), today, e.getMessage(), e);
-            } finally {
-                TenantContext.clear();
+            if (existingQueueOpt.isPresent()) {
+                DailyQueue existingQueue = existingQueueOpt.get();
+                existingQueue.setStatus(Status.ACTIVE.name());
+                dailyQueueRepository.save(existingQueue);
+                log.info("[{}] Cập nhật hàng đợi ngày {} thành ACTIVE", tenant.getCode(), today);
+            } else {
+                DailyQueueRequest request = DailyQueueRequest.builder()
+                        .queueDate(queueDateTime)
+                        .status(Status.ACTIVE.name())
+                        .build();
+                dailyQueueService.createDailyQueue(request);
+                log.info("[{}] Tạo mới hàng đợi ngày {} thành công", tenant.getCode(), today);
             }
-        }
+        });
     }
 
     @Scheduled(cron = "0 0 23 * * *") // 23h mỗi ngày
     public void closeDailyQueue() {
-        List<Tenant> tenants = tenantService.getAllTenantsActive();
+        tenantFanOutExecutor.forEachActiveTenant("daily-queue-close", tenant -> {
+            log.info("[{}] Bắt đầu đóng daily queue lúc 23h", tenant.getCode());
 
-        for (Tenant tenant : tenants) {
-            try {
-                TenantContext.setTenantId(tenant.getCode());
-                log.info("[{}] Bắt đầu đóng daily queue lúc 23h", tenant.getCode());
+            // Đóng daily queue lưc 23h
+            dailyQueueService.closeTodayQueue();
 
-                // Đóng daily queue lưc 23h
-                dailyQueueService.closeTodayQueue();
+            // Reset trạng thái quá tải phòng ban
+            int updatedCount = departmentRepository.resetOverloadFlag();
+            log.info("[{}] Đã reset trạng thái quá tải cho {} phòng ban", tenant.getCode(), updatedCount);
 
-                // Reset trạng thái quá tải phòng ban
-                int updatedCount = departmentRepository.resetOverloadFlag();
-                log.info("[{}] Đã reset trạng thái quá tải cho {} phòng ban", tenant.getCode(), updatedCount);
-
-                log.info("[{}] Đóng daily queue thành công", tenant.getCode());
-            } catch (Exception e) {
-                log.error("[{}] Lỗi khi đóng daily queue: {}", tenant.getCode(), e.getMessage(), e);
-            } finally {
-                TenantContext.clear();
-            }
-        }
+            log.info("[{}] Đóng daily queue thành công", tenant.getCode());
+        });
     }
 }
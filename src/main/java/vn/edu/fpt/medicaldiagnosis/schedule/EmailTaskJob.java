@@ -1,108 +1,227 @@
 package vn.edu.fpt.medicaldiagnosis.schedule;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
-import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
 import vn.edu.fpt.medicaldiagnosis.enums.Status;
-import vn.edu.fpt.medicaldiagnosis.repository.EmailTaskRepository;
 import vn.edu.fpt.medicaldiagnosis.service.EmailService;
-import vn.edu.fpt.medicaldiagnosis.service.TenantService;
-
-import java.util.List;
-
+import vn.edu.fpt.medicaldiagnosis.service.EmailTaskService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.JobLeaseManager;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gửi email task (DB control và DB từng tenant) theo kiểu hàng đợi nhận việc (claim).
+ *
+ * - Mỗi lượt nhận từng lô email-queue.batch-size task bằng SELECT ... FOR UPDATE SKIP LOCKED → IN_PROGRESS,
+ *   nên nhiều worker/node không gửi trùng; lặp tới khi hết task đến hạn (tối đa email-queue.max-batches-per-run lô
+ *   và không nhận lô mới sau email-queue.run-budget-ms, để lượt job kết thúc trước timeout của TenantFanOutExecutor).
+ * - Lô được chia thành các phần email-queue.chunk-size email, gửi song song trên email-queue.senders thread;
+ *   mỗi phần dùng một phiên SMTP cho tất cả email (EmailService.sendBatch).
+ * - Gửi lỗi → hẹn gửi lại theo exponential backoff (next_attempt_at), hết lượt thử → FAILED.
+ * - Task bị treo IN_PROGRESS quá email-queue.claim-timeout-seconds (node chết giữa chừng) được trả lại PENDING.
+ * - Bị interrupt (tenant quá thời gian): phần đã gửi xong vẫn được ghi nhận sent/failed để không bị gửi lại,
+ *   chỉ phần đang gửi dở bị huỷ và giữ IN_PROGRESS.
+ *
+ * Metrics:
+ * - email.tasks.processed{source,outcome} : số task theo kết quả (sent, retry, failed).
+ * - email.send.batch{source}              : thời gian gửi một phần trên một phiên SMTP.
+ * - email.tasks.backlog{source}           : số task PENDING sau lượt gần nhất.
+ */
 @Slf4j
 @Component
+@JobGroup(JobGroup.EMAIL)
 public class EmailTaskJob {
 
-    @Autowired
-    private EmailTaskRepository emailTaskRepository;
+    private static final String CONTROL_SOURCE = "control";
+
+    private final EmailTaskService emailTaskService;
+    private final EmailService emailService;
+    private final TenantFanOutExecutor tenantFanOutExecutor;
+    private final JobLeaseManager jobLeaseManager;
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+    private final int chunkSize;
+    private final int maxBatchesPerRun;
+    private final long claimTimeoutSeconds;
+    private final long runBudgetNanos;
+
+    private final ExecutorService senders;
+    private final Map<String, AtomicLong> backlog = new ConcurrentHashMap<>();
+
+    public EmailTaskJob(EmailTaskService emailTaskService,
+                        EmailService emailService,
+                        TenantFanOutExecutor tenantFanOutExecutor,
+                        JobLeaseManager jobLeaseManager,
+                        MeterRegistry meterRegistry,
+                        @Value("${email-queue.batch-size:50}") int batchSize,
+                        @Value("${email-queue.chunk-size:10}") int chunkSize,
+                        @Value("${email-queue.senders:4}") int senders,
+                        @Value("${email-queue.max-batches-per-run:20}") int maxBatchesPerRun,
+                        @Value("${email-queue.claim-timeout-seconds:600}") long claimTimeoutSeconds,
+                        @Value("${email-queue.run-budget-ms:40000}") long runBudgetMs) {
+        this.emailTaskService = emailTaskService;
+        this.emailService = emailService;
+        this.tenantFanOutExecutor = tenantFanOutExecutor;
+        this.jobLeaseManager = jobLeaseManager;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = Math.max(1, batchSize);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+        this.claimTimeoutSeconds = claimTimeoutSeconds;
+        this.runBudgetNanos = TimeUnit.MILLISECONDS.toNanos(runBudgetMs);
+        this.senders = Executors.newFixedThreadPool(Math.max(1, senders),
+                Thread.ofPlatform().name("email-sender-", 0).daemon(true).factory());
+    }
 
-    @Autowired
-    private EmailService emailService;
+    @Scheduled(fixedDelayString = "${email-queue.poll-ms:10000}")
+    public void processEmails() {
+        // Email trên DB control: chỉ node giữ lease gửi, tránh gửi trùng
+        if (!jobLeaseManager.tryAcquire("control-email")) return;
 
-    @Autowired
-    private TenantService tenantService;
+        drain(CONTROL_SOURCE);
+    }
 
-    private static final int MAX_RETRIES = 3;
+    @Scheduled(fixedDelayString = "${email-queue.tenant-poll-ms:15000}")
+    public void processEmailsForAllTenants() {
+        tenantFanOutExecutor.forEachActiveTenant("tenant-email", tenant -> drain(tenant.getCode()));
+    }
 
-    @Scheduled(fixedDelay = 10000)
-    public void processEmails() {
-//        log.info("⏰ EmailTaskJob is scanning for pending emails...");
-        List<EmailTask> tasks = emailTaskRepository.findTop10ByStatusOrderByCreatedAtAsc(Status.PENDING);
-//        log.info("Found {} pending emails", tasks.size());
-        for (EmailTask task : tasks) {
-            log.info("Processing email task: {}", task.getId());
-            try {
-                emailService.sendSimpleMail(
-                        task.getEmailTo(),
-                        task.getSubject(),
-                        task.getContent()
-                );
-
-                task.setStatus(Status.DONE);
-                log.info("Đã gửi email tới {}", task.getEmailTo());
-            } catch (Exception e) {
-                int retry = task.getRetryCount() + 1;
-                task.setRetryCount(retry);
-
-                if (retry >= MAX_RETRIES) {
-                    task.setStatus(Status.FAILED);
-                    log.error("Gửi email thất bại vĩnh viễn tới {} sau {} lần thử: {}", task.getEmailTo(), retry, e.getMessage());
-                } else {
-                    task.setStatus(Status.PENDING);
-                    log.warn("Lỗi gửi email lần {} tới {}: {}. Sẽ thử lại.", retry, task.getEmailTo(), e.getMessage());
-                }
-            }
+    /**
+     * Nhận và gửi task đến hạn của DB hiện tại (theo TenantContext) cho tới khi hết, đủ số lô tối đa
+     * hoặc hết thời gian cho phép của lượt.
+     */
+    private void drain(String source) {
+        emailTaskService.releaseStale(claimTimeoutSeconds);
+
+        long deadline = System.nanoTime() + runBudgetNanos;
+        for (int round = 0; round < maxBatchesPerRun && !Thread.currentThread().isInterrupted(); round++) {
+            List<EmailTask> batch = emailTaskService.claim(batchSize);
+            if (batch.isEmpty()) break;
 
-            emailTaskRepository.save(task);
+            sendAndRecord(source, batch);
+            if (batch.size() < batchSize || System.nanoTime() - deadline >= 0) break;
         }
+
+        backlog(source).set(emailTaskService.countPending());
     }
 
-    @Scheduled(fixedDelay = 15000) // chạy mỗi 15s để test
-    public void processEmailsForAllTenants() {
-        List<Tenant> tenants = tenantService.getAllTenantsActive();
-        for (Tenant tenant : tenants) {
-            try {
-                processEmailsForTenant(tenant.getCode());
-            } catch (Exception e) {
-                log.error("[{}] Lỗi khi xử lý email: {}", tenant.getCode(), e.getMessage(), e);
+    private void sendAndRecord(String source, List<EmailTask> batch) {
+        List<List<EmailTask>> chunks = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            chunks.add(batch.subList(from, Math.min(batch.size(), from + chunkSize)));
+        }
+
+        Timer sendTimer = Timer.builder("email.send.batch")
+                .description("Thời gian gửi một phần email trên một phiên SMTP")
+                .tag("source", source)
+                .register(meterRegistry);
+
+        List<Future<Map<String, Exception>>> futures = new ArrayList<>();
+        for (List<EmailTask> chunk : chunks) {
+            futures.add(senders.submit(() -> sendTimer.recordCallable(() -> emailService.sendBatch(chunk))));
+        }
+
+        // Cập nhật trạng thái trên luồng gọi (đang mang TenantContext), không phải trên thread gửi
+        Map<String, Exception> failures = new HashMap<>();
+        Set<String> unfinished = new HashSet<>();
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Map<String, Exception>> future = futures.get(i);
+            if (!interrupted) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignored) {
+                    // ghi nhận bên dưới theo trạng thái của future
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            List<EmailTask> chunk = chunks.get(i);
+            switch (future.state()) {
+                case SUCCESS -> failures.putAll(future.resultNow());
+                case FAILED -> {
+                    Exception cause = future.exceptionNow() instanceof Exception ex
+                            ? ex : new ExecutionException(future.exceptionNow());
+                    chunk.forEach(task -> failures.put(task.getId(), cause));
+                }
+                default -> {
+                    // Hết thời gian của tenant: phần đang gửi dở giữ IN_PROGRESS, releaseStale trả lại ở lượt sau
+                    future.cancel(true);
+                    chunk.forEach(task -> unfinished.add(task.getId()));
+                }
             }
         }
+
+        try {
+            record(source, batch, failures, unfinished);
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
     }
 
-    public void processEmailsForTenant(String tenantCode) {
-        TenantContext.setTenantId(tenantCode);
-//        log.info("[{}] Quét email PENDING...", tenantCode);
-
-        List<EmailTask> tasks = emailTaskRepository.findTop10ByStatusOrderByCreatedAtAsc(Status.PENDING);
-//        log.info("[{}] Tìm thấy {} email đang chờ gửi", tenantCode, tasks.size());
-
-        for (EmailTask task : tasks) {
-//            log.info("[{}] Đang xử lý email task: {}", tenantCode, task.getId());
-            try {
-                emailService.sendSimpleMail(task.getEmailTo(), task.getSubject(), task.getContent());
-                task.setStatus(Status.DONE);
-                log.info("[{}] ✅ Đã gửi email tới {}", tenantCode, task.getEmailTo());
-            } catch (Exception e) {
-                int retry = task.getRetryCount() + 1;
-                task.setRetryCount(retry);
-
-                if (retry >= MAX_RETRIES) {
-                    task.setStatus(Status.FAILED);
-                    log.error("[{}] ❌ Gửi thất bại tới {} sau {} lần thử: {}", tenantCode, task.getEmailTo(), retry, e.getMessage());
-                } else {
-                    task.setStatus(Status.PENDING);
-                    log.warn("[{}] ⚠️ Lỗi gửi lần {} tới {}: {}. Sẽ thử lại.", tenantCode, retry, task.getEmailTo(), e.getMessage());
-                }
+    private void record(String source, List<EmailTask> batch, Map<String, Exception> failures, Set<String> unfinished) {
+        List<String> sent = new ArrayList<>();
+        for (EmailTask task : batch) {
+            if (unfinished.contains(task.getId())) continue;
+
+            Exception error = failures.get(task.getId());
+            if (error == null) {
+                sent.add(task.getId());
+                continue;
             }
-            emailTaskRepository.save(task);
+
+            Status status = emailTaskService.markFailed(task);
+            if (status == Status.FAILED) {
+                processed(source, "failed").increment();
+                log.error("[{}] ❌ Gửi thất bại vĩnh viễn tới {}: {}", source, task.getEmailTo(), error.getMessage());
+            } else {
+                processed(source, "retry").increment();
+                log.warn("[{}] ⚠️ Lỗi gửi tới {}: {}. Sẽ thử lại sau.", source, task.getEmailTo(), error.getMessage());
+            }
+        }
+
+        emailTaskService.markSent(sent);
+        processed(source, "sent").increment(sent.size());
+        if (!sent.isEmpty()) {
+            log.info("[{}] ✅ Đã gửi {} email", source, sent.size());
         }
+    }
+
+    private Counter processed(String source, String outcome) {
+        return Counter.builder("email.tasks.processed")
+                .description("Số email task đã xử lý theo kết quả")
+                .tag("source", source)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 
-        TenantContext.clear(); // Đảm bảo reset sau mỗi tenant
+    private AtomicLong backlog(String source) {
+        return backlog.computeIfAbsent(source, s -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("email.tasks.backlog", value, AtomicLong::get)
+                    .description("Số email task PENDING còn trong hàng đợi")
+                    .tag("source", s)
+                    .register(meterRegistry);
+            return value;
+        });
     }
 
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
 }
@@ -5,12 +5,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
-import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.enums.WorkStatus;
 import vn.edu.fpt.medicaldiagnosis.repository.WorkScheduleRepository;
 import vn.edu.fpt.medicaldiagnosis.service.SettingService;
-import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -19,24 +18,16 @@ import java.time.ZonedDateTime;
 @Component
 @RequiredArgsConstructor
 @Slf4j
+@JobGroup(JobGroup.DAILY)
 public class EodAbsentJob {
-    private final TenantService tenantService;
+    private final TenantFanOutExecutor tenantFanOutExecutor;
     private final SettingService settingService; // để lấy timezone/setting mỗi tenant (nếu có)
     private final WorkScheduleRepository workScheduleRepository;
 
     // Chạy 00:05 mỗi ngày theo server; bên trong sẽ tính ngày theo timezone của tenant
     @Scheduled(cron = "0 5 0 * * *")
     public void runForAllTenants() {
-        for (Tenant t : tenantService.getAllTenantsActive()) {
-            try {
-                TenantContext.setTenantId(t.getCode());
-                runForTenant(t.getCode());
-            } catch (Exception e) {
-                log.error("[{}] ❌ EOD absent job error: {}", t.getCode(), e.getMessage(), e);
-            } finally {
-                TenantContext.clear();
-            }
-        }
+        tenantFanOutExecutor.forEachActiveTenant("eod-absent", t -> runForTenant(t.getCode()));
     }
 
     @Transactional
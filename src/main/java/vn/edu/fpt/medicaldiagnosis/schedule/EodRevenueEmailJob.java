@@ -3,15 +3,16 @@ package vn.edu.fpt.medicaldiagnosis.schedule;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
-import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.dto.request.AlertCreateRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.*;
-import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
 import vn.edu.fpt.medicaldiagnosis.enums.AlertLevel;
 import vn.edu.fpt.medicaldiagnosis.service.*;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -26,28 +27,25 @@ import java.util.stream.Collectors;
 @Component
 @RequiredArgsConstructor
 @Slf4j
+@JobGroup(JobGroup.DAILY)
 public class EodRevenueEmailJob {
 
-    private final TenantService tenantService;
+    private final TenantFanOutExecutor tenantFanOutExecutor;
     private final SettingService settingService;
     private final ChatbotService chatbotService;      // đã có method analyzeDailyRevenueEod(date)
     private final InvoiceService invoiceService;      // để lấy series/point phục vụ render email
     private final EmailService emailService;          // service gửi email HTML
     private final MetricAlertService metricAlertService;
     private final ObjectMapper objectMapper;
+
+    // Mỗi tenant gọi AI + gửi email → cho phép lâu hơn timeout mặc định của tenant-fanout
+    @Value("${tenant-fanout.eod-timeout-ms:300000}")
+    private long tenantTimeoutMs;
+
     // Chạy 00:10 mỗi ngày (theo server). Bên trong tính "ngày hôm qua" theo timezone của từng tenant
     @Scheduled(cron = "0 10 0 * * *")
     public void runForAllTenants() {
-        for (Tenant t : tenantService.getAllTenantsActive()) {
-            try {
-                TenantContext.setTenantId(t.getCode());
-                runForTenant(t.getCode());
-            } catch (Exception e) {
-                log.error("[{}] ❌ EOD revenue email error: {}", t.getCode(), e.getMessage(), e);
-            } finally {
-                TenantContext.clear();
-            }
-        }
+        tenantFanOutExecutor.forEachActiveTenant("eod-revenue-email", tenantTimeoutMs, t -> runForTenant(t.getCode()));
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,98 @@
+package vn.edu.fpt.medicaldiagnosis.schedule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
+import vn.edu.fpt.medicaldiagnosis.repository.InvalidatedTokenRepository;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dọn bảng invalidated_tokens của từng tenant: xoá token đã hết hạn giữ (hết hạn refresh) theo từng lô
+ * token-purge.batch-size dòng, mỗi lô một transaction ngắn để không khoá bảng lâu khi logout/refresh đang ghi.
+ *
+ * Metrics:
+ * - invalidated_tokens.purged{tenant} : số dòng đã xoá.
+ * - invalidated_tokens.rows{tenant}   : số dòng còn lại sau lượt dọn gần nhất.
+ */
+@Slf4j
+@Component
+@JobGroup(JobGroup.TENANT_SYNC)
+public class InvalidatedTokenPurgeJob {
+
+    private final InvalidatedTokenRepository invalidatedTokenRepository;
+    private final TenantFanOutExecutor tenantFanOutExecutor;
+    private final MeterRegistry meterRegistry;
+
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final long pauseMs;
+
+    private final Map<String, AtomicLong> rows = new ConcurrentHashMap<>();
+
+    public InvalidatedTokenPurgeJob(InvalidatedTokenRepository invalidatedTokenRepository,
+                                    TenantFanOutExecutor tenantFanOutExecutor,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${token-purge.batch-size:1000}") int batchSize,
+                                    @Value("${token-purge.max-batches-per-run:100}") int maxBatchesPerRun,
+                                    @Value("${token-purge.pause-ms:50}") long pauseMs) {
+        this.invalidatedTokenRepository = invalidatedTokenRepository;
+        this.tenantFanOutExecutor = tenantFanOutExecutor;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+        this.pauseMs = Math.max(0, pauseMs);
+    }
+
+    @Scheduled(cron = "${token-purge.cron:0 20 * * * *}")
+    public void purgeAllTenants() {
+        tenantFanOutExecutor.forEachActiveTenant("invalidated-token-purge", tenant -> purge(tenant.getCode()));
+    }
+
+    private void purge(String tenantCode) {
+        long purged = 0;
+        for (int round = 0; round < maxBatchesPerRun; round++) {
+            int deleted = invalidatedTokenRepository.deleteExpiredBatch(batchSize);
+            purged += deleted;
+            if (deleted < batchSize) break;
+
+            // Nhường khoá cho các giao dịch logout/refresh giữa các lô
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        Counter.builder("invalidated_tokens.purged")
+                .description("Số token thu hồi đã hết hạn bị xoá")
+                .tag("tenant", tenantCode)
+                .register(meterRegistry)
+                .increment(purged);
+        rows(tenantCode).set(invalidatedTokenRepository.count());
+
+        if (purged > 0) {
+            log.info("[{}] 🧹 Đã xoá {} token hết hạn khỏi invalidated_tokens", tenantCode, purged);
+        }
+    }
+
+    private AtomicLong rows(String tenantCode) {
+        return rows.computeIfAbsent(tenantCode, t -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("invalidated_tokens.rows", value, AtomicLong::get)
+                    .description("Số dòng trong invalidated_tokens sau lượt dọn gần nhất")
+                    .tag("tenant", t)
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+}
@@ -4,25 +4,33 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.entity.DbTask;
 import vn.edu.fpt.medicaldiagnosis.enums.Action;
 import vn.edu.fpt.medicaldiagnosis.enums.Status;
 import vn.edu.fpt.medicaldiagnosis.repository.DbTaskRepository;
 import vn.edu.fpt.medicaldiagnosis.service.DbTaskService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.JobLeaseManager;
 
 import java.util.List;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
+@JobGroup(JobGroup.TENANT_SYNC)
 public class ProcessPendingTasks {
 
     private final DbTaskRepository dbTaskRepository;
 
     private final DbTaskService dbTaskService;
 
+    private final JobLeaseManager jobLeaseManager;
+
     @Scheduled(fixedDelay = 1000)
     public void processPendingTasks() {
+        // Chỉ một node tạo/xoá DB tenant
+        if (!jobLeaseManager.tryAcquire("process-pending-tasks")) return;
+
         List<DbTask> tasks = dbTaskService.findByStatus(Status.PENDING);
         for (DbTask task : tasks) {
             try {
@@ -4,12 +4,15 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
+
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.stream.Stream;
 
 @Slf4j
 @Component
+@JobGroup(JobGroup.DAILY)
 public class TTSFileCleaner {
 
     private static final String TTS_DIR = "tts";
@@ -3,6 +3,7 @@ package vn.edu.fpt.medicaldiagnosis.schedule;
 import lombok.RequiredArgsConstructor;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.config.DataSourceProvider;
 import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
 import vn.edu.fpt.medicaldiagnosis.service.TenantService;
@@ -11,6 +12,7 @@ import java.util.List;
 
 @Component
 @RequiredArgsConstructor
+@JobGroup(JobGroup.DATASOURCE)
 public class TenantDataSourceCleaner {
 
     private final TenantService tenantService;
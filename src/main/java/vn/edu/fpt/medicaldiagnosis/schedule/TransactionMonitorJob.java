@@ -5,9 +5,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
 import vn.edu.fpt.medicaldiagnosis.entity.TransactionHistory;
 import vn.edu.fpt.medicaldiagnosis.repository.TransactionHistoryRepository;
 import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.JobLeaseManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -15,14 +17,18 @@ import java.util.List;
 @Slf4j
 @Component
 @RequiredArgsConstructor
+@JobGroup(JobGroup.TENANT_SYNC)
 public class TransactionMonitorJob {
 
     private final TransactionHistoryRepository transactionHistoryRepository;
     private final TenantService tenantService;
+    private final JobLeaseManager jobLeaseManager;
 
     @Scheduled(fixedDelay = 3000)
     @Transactional
     public void checkExpiredTransactions() {
+        if (!jobLeaseManager.tryAcquire("transaction-monitor")) return;
+
         LocalDateTime targetTime = LocalDateTime.now();
         List<TransactionHistory> expired = transactionHistoryRepository.findExpiredTransactions(targetTime);
         if (expired.isEmpty()) return;
@@ -1,6 +1,10 @@
 package vn.edu.fpt.medicaldiagnosis.service;
 
 import vn.edu.fpt.medicaldiagnosis.entity.EmailDetails;
+import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
+
+import java.util.List;
+import java.util.Map;
 
 // Interface
 public interface EmailService {
@@ -12,4 +16,7 @@ public interface EmailService {
 
     String sendRoomAssignmentMail(String recipient, String name, int room, long order);
 
+    // Gửi cả lô email task trên một phiên SMTP; trả về lỗi theo id task (rỗng → gửi hết)
+    Map<String, Exception> sendBatch(List<EmailTask> tasks);
+
 }
@@ -0,0 +1,26 @@
+package vn.edu.fpt.medicaldiagnosis.service;
+
+import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+
+import java.util.List;
+
+public interface EmailTaskService {
+
+    /**
+     * Nhận tối đa :limit task PENDING đã đến hạn (chuyển sang IN_PROGRESS trong cùng transaction khoá dòng).
+     */
+    List<EmailTask> claim(int limit);
+
+    void markSent(List<String> ids);
+
+    /**
+     * Ghi nhận một lần gửi lỗi: hẹn gửi lại theo exponential backoff hoặc FAILED khi hết lượt thử.
+     * @return trạng thái mới của task (PENDING hoặc FAILED)
+     */
+    Status markFailed(EmailTask task);
+
+    int releaseStale(long claimTimeoutSeconds);
+
+    long countPending();
+}
@@ -0,0 +1,10 @@
+package vn.edu.fpt.medicaldiagnosis.service;
+
+public interface QueueOrderSequenceService {
+
+    /**
+     * Cấp một khối :count số thứ tự liên tiếp cho phòng trong hàng đợi ngày.
+     * @return số lớn nhất của khối (khối là [result - count + 1, result]).
+     */
+    long allocate(String queueId, String roomNumber, int count);
+}
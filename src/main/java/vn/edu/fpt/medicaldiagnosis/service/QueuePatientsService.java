@@ -3,30 +3,45 @@ package vn.edu.fpt.medicaldiagnosis.service;
 import org.springframework.data.domain.Page;
 import org.springframework.web.multipart.MultipartFile;
 import vn.edu.fpt.medicaldiagnosis.dto.request.QueuePatientsRequest;
+import vn.edu.fpt.medicaldiagnosis.dto.request.QueueRoomAssignmentRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientCompactResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface QueuePatientsService {
     QueuePatientsResponse createQueuePatients(QueuePatientsRequest request);
     QueuePatientsResponse updateQueuePatients(String id, QueuePatientsRequest request);
     void deleteQueuePatients(String id);
     QueuePatientsResponse getQueuePatientsById(String id);
+
+    List<QueuePatientsResponse> getQueuePatientsByIds(Collection<String> ids);
     List<QueuePatientsResponse> getAllQueuePatients();
 
     List<QueuePatientsResponse> getAllQueuePatientsByStatusAndQueueId(String status, String queueId);
 
-    Long getMaxQueueOrderForRoom(String departmentId, String queueId);
-
     List<QueuePatientsResponse> getTopWaitingUnassigned(String queueId, int limit);
 
     List<QueuePatientsResponse> getAssignedPatientsForRoom(String queueId, String departmentId);
 
     boolean tryAssignPatientToRoom(String patientId, int roomId, long queueOrder);
 
+    Set<String> assignPatientsToRooms(List<QueueRoomAssignmentRequest> assignments);
+
+    List<QueuePatientsResponse> getWaitingChangedSince(String queueId, LocalDateTime sinceTime, String sinceId, int limit);
+
+    /**
+     * Thay đổi lượt khám (mọi trạng thái, kể cả xoá mềm) sau mốc (sinceTime, sinceId), không muộn hơn until,
+     * dưới dạng sự kiện của tenant hiện tại — dùng để đối soát với thay đổi ghi trên node khác.
+     */
+    List<QueuePatientChangedEvent> getChangesSince(String queueId, LocalDateTime sinceTime, String sinceId, LocalDateTime until, int limit);
+
     List<QueuePatientsResponse> getTopWaitingPriority(String queueId, int limit);
 
     Page<QueuePatientCompactResponse> searchQueuePatients(Map<String, String> filters, int page, int size, String sortBy, String sortDir);
@@ -1,12 +1,24 @@
 package vn.edu.fpt.medicaldiagnosis.service;
 
 import org.springframework.web.context.request.async.DeferredResult;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueueDeltaResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
 
 import java.util.List;
 
 public interface QueuePollingService {
+    /** Long-polling toàn bộ danh sách (tenant hiện tại). */
     DeferredResult<List<QueuePatientsResponse>> registerListener();
+
+    /** Long-polling chỉ các thay đổi sau sinceVersion (tenant hiện tại, lọc theo phòng nếu có). */
+    DeferredResult<QueueDeltaResponse> registerDeltaListener(long sinceVersion, String roomNumber);
+
+    /** Gửi danh sách đầy đủ cho các listener toàn bộ của tenant hiện tại. */
     void notifyListeners(List<QueuePatientsResponse> updatedList);
+
+    /** Tenant hiện tại có listener đang chờ danh sách đầy đủ hay không. */
     boolean hasListeners();
+
+    /** Version hiện tại của hàng đợi tenant hiện tại. */
+    long currentVersion();
 }
@@ -0,0 +1,12 @@
+package vn.edu.fpt.medicaldiagnosis.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface QueueStreamService {
+    /**
+     * Mở kết nối SSE cho màn hình hàng đợi của tenant hiện tại.
+     * @param sinceVersion version client đã có (null → client nhận "resync" và tải lại toàn bộ danh sách)
+     * @param roomNumber   chỉ nhận thay đổi của phòng này (null → toàn bộ)
+     */
+    SseEmitter subscribe(Long sinceVersion, String roomNumber);
+}
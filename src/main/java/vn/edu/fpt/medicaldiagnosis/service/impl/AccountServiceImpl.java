@@ -20,6 +20,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
+import vn.edu.fpt.medicaldiagnosis.config.PrincipalPermissionCache;
 import vn.edu.fpt.medicaldiagnosis.dto.request.AccountCreationRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.AccountUpdateRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.AccountInfoResponse;
@@ -60,6 +61,9 @@ public class AccountServiceImpl implements AccountService {
     @Autowired
     private StaffRepository staffRepository;
 
+    @Autowired
+    private PrincipalPermissionCache principalPermissionCache;
+
 
     @Transactional
     public AccountResponse createAccount(AccountCreationRequest request) {
@@ -105,7 +109,9 @@ public class AccountServiceImpl implements AccountService {
         Account updatedAccount = accountMapper.updateAccount(account, request);
 
         // Lưu và trả về
-        return accountMapper.toAccountResponse(accountRepository.save(updatedAccount));
+        AccountResponse response = accountMapper.toAccountResponse(accountRepository.save(updatedAccount));
+        principalPermissionCache.invalidateTenant();
+        return response;
     }
 
     @Override
@@ -115,6 +121,7 @@ public class AccountServiceImpl implements AccountService {
 
         account.setDeletedAt(LocalDateTime.now());
         accountRepository.save(account);
+        principalPermissionCache.invalidateTenant();
     }
 
 
@@ -247,6 +254,7 @@ public class AccountServiceImpl implements AccountService {
 
         account.setRoles(new HashSet<>(foundRoles));
         accountRepository.save(account);
+        principalPermissionCache.invalidateTenant();
 
         return accountMapper.toAccountResponse(account);
     }
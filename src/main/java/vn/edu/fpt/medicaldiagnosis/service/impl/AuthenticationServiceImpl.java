@@ -16,6 +16,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
+import vn.edu.fpt.medicaldiagnosis.config.RevokedTokenRegistry;
 import vn.edu.fpt.medicaldiagnosis.dto.request.*;
 import vn.edu.fpt.medicaldiagnosis.dto.response.AuthenticationResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.IntrospectResponse;
@@ -44,6 +45,9 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     @Autowired
     private InvalidatedTokenRepository invalidatedTokenRepository;
 
+    @Autowired
+    private RevokedTokenRegistry revokedTokenRegistry;
+
     @Autowired
     private  EmailService emailService; // bạn đã có EmailServiceImpl
 
@@ -133,12 +137,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     public void logout(LogoutRequest request) throws ParseException, JOSEException {
         try {
             SignedJWT signedJWT = verifyToken(request.getToken(), true);
-            String jwtId = signedJWT.getJWTClaimsSet().getJWTID();
-            Date expireTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-
-            InvalidatedToken invalidatedToken =
-                    InvalidatedToken.builder().id(jwtId).expireTime(expireTime).build();
-            invalidatedTokenRepository.save(invalidatedToken);
+            invalidate(signedJWT);
         } catch (AppException ex) {
             log.info("Token had already expired");
         }
@@ -146,12 +145,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
 
     public AuthenticationResponse refreshToken(RefreshTokenRequest request) throws ParseException, JOSEException {
         SignedJWT signedJWT = verifyToken(request.getToken(), true);
-        String jwtId = signedJWT.getJWTClaimsSet().getJWTID();
-        Date expireTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-
-        InvalidatedToken invalidatedToken =
-                InvalidatedToken.builder().id(jwtId).expireTime(expireTime).build();
-        invalidatedTokenRepository.save(invalidatedToken);
+        invalidate(signedJWT);
 
         String username = signedJWT.getJWTClaimsSet().getSubject();
         Account account =
@@ -168,12 +162,7 @@ public class AuthenticationServiceImpl implements AuthenticationService {
         SignedJWT signedJwt = SignedJWT.parse(token);
 
         Date expirationTime = isRefresh
-                ? new Date(signedJwt
-                        .getJWTClaimsSet()
-                        .getIssueTime()
-                        .toInstant()
-                        .plus(REFRESHABLE_DURATION, ChronoUnit.SECONDS)
-                        .toEpochMilli())
+                ? refreshableUntil(signedJwt)
                 : signedJwt.getJWTClaimsSet().getExpirationTime();
 
         //        Verifies the signature of the JWT using the verifier created earlier
@@ -182,13 +171,38 @@ public class AuthenticationServiceImpl implements AuthenticationService {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
 
-        if (invalidatedTokenRepository.existsById(signedJwt.getJWTClaimsSet().getJWTID())) {
+        if (revokedTokenRegistry.isRevoked(signedJwt.getJWTClaimsSet().getJWTID())) {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
 
         return signedJwt;
     }
 
+    /**
+     * Lưu jti vào invalidated_tokens và danh sách thu hồi trong bộ nhớ.
+     * Hạn giữ là hết hạn refresh (không phải hết hạn token), vì token hết hạn vẫn dùng được cho refreshToken tới lúc đó.
+     */
+    private void invalidate(SignedJWT signedJWT) throws ParseException {
+        String jwtId = signedJWT.getJWTClaimsSet().getJWTID();
+        Date expireTime = signedJWT.getJWTClaimsSet().getExpirationTime();
+        Date refreshableUntil = refreshableUntil(signedJWT);
+        Date retainUntil = expireTime != null && expireTime.after(refreshableUntil) ? expireTime : refreshableUntil;
+
+        InvalidatedToken invalidatedToken =
+                InvalidatedToken.builder().id(jwtId).expireTime(retainUntil).build();
+        invalidatedTokenRepository.save(invalidatedToken);
+        revokedTokenRegistry.revoke(jwtId, retainUntil);
+    }
+
+    private Date refreshableUntil(SignedJWT signedJwt) throws ParseException {
+        return new Date(signedJwt
+                .getJWTClaimsSet()
+                .getIssueTime()
+                .toInstant()
+                .plus(REFRESHABLE_DURATION, ChronoUnit.SECONDS)
+                .toEpochMilli());
+    }
+
     private String buildScope(Account account) {
         StringJoiner stringJoiner = new StringJoiner(" ");
         if (!CollectionUtils.isEmpty(account.getRoles())) {
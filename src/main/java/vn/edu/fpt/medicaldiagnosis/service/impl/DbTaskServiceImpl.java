@@ -1,8 +1,7 @@
 package vn.edu.fpt.medicaldiagnosis.service.impl;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import vn.edu.fpt.medicaldiagnosis.common.DefaultDataSeeder;
 import vn.edu.fpt.medicaldiagnosis.config.DataSourceProvider;
@@ -14,14 +13,13 @@ import vn.edu.fpt.medicaldiagnosis.repository.DbTaskRepository;
 import vn.edu.fpt.medicaldiagnosis.service.DbTaskService;
 import vn.edu.fpt.medicaldiagnosis.service.TenantService;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.Statement;
 import java.util.List;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class DbTaskServiceImpl implements DbTaskService {
 
     private final TenantService tenantService;
@@ -30,17 +28,22 @@ public class DbTaskServiceImpl implements DbTaskService {
     private final DataSourceProvider dataSourceProvider;
     private final DefaultDataSeeder defaultDataSeeder;
 
-    @Value("${database.host}")
-    private String host;
-
-    @Value("${database.port}")
-    private String port;
-
-    @Value("${spring.datasource.control.username}")
-    private String rootUsername;
-
-    @Value("${spring.datasource.control.password}")
-    private String rootPassword;
+    // Lệnh quản trị cấp server (CREATE/DROP DATABASE, CREATE USER) chạy trên pool control: cùng host, cùng tài khoản root
+    private final DataSource controlDataSource;
+
+    public DbTaskServiceImpl(TenantService tenantService,
+                             DbTaskRepository dbTaskRepository,
+                             TenantSchemaInitializer tenantSchemaInitializer,
+                             DataSourceProvider dataSourceProvider,
+                             DefaultDataSeeder defaultDataSeeder,
+                             @Qualifier("controlDataSource") DataSource controlDataSource) {
+        this.tenantService = tenantService;
+        this.dbTaskRepository = dbTaskRepository;
+        this.tenantSchemaInitializer = tenantSchemaInitializer;
+        this.dataSourceProvider = dataSourceProvider;
+        this.defaultDataSeeder = defaultDataSeeder;
+        this.controlDataSource = controlDataSource;
+    }
 
     @Override
     public void createDatabase(String tenantCode) throws Exception {
@@ -49,7 +52,7 @@ public class DbTaskServiceImpl implements DbTaskService {
             throw new Exception("Tenant not found: " + tenantCode);
         }
 
-        try (Connection conn = DriverManager.getConnection("jdbc:mysql://" + host + ":" + port, rootUsername, rootPassword);
+        try (Connection conn = controlDataSource.getConnection();
              Statement stmt = conn.createStatement()) {
 
             stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS `" + tenant.getDbName() + "`");
@@ -80,7 +83,7 @@ public class DbTaskServiceImpl implements DbTaskService {
             throw new Exception("Tenant not found: " + tenantCode);
         }
 
-        try (Connection conn = DriverManager.getConnection("jdbc:mysql://" + host + ":" + port, rootUsername, rootPassword);
+        try (Connection conn = controlDataSource.getConnection();
              Statement stmt = conn.createStatement()) {
 
             stmt.executeUpdate("DROP DATABASE IF EXISTS `" + tenant.getDbName() + "`");
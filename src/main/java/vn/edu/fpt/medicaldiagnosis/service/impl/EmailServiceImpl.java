@@ -6,16 +6,20 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import vn.edu.fpt.medicaldiagnosis.entity.EmailDetails;
+import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
 import vn.edu.fpt.medicaldiagnosis.service.EmailService;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.*;
 
 // Annotation
 @Service
@@ -62,6 +66,49 @@ public class EmailServiceImpl implements EmailService {
         }
     }
 
+    /**
+     * Gửi một lô email task. JavaMailSender.send(MimeMessage...) mở một kết nối SMTP (Transport) cho cả lô
+     * thay vì connect/đăng nhập lại cho từng email; lỗi của từng message được trả về qua MailSendException.
+     */
+    @Override
+    public Map<String, Exception> sendBatch(List<EmailTask> tasks) {
+        Map<String, Exception> failures = new HashMap<>();
+        Map<MimeMessage, String> taskIds = new IdentityHashMap<>();
+
+        for (EmailTask task : tasks) {
+            try {
+                MimeMessage mimeMessage = javaMailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+                helper.setFrom(new InternetAddress(sender, "Phần mềm quản lý bệnh viện - Medsoft"));
+                helper.setTo(task.getEmailTo());
+                helper.setSubject(task.getSubject());
+                helper.setText(task.getContent(), true);
+                taskIds.put(mimeMessage, task.getId());
+            } catch (Exception e) {
+                failures.put(task.getId(), e);
+            }
+        }
+        if (taskIds.isEmpty()) return failures;
+
+        try {
+            javaMailSender.send(taskIds.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()) {
+                taskIds.values().forEach(id -> failures.put(id, e));
+            } else {
+                failed.forEach((message, ex) -> {
+                    String id = taskIds.get(message);
+                    if (id != null) failures.put(id, ex);
+                });
+            }
+        } catch (MailException e) {
+            // Lỗi kết nối / xác thực → cả lô chưa gửi được
+            taskIds.values().forEach(id -> failures.put(id, e));
+        }
+        return failures;
+    }
+
     public String sendAccountMail(String recipient, String name, String username, String password, String url) {
         try {
             MimeMessage mimeMessage = javaMailSender.createMimeMessage();
@@ -0,0 +1,93 @@
+package vn.edu.fpt.medicaldiagnosis.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+import vn.edu.fpt.medicaldiagnosis.repository.EmailTaskRepository;
+import vn.edu.fpt.medicaldiagnosis.service.EmailTaskService;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Service
+@Slf4j
+public class EmailTaskServiceImpl implements EmailTaskService {
+
+    private final EmailTaskRepository emailTaskRepository;
+    private final int maxRetries;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+
+    public EmailTaskServiceImpl(EmailTaskRepository emailTaskRepository,
+                                @Value("${email-queue.max-retries:3}") int maxRetries,
+                                @Value("${email-queue.backoff-base-ms:30000}") long backoffBaseMs,
+                                @Value("${email-queue.backoff-max-ms:1800000}") long backoffMaxMs) {
+        this.emailTaskRepository = emailTaskRepository;
+        this.maxRetries = maxRetries;
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+    }
+
+    /**
+     * SELECT ... FOR UPDATE SKIP LOCKED rồi UPDATE sang IN_PROGRESS trong một transaction ngắn:
+     * nhiều worker/node cùng quét không nhận trùng task và không chờ khoá của nhau.
+     */
+    @Override
+    @Transactional
+    public List<EmailTask> claim(int limit) {
+        List<String> ids = emailTaskRepository.lockClaimable(limit);
+        if (ids.isEmpty()) return List.of();
+
+        emailTaskRepository.markInProgress(ids);
+        return emailTaskRepository.findAllById(ids);
+    }
+
+    @Override
+    @Transactional
+    public void markSent(List<String> ids) {
+        if (ids.isEmpty()) return;
+        emailTaskRepository.markDone(ids);
+    }
+
+    @Override
+    @Transactional
+    public Status markFailed(EmailTask task) {
+        int retry = (task.getRetryCount() == null ? 0 : task.getRetryCount()) + 1;
+
+        if (retry >= maxRetries) {
+            emailTaskRepository.markAttemptFailed(task.getId(), Status.FAILED.name(), retry, 0);
+            return Status.FAILED;
+        }
+
+        emailTaskRepository.markAttemptFailed(task.getId(), Status.PENDING.name(), retry, backoffMillis(retry));
+        return Status.PENDING;
+    }
+
+    @Override
+    @Transactional
+    public int releaseStale(long claimTimeoutSeconds) {
+        int released = emailTaskRepository.releaseStale(claimTimeoutSeconds);
+        if (released > 0) {
+            log.warn("Trả lại {} email task bị treo ở IN_PROGRESS quá {}s", released, claimTimeoutSeconds);
+        }
+        return released;
+    }
+
+    @Override
+    public long countPending() {
+        return emailTaskRepository.countPending();
+    }
+
+    /**
+     * base * 2^(retry-1), tối đa backoffMaxMs, ±20% ngẫu nhiên để các task lỗi cùng lúc không dồn lại cùng một lượt.
+     */
+    long backoffMillis(int retry) {
+        long delay = backoffBaseMs << Math.min(retry - 1, 20);
+        delay = Math.min(delay, backoffMaxMs);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return (long) (delay * jitter);
+    }
+}
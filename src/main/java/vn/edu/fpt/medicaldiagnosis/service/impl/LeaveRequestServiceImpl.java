@@ -5,12 +5,14 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 import vn.edu.fpt.medicaldiagnosis.dto.request.CreateLeaveRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.CreateLeaveRequestByTime;
 import vn.edu.fpt.medicaldiagnosis.dto.request.LeaveRequestDetailDTO;
@@ -29,6 +31,7 @@ import vn.edu.fpt.medicaldiagnosis.repository.WorkScheduleRepository;
 import vn.edu.fpt.medicaldiagnosis.service.LeaveRequestService;
 import vn.edu.fpt.medicaldiagnosis.service.SettingService;
 import vn.edu.fpt.medicaldiagnosis.specification.LeaveRequestSpecification;
+import vn.edu.fpt.medicaldiagnosis.thread.event.WorkScheduleChangedEvent;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -46,6 +49,7 @@ public class LeaveRequestServiceImpl implements LeaveRequestService {
     WorkScheduleRepository workScheduleRepository;
     ShiftRepository shiftRepository;
     SettingService settingService;
+    ApplicationEventPublisher eventPublisher;
     @Override
     public LeaveRequestResponse createLeaveRequest(CreateLeaveRequest request) {
         log.info("Service: create leave request");
@@ -175,6 +179,8 @@ public class LeaveRequestServiceImpl implements LeaveRequestService {
             }
 
             leaveRequest.setStatus(LeaveRequestStatus.APPROVED);
+            // Ca đã chuyển ON_LEAVE → danh sách nhân viên đang trong ca cần dựng lại
+            eventPublisher.publishEvent(new WorkScheduleChangedEvent(TenantContext.getTenantId()));
         } else if (request.getStatus() == LeaveRequestStatus.REJECTED) {
             leaveRequest.setStatus(LeaveRequestStatus.REJECTED);
         } else {
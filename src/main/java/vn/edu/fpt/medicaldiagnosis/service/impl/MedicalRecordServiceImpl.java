@@ -16,10 +16,10 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActor;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActorResolver;
 import vn.edu.fpt.medicaldiagnosis.dto.request.InvoiceServiceRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.MedicalRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.UpdateMedicalRecordRequest;
@@ -69,7 +69,6 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
     QueuePatientsRepository queuePatientsRepository;
     AccountService accountService;
     QueuePatientsMapper queuePatientsMapper;
-    AccountRepository accountRepository;
     DepartmentRepository departmentRepository;
     SettingService settingService;
     QueuePatientsService queuePatientsService;
@@ -77,6 +76,7 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
     DepartmentMapper departmentMapper;
     StaffMapper staffMapper;
     WorkScheduleService workScheduleService;
+    CurrentActorResolver currentActorResolver;
     @Override
     public MedicalResponse createMedicalRecord(MedicalRequest request) {
         log.info("Service: create medical record");
@@ -293,15 +293,7 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
         MedicalRecord record = medicalRecordRepository.findByIdAndDeletedAtIsNull(recordId)
                 .orElseThrow(() -> new AppException(ErrorCode.MEDICAL_RECORD_NOT_FOUND, "Không tìm thấy hồ sơ bệnh án"));
 
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null || auth.getName() == null) {
-            throw new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập");
-        }
-        String username = auth.getName();
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
-        Staff staff = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên"));
+        Staff staff = currentActorResolver.currentStaff();
 
         if (!workScheduleService.isStaffOnShiftNow(staff.getId())) {
             throw new AppException(ErrorCode.ACTION_NOT_ALLOWED, "không trong ca làm không thể thao tác");
@@ -952,13 +944,9 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
 
 
         // 2. Lấy thông tin nhân viên hiện tại
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
-
-
-        Staff staff = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên"));
+        CurrentActor actor = currentActorResolver.current();
+        Account account = actor.account();
+        Staff staff = actor.requireStaff();
 
         if (!workScheduleService.isStaffOnShiftNow(staff.getId())) {
             throw new AppException(ErrorCode.ACTION_NOT_ALLOWED, "không trong ca làm không thể thao tác");
@@ -1073,18 +1061,13 @@ public class MedicalRecordServiceImpl implements MedicalRecordService {
                 .orElseThrow(() -> new AppException(ErrorCode.MEDICAL_RECORD_NOT_FOUND, "Không tìm thấy hồ sơ bệnh án"));
 
 
-        // 2. Xác định người dùng hiện tại
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        // 2-3. Người dùng hiện tại: tài khoản và thông tin nhân viên
+        CurrentActor actor = currentActorResolver.current();
+        String username = actor.username();
         log.info("Người dùng hiện tại: {}", username);
 
-
-        // 3. Lấy tài khoản và thông tin nhân viên
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
-
-
-        Staff staff = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên"));
+        Account account = actor.account();
+        Staff staff = actor.requireStaff();
 
         if (!workScheduleService.isStaffOnShiftNow(staff.getId())) {
             throw new AppException(ErrorCode.ACTION_NOT_ALLOWED, "không trong ca làm không thể thao tác");
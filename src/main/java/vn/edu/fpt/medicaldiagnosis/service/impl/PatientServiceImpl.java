@@ -10,6 +10,7 @@ import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
+import vn.edu.fpt.medicaldiagnosis.config.PrincipalPermissionCache;
 import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 import vn.edu.fpt.medicaldiagnosis.dto.request.AccountCreationRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.PatientRequest;
@@ -58,6 +59,7 @@ public class PatientServiceImpl implements PatientService {
     QueuePatientsService queuePatientsService;
     EmailTaskRepository emailTaskRepository;
     AccountRepository accountRepository;
+    PrincipalPermissionCache principalPermissionCache;
 
     @Override
     @Transactional
@@ -137,6 +139,8 @@ public class PatientServiceImpl implements PatientService {
             optionalAccount.ifPresent(account -> {
                 account.setDeletedAt(LocalDateTime.now());
                 accountRepository.save(account);
+                // Tài khoản đã xoá phải bị từ chối ngay ở request kế tiếp, không chờ hết TTL của cache quyền
+                principalPermissionCache.invalidateTenant();
             });
         }
     }
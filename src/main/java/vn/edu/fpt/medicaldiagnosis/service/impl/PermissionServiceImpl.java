@@ -14,6 +14,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import vn.edu.fpt.medicaldiagnosis.config.PrincipalPermissionCache;
 import vn.edu.fpt.medicaldiagnosis.dto.request.PermissionRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.GroupedPermissionResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.PermissionResponse;
@@ -34,6 +35,9 @@ public class PermissionServiceImpl implements PermissionService {
     @Autowired
     private PermissionMapper permissionMapper;
 
+    @Autowired
+    private PrincipalPermissionCache principalPermissionCache;
+
     public PermissionResponse createPermission(PermissionRequest request) {
         if (permissionRepository.countIncludingDeleted(request.getName()) > 0) {
             throw new AppException(ErrorCode.PERMISSION_ALREADY_EXISTS);
@@ -57,7 +61,9 @@ public class PermissionServiceImpl implements PermissionService {
         permission.setDescription(request.getDescription());
         permission.setGroupName(request.getGroupName());
 
-        return permissionMapper.toPermissionResponse(permissionRepository.save(permission));
+        PermissionResponse response = permissionMapper.toPermissionResponse(permissionRepository.save(permission));
+        principalPermissionCache.invalidateTenant();
+        return response;
     }
 
 
@@ -68,6 +74,7 @@ public class PermissionServiceImpl implements PermissionService {
 
         permission.setDeletedAt(LocalDateTime.now());
         permissionRepository.save(permission);
+        principalPermissionCache.invalidateTenant();
     }
 
 
@@ -0,0 +1,43 @@
+package vn.edu.fpt.medicaldiagnosis.service.impl;
+
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import vn.edu.fpt.medicaldiagnosis.exception.AppException;
+import vn.edu.fpt.medicaldiagnosis.exception.ErrorCode;
+import vn.edu.fpt.medicaldiagnosis.repository.QueueOrderSequenceRepository;
+import vn.edu.fpt.medicaldiagnosis.service.QueueOrderSequenceService;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class QueueOrderSequenceServiceImpl implements QueueOrderSequenceService {
+
+    private final QueueOrderSequenceRepository queueOrderSequenceRepository;
+
+    /**
+     * UPDATE + SELECT LAST_INSERT_ID() phải chạy trên cùng một kết nối → cùng transaction.
+     * Transaction chỉ khoá một dòng queue_order_sequences nên rất ngắn, không còn khoá gap trên queue_patients.
+     */
+    @Override
+    @Transactional
+    public long allocate(String queueId, String roomNumber, int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be >= 1");
+        }
+
+        int updated = queueOrderSequenceRepository.increment(queueId, roomNumber, count);
+        if (updated == 0) {
+            // Phòng chưa có bộ đếm trong ngày → khởi tạo từ dữ liệu hiện có rồi tăng lại
+            queueOrderSequenceRepository.seedFromQueuePatients(queueId, roomNumber);
+            updated = queueOrderSequenceRepository.increment(queueId, roomNumber, count);
+            log.info("Khởi tạo bộ đếm queueOrder cho phòng {} (queue {})", roomNumber, queueId);
+        }
+        if (updated == 0) {
+            throw new AppException(ErrorCode.QUEUE_ORDER_CONFLICT, "Không thể cấp queueOrder cho phòng " + roomNumber);
+        }
+
+        return queueOrderSequenceRepository.lastInsertId();
+    }
+}
@@ -5,17 +5,20 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import vn.edu.fpt.medicaldiagnosis.config.CallbackRegistry;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActor;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActorResolver;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 import vn.edu.fpt.medicaldiagnosis.dto.request.QueuePatientsRequest;
-import vn.edu.fpt.medicaldiagnosis.dto.response.DepartmentResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.request.QueueRoomAssignmentRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientCompactResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
 import vn.edu.fpt.medicaldiagnosis.entity.*;
@@ -28,6 +31,8 @@ import vn.edu.fpt.medicaldiagnosis.repository.*;
 import vn.edu.fpt.medicaldiagnosis.service.*;
 import vn.edu.fpt.medicaldiagnosis.specification.PatientSpecification;
 import vn.edu.fpt.medicaldiagnosis.specification.QueuePatientsSpecification;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.QueueBoardSnapshotCache;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -50,11 +55,11 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
     private final DailyQueueRepository dailyQueueRepository;
     private final PatientRepository patientRepository;
     private final CallbackRegistry callbackRegistry;
-    private final QueuePollingService queuePollingService;
     private final DepartmentRepository departmentRepository;
-    private final AccountRepository accountRepository;
     private final WorkScheduleService workScheduleService;
-    private final DepartmentService departmentService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QueueBoardSnapshotCache queueBoardSnapshotCache;
+    private final CurrentActorResolver currentActorResolver;
     /**
      * Tạo mới lượt khám cho bệnh nhân.
      * Nếu truyền vào roomNumber hoặc queueOrder → đánh dấu là lượt khám ưu tiên
@@ -120,15 +125,8 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
         // - Ưu tiên nếu đăng ký cho ngày tương lai
         boolean isPriority = registeredTime.toLocalDate().isAfter(LocalDate.now());
 
-        // 9. Xác định người dùng hiện tại
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-
-        // 10. Lấy tài khoản và thông tin nhân viên
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
-
-        Staff currentStaff = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên"));
+        // 9-10. Nhân viên đang đăng nhập (xác định một lần cho cả request)
+        Staff currentStaff = currentActorResolver.currentStaff();
 
         if (!workScheduleService.isStaffOnShiftNow(currentStaff.getId())) {
             throw new AppException(ErrorCode.ACTION_NOT_ALLOWED, "không trong ca làm không thể thao tác");
@@ -150,6 +148,7 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
 
         // 12. Đăng ký callback theo dõi thay đổi để hỗ trợ realtime update (nếu có)
         callbackRegistry.register(saved.getPatientId());
+        publishQueueChange(saved, false);
 
         // 13. Trả về response DTO
         return queuePatientsMapper.toResponse(saved);
@@ -235,8 +234,8 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
         }
 
         QueuePatients updated = queuePatientsRepository.save(entity);
-
-        queuePollingService.notifyListeners(getAllQueuePatients());
+        // Bảng hàng đợi được cập nhật (gộp theo tenant) bởi QueueBoardPublisher sau khi commit
+        publishQueueChange(updated, false);
         return queuePatientsMapper.toResponse(updated);
     }
 
@@ -250,6 +249,7 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
 
         entity.setDeletedAt(LocalDateTime.now());
         queuePatientsRepository.save(entity);
+        publishQueueChange(entity, true);
 
         log.info("Đã soft delete bệnh nhân {}", entity.getPatientId());
     }
@@ -263,6 +263,18 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
                 .orElseThrow(() -> new AppException(ErrorCode.QUEUE_PATIENT_NOT_FOUND)));
     }
 
+    /**
+     * Lấy nhiều lượt khám (chưa xoá) bằng một truy vấn, bỏ qua id không tồn tại.
+     */
+    @Override
+    public List<QueuePatientsResponse> getQueuePatientsByIds(Collection<String> ids) {
+        if (ids.isEmpty()) return List.of();
+        return queuePatientsRepository.findAllById(ids).stream()
+                .filter(queuePatient -> queuePatient.getDeletedAt() == null)
+                .map(queuePatientsMapper::toResponse)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Lấy toàn bộ danh sách bệnh nhân của queue hiện tại trong ngày
      */
@@ -273,17 +285,32 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
             throw new AppException(ErrorCode.QUEUE_NOT_FOUND);
         }
 
-        return queuePatientsRepository.findAllByQueueId(todayQueueId)
-                .stream()
+        // Bảng hàng đợi được gọi sau mỗi thay đổi → dùng snapshot ngắn hạn, huỷ theo QueuePatientChangedEvent
+        return queueBoardSnapshotCache.get(TenantContext.getTenantId(), todayQueueId,
+                () -> toResponsesWithFullName(queuePatientsRepository.findAllByQueueId(todayQueueId)));
+    }
+
+    /**
+     * Map sang response kèm fullName, nạp bệnh nhân bằng MỘT truy vấn findAllById thay vì mỗi dòng một truy vấn.
+     */
+    private List<QueuePatientsResponse> toResponsesWithFullName(List<QueuePatients> queuePatients) {
+        Map<String, Patient> patientMap = patientRepository.findAllById(
+                queuePatients.stream()
+                        .map(QueuePatients::getPatientId)
+                        .filter(Objects::nonNull)
+                        .distinct()
+                        .toList()
+        ).stream()
+                .filter(patient -> patient.getDeletedAt() == null)
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+
+        return queuePatients.stream()
                 .map(queuePatient -> {
                     QueuePatientsResponse response = queuePatientsMapper.toResponse(queuePatient);
-
-                    // Gọi sang PatientService để lấy fullName
-                    Optional<Patient> patientOpt = patientRepository.findByIdAndDeletedAtIsNull(queuePatient.getPatientId());
-                    patientOpt.ifPresent(patient -> {
+                    Patient patient = patientMap.get(queuePatient.getPatientId());
+                    if (patient != null) {
                         response.setFullName(patient.getFullNameSafe());
-                    });
-
+                    }
                     return response;
                 })
                 .collect(Collectors.toList());
@@ -300,17 +327,6 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
                 .map(queuePatientsMapper::toResponse)
                 .collect(Collectors.toList());
     }
-
-    /**
-     * Lấy queueOrder lớn nhất trong một phòng khám
-     */
-    @Transactional
-    @Override
-    public Long getMaxQueueOrderForRoom(String roomNumber, String queueId) {
-        Long max = queuePatientsRepository.findMaxQueueOrderByRoom(roomNumber, queueId);
-        return (max != null) ? max : 0L;
-    }
-
     /**
      * Lấy danh sách bệnh nhân chưa được phân phòng và không phải ưu tiên
      */
@@ -350,6 +366,45 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
         return updated > 0;
     }
 
+    /**
+     * Gán phòng + queueOrder cho nhiều bệnh nhân trong cùng một transaction.
+     * @return tập id lượt khám được cập nhật thành công
+     */
+    @Transactional
+    @Override
+    public Set<String> assignPatientsToRooms(List<QueueRoomAssignmentRequest> assignments) {
+        Set<String> assigned = new HashSet<>();
+        for (QueueRoomAssignmentRequest assignment : assignments) {
+            int updated = queuePatientsRepository.tryAssignRoom(
+                    assignment.getQueuePatientId(),
+                    String.valueOf(assignment.getRoomNumber()),
+                    assignment.getQueueOrder()
+            );
+            if (updated > 0) {
+                assigned.add(assignment.getQueuePatientId());
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Lấy các bệnh nhân WAITING thay đổi sau watermark (updated_at, id), tối đa limit bản ghi.
+     */
+    @Override
+    public List<QueuePatientsResponse> getWaitingChangedSince(String queueId, LocalDateTime sinceTime, String sinceId, int limit) {
+        return queuePatientsRepository.findWaitingChangedSince(queueId, sinceTime, sinceId, limit).stream()
+                .map(queuePatientsMapper::toResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<QueuePatientChangedEvent> getChangesSince(String queueId, LocalDateTime sinceTime, String sinceId, LocalDateTime until, int limit) {
+        String tenantCode = TenantContext.getTenantId();
+        return queuePatientsRepository.findChangedSince(queueId, sinceTime, sinceId, until, limit).stream()
+                .map(entity -> new QueuePatientChangedEvent(tenantCode, queuePatientsMapper.toResponse(entity), entity.getDeletedAt() != null))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public List<QueuePatientsResponse> getTopWaitingPriority(String queueId, int limit) {
         return queuePatientsRepository.findTopPriorityWaiting(queueId, limit).stream()
@@ -450,16 +505,10 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
         QueuePatients entity = queuePatientsRepository.findByIdAndDeletedAtIsNull(id)
                 .orElseThrow(() -> new AppException(ErrorCode.QUEUE_PATIENT_NOT_FOUND));
 
-        // 1) Xác định người dùng hiện tại
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        log.info("Người dùng hiện tại: {}", username);
-
-        // 2) Lấy account + staff + check ca làm
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
-
-        Staff staff = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên"));
+        // 1-2) Nhân viên đang đăng nhập + check ca làm
+        CurrentActor actor = currentActorResolver.current();
+        log.info("Người dùng hiện tại: {}", actor.username());
+        Staff staff = actor.requireStaff();
 
         if (!workScheduleService.isStaffOnShiftNow(staff.getId())) {
             throw new AppException(ErrorCode.ACTION_NOT_ALLOWED, "không trong ca làm không thể thao tác");
@@ -491,13 +540,24 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
         log.info("Chuyển trạng thái bệnh nhân {} từ {} → {}", entity.getPatientId(), oldStatus, newStatus);
 
         queuePatientsRepository.save(entity);
-        queuePollingService.notifyListeners(getAllQueuePatients());
-        DepartmentResponse departmentResponse = departmentService.getDepartmentByRoomNumber(entity.getRoomNumber());
-        queuePollingService.notifyListeners(getAllQueuePatientsByRoomNumber(departmentResponse.getId()));
+        // Bảng hàng đợi được cập nhật (gộp theo tenant) bởi QueueBoardPublisher sau khi commit
+        publishQueueChange(entity, false);
 
         return queuePatientsMapper.toResponse(entity);
     }
 
+    /**
+     * Phát sự kiện thay đổi lượt khám cho hàng đợi trong bộ nhớ (RoomQueueHolder/RoomWorker).
+     * Listener chạy sau commit nên RoomWorker không cần tự đọc lại DB.
+     */
+    private void publishQueueChange(QueuePatients entity, boolean deleted) {
+        eventPublisher.publishEvent(new QueuePatientChangedEvent(
+                TenantContext.getTenantId(),
+                queuePatientsMapper.toResponse(entity),
+                deleted
+        ));
+    }
+
     private void ensureQueueOrderIsValid(QueuePatients queuePatients) {
         String queueId = queuePatients.getQueueId();
         String roomNumber = queuePatients.getRoomNumber();
@@ -685,15 +745,7 @@ public class QueuePatientsServiceImpl implements QueuePatientsService {
 
         String roomNumber = department.getRoomNumber();
 
-        return queuePatientsRepository.findAllByQueueIdAndRoomNumber(todayQueueId, roomNumber)
-                .stream()
-                .map(queuePatient -> {
-                    QueuePatientsResponse response = queuePatientsMapper.toResponse(queuePatient);
-                    patientRepository.findByIdAndDeletedAtIsNull(queuePatient.getPatientId())
-                            .ifPresent(patient -> response.setFullName(patient.getFullNameSafe()));
-                    return response;
-                })
-                .collect(Collectors.toList());
+        return toResponsesWithFullName(queuePatientsRepository.findAllByQueueIdAndRoomNumber(todayQueueId, roomNumber));
     }
 
 }
@@ -1,51 +1,140 @@
 package vn.edu.fpt.medicaldiagnosis.service.impl;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.core.task.TaskExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.request.async.DeferredResult;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueueDeltaResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
 import vn.edu.fpt.medicaldiagnosis.service.QueuePollingService;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueueFeedUpdatedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.QueueFeedRegistry;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantQueueFeed;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Long-polling cho bảng hàng đợi, tách riêng theo tenant.
+ *
+ * - Chế độ toàn bộ (/polling): giữ nguyên hành vi cũ nhưng chỉ thông báo cho listener của đúng tenant.
+ * - Chế độ delta (/polling?sinceVersion=): đọc từ TenantQueueFeed của tenant (QueueFeedRegistry);
+ *   listener chỉ nhận các lượt khám thay đổi → payload và truy vấn O(delta) thay vì O(queue).
+ */
 @Slf4j
 @Service
 public class QueuePollingServiceImpl implements QueuePollingService {
 
-    @Autowired
-    @Qualifier("deferredResultExecutor")
-    private TaskExecutor deferredResultExecutor;
+    private final QueueFeedRegistry queueFeedRegistry;
+    private final long timeoutMs;
 
-    private final Set<DeferredResult<List<QueuePatientsResponse>>> listeners = new CopyOnWriteArraySet<>();
+    // tenant → listener chế độ toàn bộ
+    private final Map<String, Set<DeferredResult<List<QueuePatientsResponse>>>> listeners = new ConcurrentHashMap<>();
+
+    // tenant → listener chế độ delta
+    private final Map<String, Set<DeltaListener>> deltaListeners = new ConcurrentHashMap<>();
+
+    private record DeltaListener(DeferredResult<QueueDeltaResponse> result, long sinceVersion, String roomNumber) {}
+
+    public QueuePollingServiceImpl(QueueFeedRegistry queueFeedRegistry,
+                                   @Value("${queue-polling.timeout-ms:30000}") long timeoutMs) {
+        this.queueFeedRegistry = queueFeedRegistry;
+        this.timeoutMs = timeoutMs;
+    }
 
     @Override
     public DeferredResult<List<QueuePatientsResponse>> registerListener() {
-        DeferredResult<List<QueuePatientsResponse>> result = new DeferredResult<>(30000L); // 30 giây timeout
+        DeferredResult<List<QueuePatientsResponse>> result = new DeferredResult<>(timeoutMs);
+        Set<DeferredResult<List<QueuePatientsResponse>>> tenantListeners =
+                listeners.computeIfAbsent(currentTenant(), t -> ConcurrentHashMap.newKeySet());
+
+        tenantListeners.add(result);
+
+        result.onCompletion(() -> tenantListeners.remove(result));
+        result.onTimeout(() -> tenantListeners.remove(result));
+        result.onError((e) -> tenantListeners.remove(result));
+
+        return result;
+    }
 
-        deferredResultExecutor.execute(() -> listeners.add(result)); // chạy trong thread pool riêng
+    @Override
+    public DeferredResult<QueueDeltaResponse> registerDeltaListener(long sinceVersion, String roomNumber) {
+        String tenantCode = currentTenant();
+        TenantQueueFeed feed = queueFeedRegistry.feed(tenantCode);
+        DeferredResult<QueueDeltaResponse> result = new DeferredResult<>(timeoutMs);
 
-        result.onCompletion(() -> listeners.remove(result));
-        result.onTimeout(() -> listeners.remove(result));
-        result.onError((e) -> listeners.remove(result));
+        // Đã có thay đổi (hoặc cần resync) → trả về ngay, không cần chờ
+        QueueDeltaResponse ready = feed.deltaSince(sinceVersion, roomNumber);
+        if (ready != null) {
+            result.setResult(ready);
+            return result;
+        }
 
+        Set<DeltaListener> tenantListeners = deltaListeners.computeIfAbsent(tenantCode, t -> ConcurrentHashMap.newKeySet());
+        DeltaListener listener = new DeltaListener(result, sinceVersion, roomNumber);
+        tenantListeners.add(listener);
+
+        result.onCompletion(() -> tenantListeners.remove(listener));
+        result.onTimeout(() -> result.setResult(feed.empty()));
+        result.onError((e) -> tenantListeners.remove(listener));
+
+        // Thay đổi đến giữa lúc kiểm tra và lúc đăng ký
+        if (feed.version() != sinceVersion) {
+            completeDelta(feed, listener);
+        }
         return result;
     }
 
     @Override
     public void notifyListeners(List<QueuePatientsResponse> updatedList) {
-        for (DeferredResult<List<QueuePatientsResponse>> listener : listeners) {
+        Set<DeferredResult<List<QueuePatientsResponse>>> tenantListeners = listeners.get(currentTenant());
+        if (tenantListeners == null) return;
+
+        for (DeferredResult<List<QueuePatientsResponse>> listener : tenantListeners) {
             listener.setResult(updatedList);
+            tenantListeners.remove(listener);
         }
-        listeners.clear();
     }
 
     @Override
     public boolean hasListeners() {
-        return !listeners.isEmpty();
+        Set<DeferredResult<List<QueuePatientsResponse>>> tenantListeners = listeners.get(currentTenant());
+        return tenantListeners != null && !tenantListeners.isEmpty();
+    }
+
+    @Override
+    public long currentVersion() {
+        return queueFeedRegistry.feed(currentTenant()).version();
+    }
+
+    /**
+     * Trả kết quả cho các listener delta đang chờ của tenant vừa có thay đổi.
+     */
+    @EventListener
+    public void onQueueFeedUpdated(QueueFeedUpdatedEvent event) {
+        Set<DeltaListener> tenantListeners = deltaListeners.get(event.getTenantCode());
+        if (tenantListeners == null || tenantListeners.isEmpty()) return;
+
+        TenantQueueFeed feed = queueFeedRegistry.feed(event.getTenantCode());
+        for (DeltaListener listener : new ArrayList<>(tenantListeners)) {
+            completeDelta(feed, listener);
+        }
+    }
+
+    private void completeDelta(TenantQueueFeed feed, DeltaListener listener) {
+        QueueDeltaResponse delta = feed.deltaSince(listener.sinceVersion(), listener.roomNumber());
+        if (delta != null) {
+            listener.result().setResult(delta);
+        }
+    }
+
+    private static String currentTenant() {
+        String tenantCode = TenantContext.getTenantId();
+        return tenantCode != null ? tenantCode : "";
     }
 }
@@ -0,0 +1,103 @@
+package vn.edu.fpt.medicaldiagnosis.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import vn.edu.fpt.medicaldiagnosis.common.JobGroup;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.exception.AppException;
+import vn.edu.fpt.medicaldiagnosis.exception.ErrorCode;
+import vn.edu.fpt.medicaldiagnosis.service.QueueStreamService;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueueFeedUpdatedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.QueueFeedRegistry;
+import vn.edu.fpt.medicaldiagnosis.thread.worker.QueueStreamClient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kênh đẩy SSE cho màn hình hàng đợi / màn hình phòng.
+ *
+ * - Client kết nối GET /queue-patients/stream (tuỳ chọn roomNumber, sinceVersion hoặc header Last-Event-ID để nối lại).
+ * - Mỗi thay đổi (QueueFeedUpdatedEvent) chỉ đánh thức các client của đúng tenant; dữ liệu gửi là delta từ TenantQueueFeed.
+ * - Kết nối không giữ thread (servlet async); việc ghi chạy trên queueStreamExecutor, mỗi client tối đa 1 task.
+ */
+@Slf4j
+@Service
+@JobGroup(JobGroup.QUEUE)
+public class QueueStreamServiceImpl implements QueueStreamService {
+
+    private final QueueFeedRegistry queueFeedRegistry;
+    private final TaskExecutor queueStreamExecutor;
+    private final long timeoutMs;
+    private final int maxClients;
+
+    // tenant → client đang kết nối
+    private final Map<String, Set<QueueStreamClient>> clients = new ConcurrentHashMap<>();
+    private final AtomicInteger connected = new AtomicInteger();
+
+    public QueueStreamServiceImpl(QueueFeedRegistry queueFeedRegistry,
+                                  @Qualifier("queueStreamExecutor") TaskExecutor queueStreamExecutor,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${queue-stream.timeout-ms:1800000}") long timeoutMs,
+                                  @Value("${queue-stream.max-clients:5000}") int maxClients) {
+        this.queueFeedRegistry = queueFeedRegistry;
+        this.queueStreamExecutor = queueStreamExecutor;
+        this.timeoutMs = timeoutMs;
+        this.maxClients = maxClients;
+        meterRegistry.gauge("queue.stream.clients", connected);
+    }
+
+    @Override
+    public SseEmitter subscribe(Long sinceVersion, String roomNumber) {
+        String tenantCode = TenantContext.getTenantId();
+        if (tenantCode == null) {
+            throw new AppException(ErrorCode.TENANT_NOT_FOUND);
+        }
+        if (connected.get() >= maxClients) {
+            throw new AppException(ErrorCode.TOO_MANY_STREAM_CLIENTS);
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Set<QueueStreamClient> tenantClients = clients.computeIfAbsent(tenantCode, t -> ConcurrentHashMap.newKeySet());
+
+        // sinceVersion = -1 → chắc chắn nhỏ hơn nhật ký → client nhận "resync" ngay khi kết nối
+        QueueStreamClient client = new QueueStreamClient(tenantCode, roomNumber, emitter,
+                queueFeedRegistry.feed(tenantCode), sinceVersion != null ? sinceVersion : -1L,
+                queueStreamExecutor, c -> {
+                    if (tenantClients.remove(c)) connected.decrementAndGet();
+                });
+
+        tenantClients.add(client);
+        connected.incrementAndGet();
+
+        emitter.onCompletion(client::close);
+        emitter.onTimeout(client::close);
+        emitter.onError(e -> client.close());
+
+        // Gửi ngay phần thay đổi client còn thiếu (hoặc resync); nếu đã cập nhật thì chỉ gửi heartbeat mở kết nối
+        client.signal();
+        client.heartbeat();
+        return emitter;
+    }
+
+    @EventListener
+    public void onQueueFeedUpdated(QueueFeedUpdatedEvent event) {
+        Set<QueueStreamClient> tenantClients = clients.get(event.getTenantCode());
+        if (tenantClients == null) return;
+        tenantClients.forEach(QueueStreamClient::signal);
+    }
+
+    @Scheduled(fixedDelayString = "${queue-stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        clients.values().forEach(tenantClients -> tenantClients.forEach(QueueStreamClient::heartbeat));
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
+import vn.edu.fpt.medicaldiagnosis.config.PrincipalPermissionCache;
 import vn.edu.fpt.medicaldiagnosis.dto.request.RolePermissionRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.RoleRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.RoleResponse;
@@ -46,6 +47,9 @@ public class RoleServiceImpl implements RoleService {
     @Autowired
     private PermissionMapper permissionMapper;
 
+    @Autowired
+    private PrincipalPermissionCache principalPermissionCache;
+
     public RoleResponse createRole(RoleRequest request) {
         if (roleRepository.countIncludingDeleted(request.getName()) > 0) {
             throw new AppException(ErrorCode.ROLE_ALREADY_EXISTS);
@@ -75,6 +79,7 @@ public class RoleServiceImpl implements RoleService {
                 .orElseThrow(() -> new AppException(ErrorCode.ROLE_NOT_FOUND));
         role.setDeletedAt(LocalDateTime.now());
         roleRepository.save(role);
+        principalPermissionCache.invalidateTenant();
     }
 
 
@@ -98,6 +103,7 @@ public class RoleServiceImpl implements RoleService {
         }
 
         Role updated = roleRepository.save(role);
+        principalPermissionCache.invalidateTenant();
 
         return roleMapper.toRoleResponse(updated);
     }
@@ -10,8 +10,8 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActorResolver;
 import vn.edu.fpt.medicaldiagnosis.dto.request.RoomTransferRequestDTO;
 import vn.edu.fpt.medicaldiagnosis.dto.response.MedicalRecordResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.RoomTransferResponseDTO;
@@ -37,12 +37,11 @@ import java.util.Map;
 public class RoomTransferServiceImpl implements RoomTransferService {
     MedicalRecordRepository medicalRecordRepository;
     RoomTransferHistoryRepository roomTransferHistoryRepository;
-    StaffRepository staffRepository;
-    AccountRepository accountRepository;
     DepartmentRepository departmentRepository;
     DepartmentMapper departmentMapper;
     StaffMapper staffMapper;
     WorkScheduleService workScheduleService;
+    CurrentActorResolver currentActorResolver;
     @Override
     public RoomTransferResponseDTO createTransfer(String medicalRecordId, RoomTransferRequestDTO request) {
         log.info("Service: create room transfer");
@@ -51,11 +50,7 @@ public class RoomTransferServiceImpl implements RoomTransferService {
                 .orElseThrow(() -> new AppException(ErrorCode.MEDICAL_RECORD_NOT_FOUND, "Không tìm thấy hồ sơ bệnh án"));
 
         // 2) Current staff (transferredBy)
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
-        Staff transferredBy = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên"));
+        Staff transferredBy = currentActorResolver.currentStaff();
 
         if (!workScheduleService.isStaffOnShiftNow(transferredBy.getId())) {
             throw new AppException(ErrorCode.ACTION_NOT_ALLOWED, "không trong ca làm không thể thao tác");
@@ -3,12 +3,14 @@ package vn.edu.fpt.medicaldiagnosis.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 import vn.edu.fpt.medicaldiagnosis.dto.request.ShiftRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.ShiftResponse;
 import vn.edu.fpt.medicaldiagnosis.entity.Shift;
@@ -18,6 +20,7 @@ import vn.edu.fpt.medicaldiagnosis.mapper.ShiftMapper;
 import vn.edu.fpt.medicaldiagnosis.repository.ShiftRepository;
 import vn.edu.fpt.medicaldiagnosis.service.ShiftService;
 import vn.edu.fpt.medicaldiagnosis.specification.ShiftSpecification;
+import vn.edu.fpt.medicaldiagnosis.thread.event.WorkScheduleChangedEvent;
 
 import java.util.List;
 import java.util.Map;
@@ -32,6 +35,7 @@ import static lombok.AccessLevel.PRIVATE;
 public class ShiftServiceImpl implements ShiftService {
     ShiftRepository shiftRepository;
     ShiftMapper shiftMapper;
+    ApplicationEventPublisher eventPublisher;
     @Override
     public ShiftResponse create(ShiftRequest request) {
         log.info("Service: create shift");
@@ -72,6 +76,8 @@ public class ShiftServiceImpl implements ShiftService {
         shiftMapper.updateEntityFromRequest(request, shift); // mapper update fields
 
         shift = shiftRepository.save(shift);
+        // Giờ ca thay đổi → danh sách nhân viên đang trong ca cần dựng lại
+        eventPublisher.publishEvent(new WorkScheduleChangedEvent(TenantContext.getTenantId()));
         return shiftMapper.toResponse(shift);
     }
 
@@ -82,6 +88,7 @@ public class ShiftServiceImpl implements ShiftService {
         Shift shift = shiftRepository.findById(id)
                 .orElseThrow(() -> new AppException(ErrorCode.SHIFT_NOT_FOUND));
         shiftRepository.delete(shift);
+        eventPublisher.publishEvent(new WorkScheduleChangedEvent(TenantContext.getTenantId()));
     }
 
     @Override
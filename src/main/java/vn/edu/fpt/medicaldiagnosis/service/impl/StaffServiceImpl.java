@@ -12,6 +12,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
+import vn.edu.fpt.medicaldiagnosis.config.PrincipalPermissionCache;
 import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 import vn.edu.fpt.medicaldiagnosis.dto.request.AccountCreationRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.StaffCreateRequest;
@@ -57,6 +58,7 @@ public class StaffServiceImpl implements StaffService {
     AccountRepository accountRepository;
     RoleRepository roleRepository;
     EmailTaskRepository emailTaskRepository;
+    PrincipalPermissionCache principalPermissionCache;
     @Override
     public StaffResponse createStaff(StaffCreateRequest staffCreateRequest) {
         log.info("Service: create staff");
@@ -140,6 +142,8 @@ public class StaffServiceImpl implements StaffService {
                 account.setDeletedAt(LocalDateTime.now());
                 accountRepository.save(account);
                 log.info("Deleted linked account: {}", account.getUsername());
+                // Tài khoản đã xoá phải bị từ chối ngay ở request kế tiếp, không chờ hết TTL của cache quyền
+                principalPermissionCache.invalidateTenant();
             });
         }
     }
@@ -177,6 +181,7 @@ public class StaffServiceImpl implements StaffService {
 
             account.setRoles(updatedRoles);
             accountRepository.save(account);
+            principalPermissionCache.invalidateTenant();
         }
 
         return mapToStaffResponseWithRoles(staffRepository.save(staff));
@@ -1,5 +1,7 @@
 package vn.edu.fpt.medicaldiagnosis.service.impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,7 +33,23 @@ import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
-
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Quản lý tenant trong DB control (JDBC trực tiếp).
+ *
+ * Danh sách tenant ACTIVE được giữ trong bộ nhớ (ActiveTenants) vì được đọc liên tục bởi các job
+ * (AutoRoomAssignmentJob, AccountSyncJob, EmailTaskJob, TenantDataSourceCleaner...) và mỗi lần tạo lại pool:
+ * - getAllTenantsActive / getTenantByCodeActive đọc từ snapshot, chỉ truy vấn DB khi snapshot hết hạn
+ *   (tenant-registry.ttl-ms) hoặc vừa bị huỷ.
+ * - Mọi thao tác ghi bảng tenants (tạo, đổi trạng thái, kích hoạt, xoá, đổi gói) huỷ snapshot ngay sau khi ghi;
+ *   TTL chỉ còn là giới hạn độ trễ khi tenant bị thay đổi từ node khác.
+ *
+ * Metrics:
+ * - tenant.control.queries{query}         : số truy vấn vào DB control (so sánh tốc độ/phút trước và sau cache).
+ * - tenant.registry.lookups{result}       : số lần đọc tenant ACTIVE trúng (hit) / trượt (miss) snapshot.
+ */
 @Slf4j
 @Service
 public class TenantServiceImpl implements TenantService {
@@ -45,6 +63,17 @@ public class TenantServiceImpl implements TenantService {
     private final ServicePackageRepository servicePackageRepository;
     private final TransactionHistoryRepository transactionHistoryRepository;
     private final TransactionHistoryService transactionHistoryService;
+    private final MeterRegistry meterRegistry;
+    private final Counter registryHits;
+    private final Counter registryMisses;
+
+    // Snapshot tenant ACTIVE; generation tăng mỗi lần huỷ để bỏ kết quả nạp song song với thao tác ghi
+    private volatile ActiveTenants activeTenants;
+    private final Object activeTenantsLock = new Object();
+    private long generation;
+
+    @Value("${tenant-registry.ttl-ms:60000}")
+    private long registryTtlMs;
 
     @Value("${cloudflare.domain}")
     private String domain;
@@ -70,7 +99,8 @@ public class TenantServiceImpl implements TenantService {
                              CloudflareTaskRepository cloudflareTaskRepository,
                              ServicePackageRepository servicePackageRepository,
                              TransactionHistoryRepository transactionHistoryRepository,
-                             TransactionHistoryService transactionHistoryService
+                             TransactionHistoryService transactionHistoryService,
+                             MeterRegistry meterRegistry
     ) {
         this.controlDataSource = controlDataSource;
         this.schemaInitializer = schemaInitializer;
@@ -81,6 +111,15 @@ public class TenantServiceImpl implements TenantService {
         this.servicePackageRepository = servicePackageRepository;
         this.transactionHistoryRepository = transactionHistoryRepository;
         this.transactionHistoryService = transactionHistoryService;
+        this.meterRegistry = meterRegistry;
+        this.registryHits = Counter.builder("tenant.registry.lookups")
+                .description("Số lần đọc tenant ACTIVE từ snapshot")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.registryMisses = Counter.builder("tenant.registry.lookups")
+                .description("Số lần đọc tenant ACTIVE từ snapshot")
+                .tag("result", "miss")
+                .register(meterRegistry);
     }
 
     @Override
@@ -128,6 +167,7 @@ public class TenantServiceImpl implements TenantService {
 
         processPackagePurchase(tenant, servicePackage);
         insertTenantToControlDb(tenant);
+        invalidateTenantCache();
         queueCloudflareSubdomain(tenant);
 
         DbTask task = DbTask.builder()
@@ -142,6 +182,7 @@ public class TenantServiceImpl implements TenantService {
 
     private boolean isEmailExisted(String email) {
         String sql = "SELECT COUNT(*) FROM tenants WHERE email = ?";
+        countQuery("email_exists");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, email);
@@ -158,6 +199,7 @@ public class TenantServiceImpl implements TenantService {
 
     private boolean isPhoneExisted(String phone) {
         String sql = "SELECT COUNT(*) FROM tenants WHERE phone = ?";
+        countQuery("phone_exists");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, phone);
@@ -180,18 +222,22 @@ public class TenantServiceImpl implements TenantService {
         }
 
         String updateSql = "UPDATE tenants SET status = 'INACTIVE' WHERE code = ?";
+        countQuery("delete");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(updateSql)) {
             stmt.setString(1, code);
             stmt.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException("Failed to delete tenant", e);
+        } finally {
+            invalidateTenantCache();
         }
 
     }
 
     public void insertTenantToControlDb(Tenant tenant) {
         String insertSql = "INSERT INTO tenants (id, name, code, db_host, db_port, db_name, db_username, db_password, status, email, phone, service_package_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        countQuery("insert");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(insertSql)) {
             stmt.setString(1, tenant.getId());
@@ -264,13 +310,28 @@ public class TenantServiceImpl implements TenantService {
                 .email(rs.getString("email"))
                 .phone(rs.getString("phone"))
                 .servicePackageId(rs.getString("service_package_id"))
+                .dbPoolMinSize(getNullableInt(rs, "db_pool_min_size"))
+                .dbPoolMaxSize(getNullableInt(rs, "db_pool_max_size"))
                 .build();
     }
 
+    /**
+     * Đọc cột số nguyên có thể null; trả về null nếu cột chưa tồn tại (DB control chưa được bổ sung cột).
+     */
+    private Integer getNullableInt(ResultSet rs, String column) {
+        try {
+            int value = rs.getInt(column);
+            return rs.wasNull() ? null : value;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
     @Override
     public List<Tenant> getAllTenants() {
         List<Tenant> tenants = new ArrayList<>();
         String sql = "SELECT * FROM tenants";
+        countQuery("all");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -286,6 +347,7 @@ public class TenantServiceImpl implements TenantService {
     @Override
     public Tenant getTenantByCode(String code) {
         String sql = "SELECT * FROM tenants WHERE code = ?";
+        countQuery("by_code");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, code);
@@ -301,10 +363,58 @@ public class TenantServiceImpl implements TenantService {
     }
 
     @Override
-//    @Cacheable(value = "activeTenants")
     public List<Tenant> getAllTenantsActive() {
+        return activeTenants().list();
+    }
+
+    /**
+     * Snapshot tenant ACTIVE còn hạn, hoặc nạp lại từ DB control (một luồng nạp, các luồng khác dùng kết quả).
+     */
+    private ActiveTenants activeTenants() {
+        ActiveTenants snapshot = activeTenants;
+        if (snapshot != null && !snapshot.isExpired(registryTtlMs)) {
+            registryHits.increment();
+            return snapshot;
+        }
+
+        synchronized (activeTenantsLock) {
+            snapshot = activeTenants;
+            if (snapshot != null && !snapshot.isExpired(registryTtlMs)) {
+                registryHits.increment();
+                return snapshot;
+            }
+            registryMisses.increment();
+            long loadGeneration = generation;
+            snapshot = ActiveTenants.of(loadActiveTenants());
+            if (loadGeneration == generation) {
+                activeTenants = snapshot;
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Huỷ snapshot tenant ACTIVE sau mỗi thao tác ghi bảng tenants.
+     */
+    private void invalidateTenantCache() {
+        synchronized (activeTenantsLock) {
+            generation++;
+            activeTenants = null;
+        }
+    }
+
+    private void countQuery(String query) {
+        Counter.builder("tenant.control.queries")
+                .description("Số truy vấn vào DB control")
+                .tag("query", query)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private List<Tenant> loadActiveTenants() {
         List<Tenant> tenants = new ArrayList<>();
         String sql = "SELECT * FROM tenants WHERE status = 'ACTIVE'";
+        countQuery("active");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -335,6 +445,7 @@ public class TenantServiceImpl implements TenantService {
     @Override
     public void activateTenant(String code) {
         String sql = "UPDATE tenants SET status = 'ACTIVE' WHERE code = ?";
+        countQuery("activate");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setString(1, code);
@@ -342,24 +453,15 @@ public class TenantServiceImpl implements TenantService {
             log.info("Tenant {} has been activated.", code);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to activate tenant", e);
+        } finally {
+            invalidateTenantCache();
         }
     }
 
     @Override
     public Tenant getTenantByCodeActive(String code) {
-        String sql = "SELECT * FROM tenants WHERE code = ? AND status = 'ACTIVE'";
-        try (Connection conn = controlDataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-            stmt.setString(1, code);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapResultSetToTenant(rs);
-                }
-                return null;
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException("Error loading tenant", e);
-        }
+        if (code == null) return null;
+        return activeTenants().byCode().get(code);
     }
 
     @Override
@@ -381,6 +483,7 @@ public class TenantServiceImpl implements TenantService {
     @Override
     public void updateTenantServicePackage(String tenantId, String servicePackageId) {
         String updateSql = "UPDATE tenants SET service_package_id = ? WHERE id = ?";
+        countQuery("update_package");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(updateSql)) {
             stmt.setString(1, servicePackageId);
@@ -389,6 +492,8 @@ public class TenantServiceImpl implements TenantService {
             log.info("Updated service package for tenant {} to package {}", tenantId, servicePackageId);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update tenant's package", e);
+        } finally {
+            invalidateTenantCache();
         }
     }
 
@@ -405,6 +510,7 @@ public class TenantServiceImpl implements TenantService {
         String countSql = "SELECT COUNT(*) " + baseSql + condition;
 
         long totalElements = 0;
+        countQuery("page");
         try (Connection conn = controlDataSource.getConnection()) {
             // Count
             try (PreparedStatement countStmt = conn.prepareStatement(countSql)) {
@@ -538,6 +644,7 @@ public class TenantServiceImpl implements TenantService {
         }
 
         String updateSql = "UPDATE tenants SET status = ? WHERE code = ?";
+        countQuery("update_status");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(updateSql)) {
             stmt.setString(1, newStatus);
@@ -546,6 +653,8 @@ public class TenantServiceImpl implements TenantService {
             log.info("Tenant {} status updated to {}", code, newStatus);
         } catch (SQLException e) {
             throw new RuntimeException("Failed to update tenant status", e);
+        } finally {
+            invalidateTenantCache();
         }
 
         // Thêm bản ghi vào db_task để job xử lý
@@ -563,6 +672,7 @@ public class TenantServiceImpl implements TenantService {
     public List<Tenant> getInactiveTenants() {
         List<Tenant> tenants = new ArrayList<>();
         String sql = "SELECT * FROM tenants WHERE status = 'INACTIVE'";
+        countQuery("inactive");
         try (Connection conn = controlDataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -575,4 +685,20 @@ public class TenantServiceImpl implements TenantService {
         return tenants;
     }
 
+    /**
+     * Snapshot bất biến danh sách tenant ACTIVE, tra theo code không cần duyệt danh sách.
+     */
+    private record ActiveTenants(List<Tenant> list, Map<String, Tenant> byCode, long loadedAt) {
+        static ActiveTenants of(List<Tenant> tenants) {
+            return new ActiveTenants(List.copyOf(tenants),
+                    tenants.stream()
+                            .filter(t -> t.getCode() != null)
+                            .collect(Collectors.toUnmodifiableMap(Tenant::getCode, Function.identity(), (a, b) -> a)),
+                    System.currentTimeMillis());
+        }
+
+        boolean isExpired(long ttlMs) {
+            return System.currentTimeMillis() - loadedAt > ttlMs;
+        }
+    }
 }
@@ -5,11 +5,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.catalina.security.SecurityUtil;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActorResolver;
 import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
 import vn.edu.fpt.medicaldiagnosis.dto.request.BulkUpdateWorkScheduleRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.UpdateWorkScheduleRequest;
@@ -27,6 +28,8 @@ import vn.edu.fpt.medicaldiagnosis.service.SettingService;
 import vn.edu.fpt.medicaldiagnosis.service.WorkScheduleService;
 import vn.edu.fpt.medicaldiagnosis.specification.WorkScheduleSpecification;
 import vn.edu.fpt.medicaldiagnosis.specification.WorkScheduleStatisticSpecification;
+import vn.edu.fpt.medicaldiagnosis.thread.event.WorkScheduleChangedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.ShiftRosterCache;
 
 import java.nio.charset.StandardCharsets;
 import java.time.*;
@@ -47,8 +50,10 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
     EmailTaskRepository emailTaskRepository;
     ShiftRepository shiftRepository;
     ShiftMapper shiftMapper;
-    AccountRepository accountRepository;
     SettingService settingService;
+    CurrentActorResolver currentActorResolver;
+    ShiftRosterCache shiftRosterCache;
+    ApplicationEventPublisher eventPublisher;
     @Override
     public WorkScheduleRecurringResponse createRecurringSchedules(WorkScheduleRecurringRequest request) {
         log.info("Service: Create recurring schedules - {}", request);
@@ -106,6 +111,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
 
         workScheduleRepository.saveAll(schedules);
         log.info("Created {} schedules for staff {}", schedules.size(), staff.getId());
+        publishScheduleChanged();
 
         if (staff.getEmail() != null && !staff.getEmail().isBlank()) {
             sendWorkScheduleChangedEmail(staff);
@@ -133,11 +139,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
             throw new AppException(ErrorCode.CHECKIN_NOT_ALLOWED, "Ca này đang xin nghỉ phép, không thể check-in.");
         }
 
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        Account account = accountRepository.findByUsernameAndDeletedAtIsNull(username)
-                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHORIZED, "Không tìm thấy tài khoản đăng nhập"));
-        Staff currentStaff = staffRepository.findByAccountIdAndDeletedAtIsNull(account.getId())
-                .orElseThrow(() -> new AppException(ErrorCode.STAFF_NOT_FOUND, "Không tìm thấy thông tin nhân viên"));
+        Staff currentStaff = currentActorResolver.currentStaff();
 
         if (!schedule.getStaff().getId().equals(currentStaff.getId())) {
             throw new AppException(ErrorCode.UNAUTHORIZED_ACTION);
@@ -394,6 +396,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
 
         workScheduleRepository.saveAll(newSchedules);
         log.info("Created {} new schedules", newSchedules.size());
+        publishScheduleChanged();
 
         if (staff.getEmail() != null && !staff.getEmail().isBlank()) {
             sendWorkScheduleChangedEmail(staff);
@@ -453,6 +456,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         schedule.setNote(request.getNote());
         log.info("Updated work schedule: {}", schedule);
         workScheduleRepository.save(schedule);
+        publishScheduleChanged();
 
         // Gửi email thông báo cho nhân viên
         Staff staff = schedule.getStaff();
@@ -487,6 +491,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         }
 
         workScheduleRepository.deleteByIdHard(id);
+        publishScheduleChanged();
     }
 
     @Override
@@ -501,6 +506,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         }
 
         workScheduleRepository.deleteFutureUnattendedByStaffId(staffId, LocalDate.now());
+        publishScheduleChanged();
         log.info("Đã xóa toàn bộ lịch chưa làm và chưa chấm công trong tương lai cho nhân viên {}", staffId);
     }
 
@@ -756,6 +762,7 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
 
         // ======= 3. GỬI MAIL NẾU CÓ THAY ĐỔI =======
         if (hasChanged) {
+            publishScheduleChanged();
             sendWorkScheduleChangedEmail(staff);
         }
 
@@ -824,37 +831,8 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
 
     @Override
     public boolean isStaffOnShiftNow(String staffId) {
-        final int EARLY_LIMIT = 15; // phút cho phép sớm
-
-        LocalDate today = LocalDate.now();
-        LocalDate yesterday = today.minusDays(1);
-        LocalDateTime now = LocalDateTime.now();
-
-        // Lấy schedule hôm qua và hôm nay để bao phủ ca qua đêm
-        List<WorkSchedule> schedules = workScheduleRepository
-                .findAllByStaff_IdAndShiftDateBetweenAndDeletedAtIsNull(staffId, yesterday, today);
-
-        return schedules.stream().anyMatch(schedule -> {
-            // Bỏ qua nếu đang nghỉ phép
-            if (schedule.getStatus() == WorkStatus.ON_LEAVE) {
-                return false;
-            }
-
-            LocalDate shiftDate = schedule.getShiftDate();
-            LocalTime start = schedule.getShift().getStartTime();
-            LocalTime end   = schedule.getShift().getEndTime();
-            boolean overnight = end.isBefore(start);
-
-            LocalDateTime startDT = LocalDateTime.of(shiftDate, start);
-            LocalDateTime endDT   = overnight
-                    ? LocalDateTime.of(shiftDate.plusDays(1), end)
-                    : LocalDateTime.of(shiftDate, end);
-
-            // Cho phép sớm tối đa EARLY_LIMIT phút
-            LocalDateTime earliest = startDT.minusMinutes(EARLY_LIMIT);
-
-            return !now.isBefore(earliest) && !now.isAfter(endDT);
-        });
+        // Tra trong danh sách ca đã dựng sẵn của tenant (bao gồm ca qua đêm, cho phép sớm 15 phút)
+        return shiftRosterCache.isOnShift(staffId);
     }
 
     @Override
@@ -865,6 +843,10 @@ public class WorkScheduleServiceImpl implements WorkScheduleService {
         );
     }
 
+    private void publishScheduleChanged() {
+        eventPublisher.publishEvent(new WorkScheduleChangedEvent(TenantContext.getTenantId()));
+    }
+
     private void sendWorkScheduleChangedEmail(Staff staff) {
         String tenantId = TenantContext.getTenantId();
         String content;
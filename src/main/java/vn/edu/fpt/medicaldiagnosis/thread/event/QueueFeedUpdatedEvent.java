@@ -0,0 +1,17 @@
+package vn.edu.fpt.medicaldiagnosis.thread.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Phát ra sau khi một thay đổi đã được ghi vào TenantQueueFeed của tenant.
+ * Các kênh đẩy dữ liệu (long-polling, SSE) lắng nghe để gửi delta cho client.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class QueueFeedUpdatedEvent {
+    private final String tenantCode;
+    private final long version;
+}
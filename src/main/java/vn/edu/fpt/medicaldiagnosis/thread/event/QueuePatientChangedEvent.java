@@ -0,0 +1,27 @@
+package vn.edu.fpt.medicaldiagnosis.thread.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+
+/**
+ * Sự kiện phát ra mỗi khi một lượt khám (QueuePatients) thay đổi trong DB.
+ * - Được publish từ QueuePatientsServiceImpl sau khi lưu (tạo mới / cập nhật / đổi trạng thái / xoá mềm).
+ * - AutoRoomAssignmentJob lắng nghe sự kiện (sau commit) để cập nhật hàng đợi trong bộ nhớ
+ *   và đánh thức RoomWorker của phòng tương ứng thay vì để worker tự poll DB.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class QueuePatientChangedEvent {
+
+    /** Mã tenant tại thời điểm thay đổi (lấy từ TenantContext). */
+    private final String tenantCode;
+
+    /** Bản ghi mới nhất sau khi lưu. */
+    private final QueuePatientsResponse patient;
+
+    /** true nếu lượt khám đã bị xoá mềm → cần loại khỏi hàng đợi. */
+    private final boolean deleted;
+}
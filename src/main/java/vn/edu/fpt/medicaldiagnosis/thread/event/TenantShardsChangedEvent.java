@@ -0,0 +1,18 @@
+package vn.edu.fpt.medicaldiagnosis.thread.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Set;
+
+/**
+ * Phát ra khi danh sách node trong cluster thay đổi (node mới tham gia / node rời đi) và vòng hash tenant được dựng lại.
+ * Các thành phần giữ trạng thái theo tenant trong bộ nhớ lắng nghe để giải phóng tenant không còn thuộc node này.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class TenantShardsChangedEvent {
+    private final Set<String> nodeIds;
+}
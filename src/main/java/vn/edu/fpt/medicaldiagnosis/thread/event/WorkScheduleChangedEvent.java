@@ -0,0 +1,18 @@
+package vn.edu.fpt.medicaldiagnosis.thread.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Sự kiện phát ra khi lịch làm việc của một tenant thay đổi (tạo/sửa/xoá lịch, duyệt nghỉ phép, sửa/xoá ca).
+ * ShiftRosterCache lắng nghe để dựng lại danh sách nhân viên đang trong ca.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class WorkScheduleChangedEvent {
+
+    /** Mã tenant tại thời điểm thay đổi (lấy từ TenantContext). */
+    private final String tenantCode;
+}
@@ -0,0 +1,67 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import lombok.Getter;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Trạng thái phân phòng tăng dần của một tenant trong một ngày (queueId).
+ *
+ * - Watermark (updatedAt, id): bản ghi WAITING cuối cùng đã xét. Mỗi lượt job chỉ đọc các bản ghi
+ *   thay đổi sau watermark → chi phí tỉ lệ với số bệnh nhân mới/được cập nhật, không theo kích thước hàng đợi.
+ * - rewind(): đưa watermark về đầu để quét lại toàn bộ (định kỳ), giúp xử lý lại các bệnh nhân
+ *   bị bỏ qua do phòng đầy hoặc thay đổi không đi qua ứng dụng.
+ *
+ * Chỉ được dùng bởi một luồng tại một thời điểm (lượt job của tenant).
+ */
+public class DispatchCursor {
+
+    /** Mốc thời gian nhỏ hơn mọi updated_at thực tế, dùng khi quét lại từ đầu. */
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    @Getter
+    private final String queueId;
+
+    @Getter
+    private LocalDateTime watermarkTime = ORIGIN;
+
+    @Getter
+    private String watermarkId = "";
+
+    @Getter
+    private long lastRewindMillis = System.currentTimeMillis();
+
+    public DispatchCursor(String queueId) {
+        this.queueId = queueId;
+    }
+
+    /**
+     * Cursor bắt đầu từ mốc start thay vì đầu ngày (bỏ qua thay đổi đã có trong trạng thái dựng từ DB).
+     */
+    public DispatchCursor(String queueId, LocalDateTime start) {
+        this.queueId = queueId;
+        this.watermarkTime = start;
+    }
+
+    /**
+     * Tiến watermark tới bản ghi cuối của trang vừa đọc (trang đã sắp theo updated_at, id tăng dần).
+     */
+    public void advance(List<QueuePatientsResponse> page) {
+        if (page.isEmpty()) return;
+        QueuePatientsResponse last = page.get(page.size() - 1);
+        if (last.getUpdatedAt() == null) return;
+        watermarkTime = last.getUpdatedAt();
+        watermarkId = last.getId();
+    }
+
+    /**
+     * Quét lại từ đầu ở lượt tiếp theo.
+     */
+    public void rewind() {
+        watermarkTime = ORIGIN;
+        watermarkId = "";
+        lastRewindMillis = System.currentTimeMillis();
+    }
+}
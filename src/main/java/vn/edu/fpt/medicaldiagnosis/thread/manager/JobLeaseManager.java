@@ -0,0 +1,243 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.net.InetAddress;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lease trên DB control để mỗi job (hoặc mỗi cặp job:tenant) chỉ chạy trên một node khi chạy nhiều instance.
+ *
+ * - Bảng job_leases(name, owner, expires_at): node giữ lease khi owner là node này và expires_at chưa qua.
+ *   Thời gian luôn lấy theo NOW(3) của DB nên không phụ thuộc đồng hồ từng node.
+ * - Lấy lease bằng một câu INSERT ... ON DUPLICATE KEY UPDATE: chỉ chiếm được khi lease trống hoặc đã hết hạn.
+ * - Lease đang giữ được gia hạn nền mỗi job-lease.renew-interval-ms bằng một câu UPDATE cho tất cả lease của node;
+ *   node chết thì sau job-lease.ttl-ms node khác tự chiếm (failover). Khi tắt ứng dụng lease được trả ngay.
+ * - Kết quả được nhớ cục bộ (lease của mình đến lần gia hạn kế, lease của node khác đến khi hết hạn) nên các job
+ *   chạy mỗi vài giây không phải hỏi DB mỗi lượt. Lỗi DB → coi như không giữ lease (không chạy hơn là chạy trùng).
+ *
+ * Metrics: job.lease.acquire{result=acquired|held|busy|error}.
+ */
+@Slf4j
+@Component
+public class JobLeaseManager {
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS job_leases (
+                name       VARCHAR(191) NOT NULL PRIMARY KEY,
+                owner      VARCHAR(191) NOT NULL,
+                expires_at DATETIME(3)  NOT NULL,
+                INDEX idx_job_leases_owner (owner)
+            )""";
+
+    // owner được gán trước nên expires_at chỉ đổi khi node này vừa giữ/chiếm được lease
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO job_leases (name, owner, expires_at)
+            VALUES (?, ?, NOW(3) + INTERVAL ? MICROSECOND)
+            ON DUPLICATE KEY UPDATE
+                owner = IF(owner = VALUES(owner) OR expires_at < NOW(3), VALUES(owner), owner),
+                expires_at = IF(owner = VALUES(owner), VALUES(expires_at), expires_at)""";
+
+    private static final String READ_SQL =
+            "SELECT owner, TIMESTAMPDIFF(MICROSECOND, NOW(3), expires_at) AS remaining FROM job_leases WHERE name = ?";
+
+    private static final String RENEW_SQL =
+            "UPDATE job_leases SET expires_at = NOW(3) + INTERVAL ? MICROSECOND WHERE owner = ? AND expires_at >= NOW(3)";
+
+    private static final String OWNED_SQL = "SELECT name FROM job_leases WHERE owner = ? AND expires_at >= NOW(3)";
+
+    private static final String RELEASE_SQL = "DELETE FROM job_leases WHERE owner = ?";
+
+    private static final String RELEASE_ONE_SQL = "DELETE FROM job_leases WHERE name = ? AND owner = ?";
+
+    private final DataSource controlDataSource;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final long ttlMs;
+    private final long renewIntervalMs;
+
+    // lease của node này → hạn dùng cục bộ (nanoTime)
+    private final Map<String, Long> held = new ConcurrentHashMap<>();
+    // lease do node khác giữ → thời điểm có thể thử chiếm lại (nanoTime)
+    private final Map<String, Long> busyUntil = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("job-lease-renewer").daemon(true).factory());
+
+    public JobLeaseManager(@Qualifier("controlDataSource") DataSource controlDataSource,
+                           MeterRegistry meterRegistry,
+                           @Value("${job-lease.node-id:}") String nodeId,
+                           @Value("${job-lease.ttl-ms:30000}") long ttlMs,
+                           @Value("${job-lease.renew-interval-ms:10000}") long renewIntervalMs) {
+        this.controlDataSource = controlDataSource;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.ttlMs = ttlMs;
+        this.renewIntervalMs = Math.min(renewIntervalMs, ttlMs / 2);
+    }
+
+    @PostConstruct
+    public void init() {
+        try (Connection conn = controlDataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+        } catch (SQLException e) {
+            log.error("Không tạo được bảng job_leases: {}", e.getMessage());
+        }
+        renewer.scheduleWithFixedDelay(this::renewAll, renewIntervalMs, renewIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("JobLeaseManager khởi động với node id {}", nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Giữ (hoặc chiếm) lease cho node này. Trả về true nếu node này được phép chạy phần việc mang tên lease.
+     */
+    public boolean tryAcquire(String lease) {
+        long now = System.nanoTime();
+
+        Long validUntil = held.get(lease);
+        if (validUntil != null && now < validUntil) {
+            outcome("held");
+            return true;
+        }
+        Long retryAt = busyUntil.get(lease);
+        if (retryAt != null && now < retryAt) {
+            outcome("busy");
+            return false;
+        }
+
+        try (Connection conn = controlDataSource.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(ACQUIRE_SQL)) {
+                stmt.setString(1, lease);
+                stmt.setString(2, nodeId);
+                stmt.setLong(3, TimeUnit.MILLISECONDS.toMicros(ttlMs));
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(READ_SQL)) {
+                stmt.setString(1, lease);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    boolean found = rs.next();
+                    if (found && nodeId.equals(rs.getString("owner"))) {
+                        busyUntil.remove(lease);
+                        held.put(lease, now + TimeUnit.MILLISECONDS.toNanos(ttlMs - renewIntervalMs));
+                        outcome("acquired");
+                        return true;
+                    }
+                    long remainingMicros = found ? Math.max(0, rs.getLong("remaining")) : 0;
+                    held.remove(lease);
+                    busyUntil.put(lease, now + TimeUnit.MICROSECONDS.toNanos(remainingMicros));
+                    outcome("busy");
+                    return false;
+                }
+            }
+        } catch (SQLException e) {
+            held.remove(lease);
+            outcome("error");
+            log.warn("Không lấy được lease {}: {}", lease, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Trả lease node này đang giữ (ví dụ tenant đã chuyển sang node khác) để node mới nhận ngay, không chờ hết TTL.
+     */
+    public void release(String lease) {
+        if (held.remove(lease) == null) return;
+        try (Connection conn = controlDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RELEASE_ONE_SQL)) {
+            stmt.setString(1, lease);
+            stmt.setString(2, nodeId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("Không trả được lease {}: {}", lease, e.getMessage());
+        }
+    }
+
+    /**
+     * Gia hạn mọi lease của node trong một câu UPDATE, rồi đọc lại danh sách lease còn giữ.
+     */
+    void renewAll() {
+        if (held.isEmpty()) return;
+        long now = System.nanoTime();
+        try (Connection conn = controlDataSource.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(RENEW_SQL)) {
+                stmt.setLong(1, TimeUnit.MILLISECONDS.toMicros(ttlMs));
+                stmt.setString(2, nodeId);
+                stmt.executeUpdate();
+            }
+            Set<String> owned = new HashSet<>();
+            try (PreparedStatement stmt = conn.prepareStatement(OWNED_SQL)) {
+                stmt.setString(1, nodeId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) owned.add(rs.getString("name"));
+                }
+            }
+            long validUntil = now + TimeUnit.MILLISECONDS.toNanos(ttlMs - renewIntervalMs);
+            held.keySet().removeIf(lease -> {
+                if (!owned.contains(lease)) {
+                    log.warn("Mất lease {} (đã hết hạn hoặc bị node khác chiếm)", lease);
+                    return true;
+                }
+                return false;
+            });
+            held.replaceAll((lease, old) -> validUntil);
+        } catch (SQLException e) {
+            // Không gia hạn được: hạn cục bộ tự hết, các lượt sau sẽ thử lại qua tryAcquire
+            log.warn("Gia hạn lease thất bại: {}", e.getMessage());
+        } catch (Exception e) {
+            log.error("Lỗi gia hạn lease: {}", e.getMessage(), e);
+        }
+    }
+
+    private void outcome(String result) {
+        Counter.builder("job.lease.acquire")
+                .description("Số lần kiểm tra lease job theo kết quả")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+        if (held.isEmpty()) return;
+        held.clear();
+        // Trả lease ngay để node khác nhận việc mà không phải chờ hết TTL
+        try (Connection conn = controlDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RELEASE_SQL)) {
+            stmt.setString(1, nodeId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("Không trả được lease khi tắt: {}", e.getMessage());
+        }
+    }
+}
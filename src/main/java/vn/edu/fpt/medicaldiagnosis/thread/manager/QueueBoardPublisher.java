@@ -0,0 +1,113 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
+import vn.edu.fpt.medicaldiagnosis.service.QueuePollingService;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Gom các lần cập nhật bảng hàng đợi (long-polling chế độ toàn bộ) theo tenant.
+ *
+ * - Mỗi QueuePatientChangedEvent (sau commit) chỉ đánh dấu tenant cần cập nhật; lần đánh dấu đầu tiên hẹn giờ
+ *   sau debounce-ms, các lần tiếp theo trong cửa sổ đó được gộp lại.
+ * - Hết cửa sổ: dựng danh sách MỘT lần (getAllQueuePatients) và trả cho toàn bộ listener của tenant.
+ *   Phân phòng hàng loạt 50 bệnh nhân → 1 lần dựng bảng thay vì 50.
+ * - Thay đổi đến trong lúc đang dựng bảng sẽ hẹn một lượt mới → không bỏ sót.
+ *
+ * Metrics:
+ * - queue.board.publish.requested : số thay đổi yêu cầu cập nhật bảng.
+ * - queue.board.publish.coalesced : số yêu cầu được gộp vào một lượt đã hẹn.
+ * - queue.board.publish.built     : số lần thực sự dựng bảng và gửi cho listener.
+ */
+@Slf4j
+@Component
+public class QueueBoardPublisher {
+
+    private final QueuePatientsService queuePatientsService;
+    private final QueuePollingService queuePollingService;
+    private final long debounceMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+            Thread.ofPlatform().name("queue-board-publisher-", 0).daemon(true).factory());
+
+    // tenant → đã có lượt cập nhật được hẹn giờ
+    private final Map<String, AtomicBoolean> scheduled = new ConcurrentHashMap<>();
+
+    private final Counter requested;
+    private final Counter coalesced;
+    private final Counter built;
+
+    public QueueBoardPublisher(QueuePatientsService queuePatientsService,
+                               QueuePollingService queuePollingService,
+                               MeterRegistry meterRegistry,
+                               @Value("${queue-board.debounce-ms:150}") long debounceMs) {
+        this.queuePatientsService = queuePatientsService;
+        this.queuePollingService = queuePollingService;
+        this.debounceMs = debounceMs;
+        this.requested = meterRegistry.counter("queue.board.publish.requested");
+        this.coalesced = meterRegistry.counter("queue.board.publish.coalesced");
+        this.built = meterRegistry.counter("queue.board.publish.built");
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onQueuePatientChanged(QueuePatientChangedEvent event) {
+        requestPublish(event.getTenantCode());
+    }
+
+    /**
+     * Yêu cầu cập nhật bảng hàng đợi của tenant (gộp với các yêu cầu khác trong cửa sổ debounce).
+     */
+    public void requestPublish(String tenantCode) {
+        if (tenantCode == null) return;
+        requested.increment();
+
+        AtomicBoolean flag = scheduled.computeIfAbsent(tenantCode, t -> new AtomicBoolean(false));
+        if (!flag.compareAndSet(false, true)) {
+            coalesced.increment();
+            return;
+        }
+        try {
+            scheduler.schedule(() -> publish(tenantCode, flag), debounceMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flag.set(false);
+            log.warn("Không thể hẹn cập nhật bảng hàng đợi cho tenant {}: {}", tenantCode, e.getMessage());
+        }
+    }
+
+    private void publish(String tenantCode, AtomicBoolean flag) {
+        // Nhả cờ trước khi dựng bảng: thay đổi đến trong lúc dựng sẽ hẹn lượt kế tiếp
+        flag.set(false);
+        try {
+            TenantContext.setTenantId(tenantCode);
+            if (!queuePollingService.hasListeners()) return;
+
+            queuePollingService.notifyListeners(queuePatientsService.getAllQueuePatients());
+            built.increment();
+        } catch (Exception e) {
+            log.error("Lỗi cập nhật bảng hàng đợi cho tenant {}: {}", tenantCode, e.getMessage(), e);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
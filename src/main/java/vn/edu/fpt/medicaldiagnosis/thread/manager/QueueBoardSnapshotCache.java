@@ -0,0 +1,81 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache ngắn hạn danh sách hàng đợi trong ngày (bảng hàng đợi) theo tenant.
+ *
+ * - Bị huỷ ngay khi có QueuePatientChangedEvent (lúc publish và lần nữa sau commit), TTL chỉ là lưới an toàn
+ *   cho thay đổi không đi qua ứng dụng.
+ * - generation theo tenant: kết quả đọc bắt đầu trước một lần huỷ sẽ không được ghi vào cache.
+ * - Trong transaction đang mở không dùng/ghi cache: dữ liệu chưa commit không được chia sẻ cho request khác,
+ *   và chính transaction đó luôn thấy thay đổi của mình.
+ */
+@Component
+public class QueueBoardSnapshotCache {
+
+    private record Snapshot(String queueId, List<QueuePatientsResponse> patients, long expiresAt) {}
+
+    private final long ttlMs;
+
+    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public QueueBoardSnapshotCache(@Value("${queue-board.snapshot-ttl-ms:5000}") long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    public List<QueuePatientsResponse> get(String tenantCode, String queueId, Supplier<List<QueuePatientsResponse>> loader) {
+        if (tenantCode == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.get();
+        }
+
+        Snapshot snapshot = snapshots.get(tenantCode);
+        long now = System.currentTimeMillis();
+        if (snapshot != null && snapshot.queueId().equals(queueId) && snapshot.expiresAt() > now) {
+            return snapshot.patients();
+        }
+
+        AtomicLong generation = generations.computeIfAbsent(tenantCode, t -> new AtomicLong());
+        long before = generation.get();
+        List<QueuePatientsResponse> patients = List.copyOf(loader.get());
+        synchronized (generation) {
+            if (generation.get() == before) {
+                snapshots.put(tenantCode, new Snapshot(queueId, patients, now + ttlMs));
+            }
+        }
+        return patients;
+    }
+
+    public void invalidate(String tenantCode) {
+        if (tenantCode == null) return;
+        AtomicLong generation = generations.computeIfAbsent(tenantCode, t -> new AtomicLong());
+        synchronized (generation) {
+            generation.incrementAndGet();
+            snapshots.remove(tenantCode);
+        }
+    }
+
+    @EventListener
+    public void onQueuePatientChanged(QueuePatientChangedEvent event) {
+        invalidate(event.getTenantCode());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onQueuePatientCommitted(QueuePatientChangedEvent event) {
+        invalidate(event.getTenantCode());
+    }
+}
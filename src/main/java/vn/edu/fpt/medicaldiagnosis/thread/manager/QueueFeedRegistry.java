@@ -0,0 +1,70 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.repository.PatientRepository;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueueFeedUpdatedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.event.TenantShardsChangedEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Giữ TenantQueueFeed cho từng tenant, dùng chung cho long-polling và SSE.
+ * Mỗi QueuePatientChangedEvent (sau commit) được ghi vào feed rồi phát QueueFeedUpdatedEvent.
+ */
+@Component
+public class QueueFeedRegistry {
+
+    private final PatientRepository patientRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TenantShardManager tenantShardManager;
+    private final int changeLogSize;
+
+    private final Map<String, TenantQueueFeed> feeds = new ConcurrentHashMap<>();
+
+    public QueueFeedRegistry(PatientRepository patientRepository,
+                             ApplicationEventPublisher eventPublisher,
+                             TenantShardManager tenantShardManager,
+                             @Value("${queue-polling.change-log-size:1000}") int changeLogSize) {
+        this.patientRepository = patientRepository;
+        this.eventPublisher = eventPublisher;
+        this.tenantShardManager = tenantShardManager;
+        this.changeLogSize = changeLogSize;
+    }
+
+    public TenantQueueFeed feed(String tenantCode) {
+        return feeds.computeIfAbsent(tenantCode, t -> new TenantQueueFeed(changeLogSize));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onQueuePatientChanged(QueuePatientChangedEvent event) {
+        QueuePatientsResponse patient = event.getPatient();
+        if (event.getTenantCode() == null || patient == null) return;
+
+        // Bảng hàng đợi hiển thị tên bệnh nhân → bổ sung cho riêng bản ghi thay đổi (1 truy vấn theo khoá chính),
+        // trên bản sao vì payload của sự kiện còn được RoomQueueHolder dùng
+        if (!event.isDeleted() && patient.getFullName() == null && patient.getPatientId() != null) {
+            patient = patientRepository.findByIdAndDeletedAtIsNull(patient.getPatientId())
+                    .map(p -> event.getPatient().toBuilder().fullName(p.getFullNameSafe()).build())
+                    .orElse(patient);
+        }
+
+        long version = feed(event.getTenantCode()).append(patient, event.isDeleted());
+        eventPublisher.publishEvent(new QueueFeedUpdatedEvent(event.getTenantCode(), version));
+    }
+
+    /**
+     * Bỏ feed của tenant đã chuyển sang node khác (client polling/SSE được định tuyến sang node mới).
+     */
+    @EventListener
+    public void onTenantShardsChanged(TenantShardsChangedEvent event) {
+        feeds.keySet().removeIf(tenantCode -> !tenantShardManager.owns(tenantCode));
+    }
+}
@@ -0,0 +1,66 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.service.QueueOrderSequenceService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cấp queueOrder cho từng phòng dựa trên bộ đếm queue_order_sequences.
+ *
+ * - block-size = 1 (mặc định): mỗi số là một lần tăng nguyên tử trên DB → thứ tự tuyệt đối giữa các node.
+ * - block-size > 1: lấy trước một khối số và cấp dần trong bộ nhớ → giảm số lần ghi DB khi nhiều quầy tiếp đón
+ *   cùng phân phòng. Đổi lại, các số còn dư khi khởi động lại sẽ bị bỏ trống (không trùng), và nếu chạy nhiều node
+ *   thì thứ tự giữa các node chỉ tăng dần theo từng khối.
+ */
+@Component
+public class QueueOrderAllocator {
+
+    private final QueueOrderSequenceService queueOrderSequenceService;
+    private final int blockSize;
+
+    // key: tenant:queueId:room → khối số đang cấp dở
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public QueueOrderAllocator(QueueOrderSequenceService queueOrderSequenceService,
+                               @Value("${queue-order.block-size:1}") int blockSize) {
+        this.queueOrderSequenceService = queueOrderSequenceService;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Lấy queueOrder kế tiếp cho phòng trong hàng đợi ngày của tenant hiện tại.
+     */
+    public long next(String queueId, int roomNumber) {
+        String room = String.valueOf(roomNumber);
+        if (blockSize == 1) {
+            return queueOrderSequenceService.allocate(queueId, room, 1);
+        }
+
+        Block block = blocks.computeIfAbsent(TenantContext.getTenantId() + ":" + queueId + ":" + room, k -> new Block());
+        synchronized (block) {
+            if (block.next > block.end) {
+                long end = queueOrderSequenceService.allocate(queueId, room, blockSize);
+                block.next = end - blockSize + 1;
+                block.end = end;
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * Bỏ các khối còn dư của một hàng đợi ngày (khi chuyển sang ngày mới).
+     */
+    public void evictQueue(String tenantCode, String queueId) {
+        String prefix = tenantCode + ":" + queueId + ":";
+        blocks.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static final class Block {
+        private long next = 1;
+        private long end = 0;
+    }
+}
@@ -0,0 +1,177 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Hàng đợi bệnh nhân của MỘT phòng khám, thay cho PriorityQueue + quét trùng O(n).
+ *
+ * Cấu trúc:
+ * - byId   : index theo id lượt khám → kiểm tra tồn tại / lấy bản ghi O(1).
+ * - ordered: TreeSet sắp theo {@link #PRIORITY_COMPARATOR} (cùng ngữ nghĩa comparator cũ của RoomQueueHolder)
+ *            + id để phân biệt các bản ghi có cùng độ ưu tiên → thêm/xoá/sắp lại O(log n).
+ * - statusCounts: bộ đếm theo trạng thái, cập nhật mỗi lần thêm/xoá/đổi trạng thái
+ *            → đếm số bệnh nhân active (WAITING/CALLING/IN_PROGRESS) O(1), không phải duyệt queue.
+ *
+ * Đồng bộ:
+ * - Mọi thao tác ghi phải đồng bộ trên chính đối tượng RoomQueue (giống cách dùng queue trước đây).
+ * - size() và activeCount() là biến volatile → đọc không cần lock (dùng khi chọn phòng ít bận nhất).
+ */
+public class RoomQueue {
+
+    /**
+     * Comparator sắp xếp bệnh nhân trong hàng đợi theo mức độ ưu tiên (giá trị nhỏ hơn đứng trước):
+     *  0. Đang được khám (IN_PROGRESS).
+     *  1. Đang gọi vào phòng (CALLING).
+     *  2. Đang chờ (WAITING).
+     *  3. Trạng thái khác (DONE, CANCELED, AWAITING_RESULT...).
+     *
+     * Trong cùng một nhóm score:
+     * - Bệnh nhân có `isPriority = true` được ưu tiên hơn.
+     * - Sắp xếp theo thứ tự `queueOrder` tăng dần.
+     */
+    public static final Comparator<QueuePatientsResponse> PRIORITY_COMPARATOR = Comparator
+            .comparingInt((QueuePatientsResponse p) -> {
+                String status = p.getStatus();
+
+                if (Status.IN_PROGRESS.name().equalsIgnoreCase(status)) return 0;
+
+                if (Status.CALLING.name().equalsIgnoreCase(status)) return 1;
+
+                if (Status.WAITING.name().equalsIgnoreCase(status)) return 2;
+
+                return 3; // fallback
+            })
+            .thenComparing(QueuePatientsResponse::getIsPriority, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(QueuePatientsResponse::getQueueOrder, Comparator.nullsLast(Long::compareTo));
+
+    private final Map<String, QueuePatientsResponse> byId = new HashMap<>();
+
+    private final TreeSet<QueuePatientsResponse> ordered = new TreeSet<>(
+            PRIORITY_COMPARATOR.thenComparing(QueuePatientsResponse::getId));
+
+    private final Map<Status, Integer> statusCounts = new EnumMap<>(Status.class);
+
+    private volatile int size;
+
+    private volatile int activeCount;
+
+    /**
+     * Thêm bệnh nhân nếu chưa có trong queue.
+     * @return true nếu thêm mới, false nếu đã tồn tại id này.
+     */
+    public boolean offer(QueuePatientsResponse patient) {
+        if (byId.containsKey(patient.getId())) return false;
+        insert(patient);
+        return true;
+    }
+
+    /**
+     * Thay bản ghi cũ (cùng id) bằng bản mới và sắp xếp lại theo trạng thái mới.
+     * Nếu chưa tồn tại thì thêm mới.
+     * @return bản ghi cũ (null nếu chưa có).
+     */
+    public QueuePatientsResponse update(QueuePatientsResponse patient) {
+        QueuePatientsResponse previous = remove(patient.getId());
+        insert(patient);
+        return previous;
+    }
+
+    /**
+     * Xoá bệnh nhân theo id.
+     * @return bản ghi đã xoá (null nếu không có).
+     */
+    public QueuePatientsResponse remove(String id) {
+        QueuePatientsResponse existing = byId.remove(id);
+        if (existing == null) return null;
+        ordered.remove(existing);
+        count(existing.getStatus(), -1);
+        size = byId.size();
+        return existing;
+    }
+
+    public boolean contains(String id) {
+        return byId.containsKey(id);
+    }
+
+    public QueuePatientsResponse get(String id) {
+        return byId.get(id);
+    }
+
+    /** Bệnh nhân có độ ưu tiên cao nhất (null nếu queue rỗng). */
+    public QueuePatientsResponse peek() {
+        return ordered.isEmpty() ? null : ordered.first();
+    }
+
+    /** Thay toàn bộ nội dung queue (dùng khi refresh từ DB). */
+    public void replaceAll(Collection<QueuePatientsResponse> patients) {
+        clear();
+        patients.forEach(this::offer);
+    }
+
+    public void clear() {
+        byId.clear();
+        ordered.clear();
+        statusCounts.clear();
+        size = 0;
+        activeCount = 0;
+    }
+
+    /** Danh sách bệnh nhân theo thứ tự ưu tiên (bản sao). */
+    public List<QueuePatientsResponse> snapshot() {
+        return new ArrayList<>(ordered);
+    }
+
+    /** Tổng số bản ghi trong queue (kể cả DONE/CANCELED) — dùng để so với capacity trong ngày. */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Số bệnh nhân WAITING + CALLING + IN_PROGRESS. */
+    public int activeCount() {
+        return activeCount;
+    }
+
+    public int countByStatus(Status status) {
+        return statusCounts.getOrDefault(status, 0);
+    }
+
+    private void insert(QueuePatientsResponse patient) {
+        byId.put(patient.getId(), patient);
+        ordered.add(patient);
+        count(patient.getStatus(), 1);
+        size = byId.size();
+    }
+
+    private void count(String statusName, int delta) {
+        Status status = parseStatus(statusName);
+        if (status == null) return;
+
+        statusCounts.merge(status, delta, Integer::sum);
+        if (status == Status.WAITING || status == Status.CALLING || status == Status.IN_PROGRESS) {
+            activeCount += delta;
+        }
+    }
+
+    private static Status parseStatus(String statusName) {
+        if (statusName == null) return null;
+        try {
+            return Status.valueOf(statusName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
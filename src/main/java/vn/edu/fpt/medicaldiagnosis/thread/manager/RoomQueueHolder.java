@@ -1,10 +1,10 @@
 package vn.edu.fpt.medicaldiagnosis.thread.manager;
 
 import lombok.Getter;
+import vn.edu.fpt.medicaldiagnosis.common.DataUtil;
 import vn.edu.fpt.medicaldiagnosis.dto.response.DepartmentResponse;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
 import vn.edu.fpt.medicaldiagnosis.enums.DepartmentType;
-import vn.edu.fpt.medicaldiagnosis.enums.Status;
 import vn.edu.fpt.medicaldiagnosis.repository.PatientRepository;
 import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
 import vn.edu.fpt.medicaldiagnosis.service.TextToSpeechService;
@@ -12,19 +12,20 @@ import vn.edu.fpt.medicaldiagnosis.thread.worker.RoomWorker;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Quản lý các hàng đợi và RoomWorker tương ứng cho từng phòng khám.
- * - Mỗi phòng có một PriorityQueue<QueuePatientsResponse> để xếp thứ tự ưu tiên bệnh nhân.
- * - Mỗi phòng có một RoomWorker (Thread) xử lý logic gọi khám/tiến trình khám.
+ * - Mỗi phòng có một RoomQueue (index theo id + sắp theo độ ưu tiên + bộ đếm theo trạng thái).
+ * - Mỗi phòng có một RoomWorker xử lý logic gọi khám/tiến trình khám.
+ *   Worker chỉ được lên lịch trên RoomWorkerScheduler dùng chung khi queue thay đổi (enqueue/refresh/applyChange),
+ *   không tự poll DB và không giữ thread riêng.
  * - Hỗ trợ "sức chứa" (capacity) theo phòng và "trạng thái quá tải" (overloaded).
  *
  * Đồng bộ:
- * - roomQueueLock dùng để bảo vệ cấu trúc roomQueues/roomWorkers/... (tạo phòng, kiểm tra tồn tại).
- * - Đồng bộ riêng trên từng queue khi thao tác enque/deque để giảm vùng lock (giảm contention).
+ * - Các map theo phòng là ConcurrentHashMap → đọc (hasRoom, canAcceptNewPatient, findLeastBusyRoom) không cần lock chung.
+ * - roomQueueLock chỉ dùng cho thao tác cấu trúc (tạo phòng); refresh tải DB ngoài mọi lock rồi thay vào queue.
+ * - Đồng bộ riêng trên từng RoomQueue khi ghi (enqueue/applyChange) → các phòng không chặn nhau.
  *
  * Lưu ý:
  * - Capacity được set từ bên ngoài (AutoRoomAssignmentJob) dựa trên: capacity = countShiftsToday * docShiftQuota.
@@ -36,12 +37,12 @@ public class RoomQueueHolder {
 
     /**
      * Hàng đợi bệnh nhân theo phòng, key = roomNumber.
-     * Mỗi queue là PriorityQueue với comparator ưu tiên theo trạng thái + isPriority + queueOrder.
+     * Mỗi queue là RoomQueue sắp theo RoomQueue.PRIORITY_COMPARATOR (trạng thái + isPriority + queueOrder).
      */
-    private final Map<Integer, Queue<QueuePatientsResponse>> roomQueues = new HashMap<>();
+    private final Map<Integer, RoomQueue> roomQueues = new ConcurrentHashMap<>();
 
     /**
-     * RoomWorker (Thread xử lý khám bệnh) tương ứng với từng phòng.
+     * RoomWorker (bộ xử lý khám bệnh, chạy trên RoomWorkerScheduler) tương ứng với từng phòng.
      * Key = roomNumber.
      */
     private final Map<Integer, RoomWorker> roomWorkers = new HashMap<>();
@@ -51,21 +52,21 @@ public class RoomQueueHolder {
      * Dùng để lọc phòng phù hợp khi phân bệnh nhân (findLeastBusyRoom).
      */
     @Getter
-    private final Map<Integer, DepartmentType> roomTypes = new HashMap<>();
+    private final Map<Integer, DepartmentType> roomTypes = new ConcurrentHashMap<>();
 
     /**
      * Chuyên khoa tương ứng với mỗi phòng (key = roomNumber, value = specializationId).
      * Dùng để lọc phòng đúng chuyên môn khi phân bệnh nhân.
      */
     @Getter
-    private final Map<Integer, String> roomSpecializations = new HashMap<>();
+    private final Map<Integer, String> roomSpecializations = new ConcurrentHashMap<>();
 
     /**
      * Sức chứa tối đa mỗi phòng (capacity) trong NGÀY.
      * Công thức thiết lập từ bên ngoài: capacity = countShiftsToday * docShiftQuota.
      * Nếu chưa set (null) → hiện tại mặc định không giới hạn (xem canAcceptNewPatient).
      */
-    private final Map<Integer, Integer> roomCapacity = new HashMap<>();
+    private final Map<Integer, Integer> roomCapacity = new ConcurrentHashMap<>();
 
     /**
      * Trạng thái quá tải theo phòng.
@@ -74,46 +75,16 @@ public class RoomQueueHolder {
      *
      * Giá trị này được cập nhật mỗi khi setCapacity/enqueue/refreshQueue.
      */
-    private final Map<Integer, Boolean> roomOverloaded = new HashMap<>();
+    private final Map<Integer, Boolean> roomOverloaded = new ConcurrentHashMap<>();
 
     /**
-     * Comparator sắp xếp bệnh nhân trong hàng đợi theo mức độ ưu tiên (giá trị nhỏ hơn đứng trước):
-     * -1. Đã khám xong (DONE) hoặc huỷ (CANCELED) → đưa lên đầu để loại bỏ sớm.
-     *  0. Đang chờ kết quả (AWAITING_RESULT).
-     *  1. Đang được khám (IN_PROGRESS).
-     *  2. Đang gọi vào phòng (CALLING).
-     *  3. Đang chờ (WAITING).
-     *  4. Trạng thái khác (nếu có).
-     *
-     * Trong cùng một nhóm score:
-     * - Bệnh nhân có `isPriority = true` được ưu tiên hơn.
-     * - Sắp xếp theo thứ tự `queueOrder` tăng dần.
-     *
-     * Lưu ý: PriorityQueue ưu tiên giá trị nhỏ hơn → DONE/CANCELED = -1 giúp loại bỏ sớm.
-     */
-    private final Comparator<QueuePatientsResponse> priorityComparator = Comparator
-            .comparingInt((QueuePatientsResponse p) -> {
-                String status = p.getStatus();
-
-                if (Status.IN_PROGRESS.name().equalsIgnoreCase(status)) return 0;
-
-                if (Status.CALLING.name().equalsIgnoreCase(status)) return 1;
-
-                if (Status.WAITING.name().equalsIgnoreCase(status)) return 2;
-
-                return 3; // fallback
-            })
-            .thenComparing(QueuePatientsResponse::getIsPriority, Comparator.nullsLast(Comparator.reverseOrder()))
-            .thenComparing(QueuePatientsResponse::getQueueOrder, Comparator.nullsLast(Long::compareTo));
-
-    /**
-     * Thread pool dùng để chạy RoomWorker tương ứng cho từng phòng.
-     * Dùng cached thread pool để tái sử dụng thread, phù hợp với số phòng biến thiên.
+     * Bộ lập lịch dùng chung (toàn node) để chạy RoomWorker khi queue thay đổi.
+     * RoomWorker không giữ thread riêng → số thread không tăng theo số phòng/tenant.
      */
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final RoomWorkerScheduler scheduler;
 
     /**
-     * Lock để đồng bộ thao tác khởi tạo hoặc truy cập vào roomQueues/roomWorkers/capacity...
+     * Lock để đồng bộ thao tác khởi tạo phòng.
      * Các thao tác trên từng queue sẽ đồng bộ RIÊNG trên đối tượng queue để giảm vùng khoá.
      */
     private final Object roomQueueLock = new Object();
@@ -123,15 +94,17 @@ public class RoomQueueHolder {
      */
     private final Object workerLock = new Object();
 
+    public RoomQueueHolder(RoomWorkerScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     // ===================== HÀM QUẢN LÝ CAPACITY & OVERLOAD =====================
 
     /**
      * (Bổ sung) Cho phép đọc danh sách capacity theo phòng dạng read-only.
      */
     public Map<Integer, Integer> getCapacities() {
-        synchronized (roomQueueLock) {
-            return Map.copyOf(roomCapacity);
-        }
+        return Map.copyOf(roomCapacity);
     }
 
     /**
@@ -143,10 +116,8 @@ public class RoomQueueHolder {
      * Sau khi set, hệ thống sẽ tự cập nhật trạng thái quá tải (roomOverloaded).
      */
     public void setCapacity(int roomNumber, int capacity) {
-        synchronized (roomQueueLock) {
-            roomCapacity.put(roomNumber, Math.max(0, capacity)); // bảo vệ khỏi giá trị âm
-            updateOverloadState(roomNumber);
-        }
+        roomCapacity.put(roomNumber, Math.max(0, capacity)); // bảo vệ khỏi giá trị âm
+        updateOverloadState(roomNumber);
     }
 
     /**
@@ -155,9 +126,7 @@ public class RoomQueueHolder {
      * @return true nếu quá tải, false nếu bình thường hoặc chưa set capacity.
      */
     public boolean isOverloaded(int roomNumber) {
-        synchronized (roomQueueLock) {
-            return roomOverloaded.getOrDefault(roomNumber, false);
-        }
+        return roomOverloaded.getOrDefault(roomNumber, false);
     }
 
     /**
@@ -172,13 +141,11 @@ public class RoomQueueHolder {
      * để đảm bảo không có phòng có capacity "vô hạn" do quên set.
      */
     public boolean canAcceptNewPatient(int roomNumber) {
-        synchronized (roomQueueLock) {
-            Integer cap = roomCapacity.get(roomNumber);
-            Queue<QueuePatientsResponse> q = roomQueues.get(roomNumber);
-            if (cap == null) return true;
-            int current = (q != null) ? q.size() : 0;
-            return current < cap;
-        }
+        Integer cap = roomCapacity.get(roomNumber);
+        RoomQueue q = roomQueues.get(roomNumber);
+        if (cap == null) return true;
+        int current = (q != null) ? q.size() : 0;
+        return current < cap;
     }
 
     /**
@@ -189,12 +156,10 @@ public class RoomQueueHolder {
      * - refreshQueue
      */
     private void updateOverloadState(int roomNumber) {
-        synchronized (roomQueueLock) {
-            Queue<QueuePatientsResponse> q = roomQueues.get(roomNumber);
-            Integer cap = roomCapacity.get(roomNumber);
-            boolean overloaded = (cap != null) && (q != null) && (q.size() >= cap);
-            roomOverloaded.put(roomNumber, overloaded);
-        }
+        RoomQueue q = roomQueues.get(roomNumber);
+        Integer cap = roomCapacity.get(roomNumber);
+        boolean overloaded = (cap != null) && (q != null) && (q.size() >= cap);
+        roomOverloaded.put(roomNumber, overloaded);
     }
 
     // ===================== HÀM XỬ LÝ =====================
@@ -207,27 +172,28 @@ public class RoomQueueHolder {
      * - KHÔNG set capacity ở đây — capacity được set từ AutoRoomAssignmentJob sau khi tính toán.
      */
     public void initRoom(int roomNumber, String tenantCode, QueuePatientsService queuePatientsService, String queueId, TextToSpeechService ttsService, PatientRepository patientRepository) {
-        Queue<QueuePatientsResponse> queue;
+        RoomQueue queue;
         synchronized (roomQueueLock) {
-            // Tạo mới priority queue nếu phòng chưa có
-            queue = roomQueues.computeIfAbsent(roomNumber, id -> new PriorityQueue<>(priorityComparator));
+            // Tạo mới queue nếu phòng chưa có
+            queue = roomQueues.computeIfAbsent(roomNumber, id -> new RoomQueue());
         }
         synchronized (workerLock) {
             // Khởi động RoomWorker nếu chưa tồn tại
             if (!roomWorkers.containsKey(roomNumber)) {
-                RoomWorker worker = new RoomWorker(roomNumber, tenantCode, queue, queuePatientsService, ttsService, patientRepository);
+                RoomWorker worker = new RoomWorker(roomNumber, tenantCode, queue, queuePatientsService, ttsService, patientRepository, scheduler);
                 roomWorkers.put(roomNumber, worker);
-                executor.submit(worker);
+                scheduler.registerWorker();
             }
         }
         // Phục hồi các bệnh nhân đã gán phòng (nếu có)
         if (queueId != null) {
             List<QueuePatientsResponse> list = queuePatientsService.getAssignedPatientsForRoom(queueId, String.valueOf(roomNumber));
             synchronized (queue) {
-                queue.addAll(list);
+                list.forEach(queue::offer);
             }
             // Sau khi phục hồi từ DB, cập nhật luôn trạng thái quá tải hiện tại
             updateOverloadState(roomNumber);
+            signalWorker(roomNumber);
         }
     }
 
@@ -247,27 +213,71 @@ public class RoomQueueHolder {
     /**
      * Thêm bệnh nhân vào hàng đợi của phòng (nếu chưa trùng ID trong queue) và cập nhật trạng thái quá tải.
      * - Nếu phòng đã đầy (>= capacity) → không enque và đánh dấu overloaded = true.
-     * - Đặt assignedTime = now khi enqueue thành công.
+     * - Đặt assignedTime = now khi enqueue thành công; queue giữ bản sao riêng, không dùng chung đối tượng của caller.
      */
     public void enqueue(int roomNumber, QueuePatientsResponse patient) {
-        synchronized (roomQueueLock) {
-            Queue<QueuePatientsResponse> queue = roomQueues.get(roomNumber);
-            if (queue != null) {
-                synchronized (queue) {
-                    // Chặn thêm bệnh nhân nếu quá tải theo capacity hiện tại
-                    if (!canAcceptNewPatient(roomNumber)) {
-                        roomOverloaded.put(roomNumber, true);
-                        return;
-                    }
-                    // Tránh thêm trùng 1 bệnh nhân nhiều lần trong queue
-                    if (queue.stream().noneMatch(p -> p.getId().equals(patient.getId()))) {
-                        patient.setAssignedTime(LocalDateTime.now());
-                        queue.offer(patient);
-                        // cập nhật trạng thái quá tải sau khi thêm
-                        updateOverloadState(roomNumber);
-                    }
+        RoomQueue queue = roomQueues.get(roomNumber);
+        if (queue == null) return;
+
+        synchronized (queue) {
+            // Chặn thêm bệnh nhân nếu quá tải theo capacity hiện tại
+            if (!canAcceptNewPatient(roomNumber)) {
+                roomOverloaded.put(roomNumber, true);
+                return;
+            }
+            // Tránh thêm trùng 1 bệnh nhân nhiều lần trong queue (kiểm tra O(1) theo id)
+            if (queue.contains(patient.getId())) return;
+
+            queue.offer(patient.toBuilder().assignedTime(LocalDateTime.now()).build());
+            // cập nhật trạng thái quá tải sau khi thêm
+            updateOverloadState(roomNumber);
+        }
+        signalWorker(roomNumber);
+    }
+
+    /**
+     * Áp dụng một thay đổi lượt khám (từ QueuePatientChangedEvent) vào hàng đợi trong bộ nhớ.
+     * - Nếu bệnh nhân đang nằm trong queue của phòng → thay bản ghi cũ bằng bản mới (giữ assignedTime)
+     *   để RoomQueue sắp xếp lại theo trạng thái mới (O(log n)).
+     * - Nếu bị xoá mềm → loại khỏi queue.
+     * - Nếu bệnh nhân đã chuyển sang phòng khác → loại khỏi queue phòng cũ.
+     * - Bệnh nhân chưa có trong queue sẽ do AutoRoomAssignmentJob enqueue, không thêm ở đây.
+     * Sau khi thay đổi sẽ đánh thức RoomWorker của (các) phòng liên quan.
+     * Payload của sự kiện không bị sửa (feed delta và các listener khác cũng giữ nó) → queue nhận bản sao.
+     */
+    public void applyChange(QueuePatientsResponse patient, boolean deleted) {
+        Integer targetRoom = (patient.getRoomNumber() != null) ? DataUtil.parseInt(patient.getRoomNumber()) : null;
+        List<Integer> touchedRooms = new ArrayList<>();
+
+        for (Map.Entry<Integer, RoomQueue> entry : roomQueues.entrySet()) {
+            RoomQueue queue = entry.getValue();
+            synchronized (queue) {
+                QueuePatientsResponse existing = queue.remove(patient.getId());
+                if (existing == null) continue;
+
+                if (!deleted && entry.getKey().equals(targetRoom)) {
+                    queue.offer(patient.toBuilder()
+                            .assignedTime(existing.getAssignedTime())
+                            .fullName(existing.getFullName())
+                            .build());
                 }
             }
+            updateOverloadState(entry.getKey());
+            touchedRooms.add(entry.getKey());
+        }
+        touchedRooms.forEach(this::signalWorker);
+    }
+
+    /**
+     * Đánh thức RoomWorker của phòng (nếu có) để xử lý lại đầu hàng đợi.
+     */
+    private void signalWorker(int roomNumber) {
+        RoomWorker worker;
+        synchronized (workerLock) {
+            worker = roomWorkers.get(roomNumber);
+        }
+        if (worker != null) {
+            worker.signal();
         }
     }
 
@@ -275,19 +285,62 @@ public class RoomQueueHolder {
      * Trả về queue của một phòng (có thể null nếu phòng chưa init).
      * - CHỈ đọc: nếu cần chỉnh sửa queue, hãy đồng bộ trên chính đối tượng queue.
      */
-    public Queue<QueuePatientsResponse> getQueue(int roomNumber) {
-        synchronized (roomQueueLock) {
-            return roomQueues.get(roomNumber);
+    public RoomQueue getQueue(int roomNumber) {
+        return roomQueues.get(roomNumber);
+    }
+
+    /**
+     * Kiểm tra bệnh nhân (theo id lượt khám) đã nằm trong queue của phòng hay chưa — O(1).
+     */
+    public boolean contains(int roomNumber, String queuePatientId) {
+        RoomQueue queue = roomQueues.get(roomNumber);
+        if (queue == null) return false;
+        synchronized (queue) {
+            return queue.contains(queuePatientId);
         }
     }
 
+    /**
+     * Hàng đợi trong bộ nhớ đã phản ánh trạng thái này của lượt khám hay chưa:
+     * - Đang nằm trong queue của đúng phòng với cùng trạng thái và queueOrder, hoặc
+     * - Đã xoá mềm / chưa có phòng và không nằm trong queue nào (applyChange không có gì để làm).
+     * Dùng khi đối soát thay đổi ghi trên node khác để không phát lại sự kiện cho thay đổi đã áp dụng.
+     */
+    public boolean isCurrent(QueuePatientsResponse patient, boolean deleted) {
+        Integer targetRoom = (patient.getRoomNumber() != null) ? DataUtil.parseInt(patient.getRoomNumber()) : null;
+        for (Map.Entry<Integer, RoomQueue> entry : roomQueues.entrySet()) {
+            RoomQueue queue = entry.getValue();
+            QueuePatientsResponse existing;
+            synchronized (queue) {
+                existing = queue.get(patient.getId());
+            }
+            if (existing == null) continue;
+            return !deleted
+                    && entry.getKey().equals(targetRoom)
+                    && Objects.equals(existing.getStatus(), patient.getStatus())
+                    && Objects.equals(existing.getQueueOrder(), patient.getQueueOrder());
+        }
+        return deleted || targetRoom == null;
+    }
+
+    /**
+     * Loại bệnh nhân khỏi queue của phòng (ví dụ khi gán phòng dưới DB thất bại).
+     */
+    public void remove(int roomNumber, String queuePatientId) {
+        RoomQueue queue = roomQueues.get(roomNumber);
+        if (queue == null) return;
+        synchronized (queue) {
+            if (queue.remove(queuePatientId) == null) return;
+        }
+        updateOverloadState(roomNumber);
+        signalWorker(roomNumber);
+    }
+
     /**
      * Kiểm tra phòng đã được init hay chưa (tồn tại queue).
      */
     public boolean hasRoom(int roomNumber) {
-        synchronized (roomQueueLock) {
-            return roomQueues.containsKey(roomNumber);
-        }
+        return roomQueues.containsKey(roomNumber);
     }
 
     /**
@@ -298,80 +351,56 @@ public class RoomQueueHolder {
      * 3) không có phòng phù hợp → trả về null
      */
     public Integer findLeastBusyRoom(DepartmentType type, String specializationId) {
-        synchronized (roomQueueLock) {
-            List<Map.Entry<Integer, Queue<QueuePatientsResponse>>> candidates;
-
-            // Case 1: type + specialization match
-            if (type != null && specializationId != null) {
-                candidates = roomQueues.entrySet().stream()
-                        .filter(e -> type.equals(roomTypes.get(e.getKey())))
-                        .filter(e -> specializationId.equals(roomSpecializations.get(e.getKey())))
-                        .filter(e -> canAcceptNewPatient(e.getKey())) // chỉ lấy phòng còn chỗ
-                        .toList();
-
-                if (!candidates.isEmpty()) {
-                    return getLeastBusyRoomFromCandidates(candidates);
-                }
-            }
-
-            // Case 2: fallback with only type
-            if (type != null) {
-                candidates = roomQueues.entrySet().stream()
-                        .filter(e -> type.equals(roomTypes.get(e.getKey())))
-                        .filter(e -> canAcceptNewPatient(e.getKey()))
-                        .toList();
+        if (type == null) return null;
 
-                if (!candidates.isEmpty()) {
-                    return getLeastBusyRoomFromCandidates(candidates);
-                }
-            }
-
-            // Case 3: No match at all
-            return null;
+        // Case 1: type + specialization match
+        if (specializationId != null) {
+            Integer room = findLeastBusyRoomMatching(type, specializationId);
+            if (room != null) return room;
         }
+
+        // Case 2: fallback with only type
+        // Case 3: No match at all → null
+        return findLeastBusyRoomMatching(type, null);
     }
 
     /**
-     * Từ danh sách phòng ứng viên, chọn phòng có queue size nhỏ nhất.
-     * Nếu có nhiều phòng cùng size → chọn roomNumber nhỏ nhất.
+     * Duyệt các phòng đúng type (và specialization nếu có), còn chỗ, chọn phòng có số bệnh nhân ACTIVE
+     * (WAITING, CALLING, IN_PROGRESS) ít nhất; nếu trùng thì lấy roomNumber nhỏ hơn.
+     * Số active được RoomQueue duy trì sẵn → chi phí O(số phòng), không phụ thuộc số bệnh nhân.
      */
-    private Integer getLeastBusyRoomFromCandidates(List<Map.Entry<Integer, Queue<QueuePatientsResponse>>> candidates) {
-        // Đếm số bệnh nhân ACTIVE (WAITING, CALLING, IN_PROGRESS) trong từng phòng
-        Map<Integer, Long> activeCounts = candidates.stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        e -> e.getValue().stream()
-                                .filter(p -> {
-                                    String s = p.getStatus();
-                                    return Status.WAITING.name().equalsIgnoreCase(s)
-                                            || Status.CALLING.name().equalsIgnoreCase(s)
-                                            || Status.IN_PROGRESS.name().equalsIgnoreCase(s);
-                                })
-                                .count()
-                ));
-
-        // Tìm min active count
-        long minSize = activeCounts.values().stream().mapToLong(Long::longValue).min().orElse(Long.MAX_VALUE);
-
-        // Chọn phòng có số active = min, nếu trùng thì lấy roomNumber nhỏ hơn
-        return activeCounts.entrySet().stream()
-                .filter(e -> e.getValue() == minSize)
-                .map(Map.Entry::getKey)
-                .sorted()
-                .findFirst()
-                .orElse(null);
+    private Integer findLeastBusyRoomMatching(DepartmentType type, String specializationId) {
+        Integer bestRoom = null;
+        int bestActive = Integer.MAX_VALUE;
+
+        for (Map.Entry<Integer, RoomQueue> entry : roomQueues.entrySet()) {
+            Integer roomNumber = entry.getKey();
+            if (!type.equals(roomTypes.get(roomNumber))) continue;
+            if (specializationId != null && !specializationId.equals(roomSpecializations.get(roomNumber))) continue;
+            if (!canAcceptNewPatient(roomNumber)) continue; // chỉ lấy phòng còn chỗ
+
+            int active = entry.getValue().activeCount();
+            if (active < bestActive || (active == bestActive && roomNumber < bestRoom)) {
+                bestRoom = roomNumber;
+                bestActive = active;
+            }
+        }
+        return bestRoom;
     }
 
     /**
      * Dừng toàn bộ RoomWorker (khi shutdown ứng dụng hoặc tenant stop).
-     * - Gửi tín hiệu stopWorker cho từng worker.
-     * - shutdownNow() thread pool để hủy các nhiệm vụ còn lại.
+     * - Gửi tín hiệu stopWorker cho từng worker và huỷ đăng ký khỏi scheduler dùng chung.
+     * - KHÔNG tắt scheduler vì được dùng chung cho mọi tenant.
      */
     public void stopAllWorkers() {
         synchronized (workerLock) {
-            roomWorkers.values().forEach(RoomWorker::stopWorker);
+            roomWorkers.values().forEach(worker -> {
+                worker.stopWorker();
+                scheduler.unregisterWorker();
+            });
+            roomWorkers.clear();
         }
-        executor.shutdownNow();
     }
 
     /**
@@ -389,28 +418,54 @@ public class RoomQueueHolder {
 
     /**
      * Làm mới queue: tải lại bản ghi mới nhất từ DB cho các bệnh nhân trong queue hiện tại
-     * → clear queue → offer lại → cập nhật trạng thái quá tải.
+     * → thay vào queue → cập nhật trạng thái quá tải.
      *
      * Chức năng:
      * - Giảm rủi ro stale data (ví dụ status thay đổi) khi worker/luồng khác đã cập nhật DB.
      * - Giữ lại thứ tự ưu tiên nhờ cùng comparator.
+     *
+     * Cách làm:
+     * - Chụp danh sách id dưới lock của queue, tải lại bằng MỘT truy vấn cho cả phòng NGOÀI mọi lock
+     *   → refresh một phòng đông không chặn enqueue/chọn phòng ở các phòng khác.
+     * - Thay từng bản ghi dưới lock của queue; bản ghi đã bị thay đổi trong lúc tải (applyChange/enqueue)
+     *   được giữ nguyên vì mới hơn. Bản ghi đã xoá hoặc chuyển phòng bị loại khỏi queue.
      */
     public void refreshQueue(int roomNumber, QueuePatientsService service) {
-        synchronized (roomQueueLock) {
-            Queue<QueuePatientsResponse> queue = roomQueues.get(roomNumber);
-            if (queue == null) return;
-
-            synchronized (queue) {
-                List<QueuePatientsResponse> refreshed = queue.stream()
-                        .map(p -> service.getQueuePatientsById(p.getId()))
-                        .toList();
+        RoomQueue queue = roomQueues.get(roomNumber);
+        if (queue == null) return;
 
-                queue.clear();
-                refreshed.forEach(queue::offer);
+        List<QueuePatientsResponse> current;
+        synchronized (queue) {
+            current = queue.snapshot();
+        }
+        if (current.isEmpty()) return;
+
+        Map<String, QueuePatientsResponse> fresh = new HashMap<>();
+        service.getQueuePatientsByIds(current.stream().map(QueuePatientsResponse::getId).toList())
+                .forEach(p -> fresh.put(p.getId(), p));
+
+        synchronized (queue) {
+            for (QueuePatientsResponse previous : current) {
+                // Đã bị thay bởi bản mới hơn trong lúc tải → bỏ qua
+                if (queue.get(previous.getId()) != previous) continue;
+
+                QueuePatientsResponse latest = fresh.get(previous.getId());
+                Integer latestRoom = (latest != null && latest.getRoomNumber() != null)
+                        ? DataUtil.parseInt(latest.getRoomNumber())
+                        : null;
+                if (latest == null || (latestRoom != null && latestRoom != roomNumber)) {
+                    queue.remove(previous.getId());
+                    continue;
+                }
 
-                // Sau khi refresh lại queue → cập nhật overloaded theo capacity hiện tại
-                updateOverloadState(roomNumber);
+                latest.setAssignedTime(previous.getAssignedTime());
+                latest.setFullName(previous.getFullName());
+                queue.update(latest);
             }
+
+            // Sau khi refresh lại queue → cập nhật overloaded theo capacity hiện tại
+            updateOverloadState(roomNumber);
         }
+        signalWorker(roomNumber);
     }
 }
@@ -0,0 +1,104 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bộ lập lịch dùng chung cho toàn bộ RoomWorker của mọi tenant.
+ *
+ * Thay vì mỗi phòng giữ một platform thread chạy vòng lặp vô hạn, RoomWorker chỉ được submit
+ * vào đây khi queue của phòng thay đổi, xử lý xong thì trả thread lại.
+ *
+ * Chế độ (room-worker.mode):
+ * - shared  : 1 fixed thread pool dùng chung, kích thước = room-worker.concurrency.
+ * - virtual : mỗi lần xử lý chạy trên 1 virtual thread (Java 21), giới hạn đồng thời bằng Semaphore
+ *             để không vượt quá số kết nối DB của tenant.
+ *
+ * Metrics:
+ * - room.worker.registered : số RoomWorker đang được đăng ký (số phòng đang mở).
+ * - room.worker.active     : số RoomWorker đang xử lý.
+ * - room.worker.parked     : số RoomWorker đang rảnh (không chiếm thread).
+ */
+@Slf4j
+@Component
+public class RoomWorkerScheduler implements Executor {
+
+    private final ExecutorService executor;
+
+    /** Giới hạn số RoomWorker chạy đồng thời (áp dụng cho cả 2 chế độ). */
+    private final Semaphore permits;
+
+    private final AtomicInteger registeredWorkers = new AtomicInteger();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+
+    public RoomWorkerScheduler(@Value("${room-worker.mode:shared}") String mode,
+                               @Value("${room-worker.concurrency:8}") int concurrency,
+                               MeterRegistry meterRegistry) {
+        int size = Math.max(1, concurrency);
+        this.permits = new Semaphore(size);
+
+        if ("virtual".equalsIgnoreCase(mode)) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("room-worker-v-", 0).factory());
+        } else {
+            this.executor = Executors.newFixedThreadPool(size, Thread.ofPlatform().name("room-worker-", 0).daemon(true).factory());
+        }
+
+        Gauge.builder("room.worker.registered", registeredWorkers, AtomicInteger::get)
+                .description("Số RoomWorker đang được đăng ký")
+                .register(meterRegistry);
+        Gauge.builder("room.worker.active", activeWorkers, AtomicInteger::get)
+                .description("Số RoomWorker đang xử lý")
+                .register(meterRegistry);
+        Gauge.builder("room.worker.parked", this, s -> Math.max(0, s.registeredWorkers.get() - s.activeWorkers.get()))
+                .description("Số RoomWorker đang rảnh, không chiếm thread")
+                .register(meterRegistry);
+
+        log.info("RoomWorkerScheduler khởi tạo: mode={}, concurrency={}", mode, size);
+    }
+
+    /**
+     * Submit một lượt xử lý của RoomWorker.
+     * RoomWorker tự đảm bảo không có 2 lượt xử lý song song cho cùng một phòng.
+     */
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            activeWorkers.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                activeWorkers.decrementAndGet();
+                permits.release();
+            }
+        });
+    }
+
+    public void registerWorker() {
+        registeredWorkers.incrementAndGet();
+    }
+
+    public void unregisterWorker() {
+        registeredWorkers.decrementAndGet();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,164 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.enums.WorkStatus;
+import vn.edu.fpt.medicaldiagnosis.repository.WorkScheduleRepository;
+import vn.edu.fpt.medicaldiagnosis.thread.event.WorkScheduleChangedEvent;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Danh sách ca làm của ngày hiện tại theo tenant: staffId → các khoảng [bắt đầu - 15 phút, kết thúc],
+ * dùng cho WorkScheduleService.isStaffOnShiftNow thay vì truy vấn work_schedules ở mỗi thao tác hàng đợi.
+ *
+ * - Dựng bằng một truy vấn cho toàn tenant: lịch hôm qua và hôm nay (bao phủ ca qua đêm), bỏ lịch ON_LEAVE.
+ * - Bị huỷ khi có WorkScheduleChangedEvent (lúc publish và lần nữa sau commit); sang ngày mới thì dựng lại.
+ *   shift-roster.ttl-ms chỉ là lưới an toàn cho thay đổi không đi qua ứng dụng.
+ * - generation theo tenant: bản dựng bắt đầu trước một lần huỷ sẽ không được ghi vào cache.
+ */
+@Component
+public class ShiftRosterCache {
+
+    private static final String CONTROL_KEY = "__control__";
+
+    /** Số phút cho phép thao tác sớm trước giờ bắt đầu ca. */
+    static final int EARLY_LIMIT_MINUTES = 15;
+
+    private record Roster(LocalDate date, Map<String, long[]> intervals, long expiresAt) {}
+
+    private static final class TenantRoster {
+        private final AtomicLong generation = new AtomicLong();
+        private final Object buildLock = new Object();
+        private volatile Roster roster;
+    }
+
+    private final WorkScheduleRepository workScheduleRepository;
+    private final long ttlMs;
+    private final Clock clock;
+
+    private final Map<String, TenantRoster> tenants = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ShiftRosterCache(WorkScheduleRepository workScheduleRepository,
+                            @Value("${shift-roster.ttl-ms:300000}") long ttlMs) {
+        this(workScheduleRepository, ttlMs, Clock.systemDefaultZone());
+    }
+
+    ShiftRosterCache(WorkScheduleRepository workScheduleRepository, long ttlMs, Clock clock) {
+        this.workScheduleRepository = workScheduleRepository;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+    }
+
+    /**
+     * Nhân viên có đang trong ca (kể cả sớm tối đa EARLY_LIMIT_MINUTES phút) của tenant hiện tại hay không.
+     */
+    public boolean isOnShift(String staffId) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        long[] intervals = roster(tenantKey(), now.toLocalDate()).intervals().get(staffId);
+        if (intervals == null) return false;
+
+        long at = now.toEpochSecond(ZoneOffset.UTC);
+        for (int i = 0; i < intervals.length; i += 2) {
+            if (at >= intervals[i] && at <= intervals[i + 1]) return true;
+        }
+        return false;
+    }
+
+    public void invalidate(String tenantCode) {
+        TenantRoster tenant = tenants.get(key(tenantCode));
+        if (tenant == null) return;
+        synchronized (tenant.generation) {
+            tenant.generation.incrementAndGet();
+            tenant.roster = null;
+        }
+    }
+
+    @EventListener
+    public void onWorkScheduleChanged(WorkScheduleChangedEvent event) {
+        invalidate(event.getTenantCode());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onWorkScheduleCommitted(WorkScheduleChangedEvent event) {
+        invalidate(event.getTenantCode());
+    }
+
+    private Roster roster(String key, LocalDate today) {
+        TenantRoster tenant = tenants.computeIfAbsent(key, k -> new TenantRoster());
+        Roster roster = tenant.roster;
+        if (isFresh(roster, today)) return roster;
+
+        // Một lượt dựng mỗi tenant; các luồng khác chờ và dùng kết quả
+        synchronized (tenant.buildLock) {
+            roster = tenant.roster;
+            if (isFresh(roster, today)) return roster;
+
+            long before = tenant.generation.get();
+            Roster built = build(today);
+            synchronized (tenant.generation) {
+                if (tenant.generation.get() == before) {
+                    tenant.roster = built;
+                }
+            }
+            return built;
+        }
+    }
+
+    private boolean isFresh(Roster roster, LocalDate today) {
+        return roster != null && roster.date().equals(today) && roster.expiresAt() > clock.millis();
+    }
+
+    private Roster build(LocalDate today) {
+        Map<String, List<long[]>> byStaff = new HashMap<>();
+        for (Object[] row : workScheduleRepository.findRosterRows(today.minusDays(1), today, WorkStatus.ON_LEAVE)) {
+            String staffId = (String) row[0];
+            LocalDate shiftDate = (LocalDate) row[1];
+            LocalTime start = (LocalTime) row[2];
+            LocalTime end = (LocalTime) row[3];
+            if (start == null || end == null) continue;
+
+            boolean overnight = end.isBefore(start);
+            LocalDateTime startAt = LocalDateTime.of(shiftDate, start).minusMinutes(EARLY_LIMIT_MINUTES);
+            LocalDateTime endAt = LocalDateTime.of(overnight ? shiftDate.plusDays(1) : shiftDate, end);
+
+            byStaff.computeIfAbsent(staffId, s -> new ArrayList<>())
+                    .add(new long[]{startAt.toEpochSecond(ZoneOffset.UTC), endAt.toEpochSecond(ZoneOffset.UTC)});
+        }
+
+        Map<String, long[]> intervals = new HashMap<>(Math.max(16, byStaff.size() * 2));
+        byStaff.forEach((staffId, list) -> {
+            long[] flat = new long[list.size() * 2];
+            for (int i = 0; i < list.size(); i++) {
+                flat[2 * i] = list.get(i)[0];
+                flat[2 * i + 1] = list.get(i)[1];
+            }
+            intervals.put(staffId, flat);
+        });
+        return new Roster(today, Map.copyOf(intervals), clock.millis() + ttlMs);
+    }
+
+    private static String tenantKey() {
+        return key(TenantContext.getTenantId());
+    }
+
+    private static String key(String tenantCode) {
+        return tenantCode == null || tenantCode.isBlank() ? CONTROL_KEY : tenantCode;
+    }
+}
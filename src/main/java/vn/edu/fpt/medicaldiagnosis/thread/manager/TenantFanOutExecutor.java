@@ -0,0 +1,186 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Chạy một tác vụ cho từng tenant song song trên pool thread riêng (không dùng common ForkJoinPool).
+ *
+ * - Mỗi lượt (một job) chạy tối đa tenant-fanout.parallelism tenant cùng lúc; các job dùng chung
+ *   tenant-fanout.threads thread.
+ * - Mỗi tenant có timeout riêng: quá hạn thì task bị huỷ (interrupt) và lượt job tiếp tục với tenant khác,
+ *   nên một DB tenant chậm không giữ chân các tenant còn lại.
+ * - Tenant còn đang chạy từ lượt trước của cùng job (ví dụ bị timeout nhưng chưa dừng hẳn) sẽ được bỏ qua.
+ * - TenantContext được đặt trước và xoá sau mỗi task.
+ * - Khi chạy nhiều node, mỗi tenant chỉ chạy trên node sở hữu nó theo vòng hash (TenantShardManager) và đang giữ
+ *   lease job:tenant (JobLeaseManager); tenant của node khác được bỏ qua với outcome "remote".
+ *
+ * Metrics:
+ * - tenant.job.duration{job,tenant} : thời gian xử lý một tenant.
+ * - tenant.job.runs{job,outcome}    : số lượt theo kết quả (success, error, timeout, skipped, remote).
+ */
+@Slf4j
+@Component
+public class TenantFanOutExecutor {
+
+    private final TenantService tenantService;
+    private final JobLeaseManager jobLeaseManager;
+    private final TenantShardManager tenantShardManager;
+    private final MeterRegistry meterRegistry;
+    private final int parallelism;
+    private final long defaultTimeoutMs;
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService watchdog;
+
+    // job:tenant đang chạy
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public TenantFanOutExecutor(TenantService tenantService,
+                                JobLeaseManager jobLeaseManager,
+                                TenantShardManager tenantShardManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${tenant-fanout.threads:16}") int threads,
+                                @Value("${tenant-fanout.parallelism:4}") int parallelism,
+                                @Value("${tenant-fanout.timeout-ms:60000}") long defaultTimeoutMs) {
+        this.tenantService = tenantService;
+        this.jobLeaseManager = jobLeaseManager;
+        this.tenantShardManager = tenantShardManager;
+        this.meterRegistry = meterRegistry;
+        this.parallelism = Math.max(1, parallelism);
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads),
+                Thread.ofPlatform().name("tenant-job-", 0).daemon(true).factory());
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("tenant-job-watchdog").daemon(true).factory());
+    }
+
+    /**
+     * Chạy task cho mọi tenant ACTIVE với timeout mặc định; chờ đến khi mọi tenant xong hoặc hết hạn.
+     */
+    public void forEachActiveTenant(String job, Consumer<Tenant> task) {
+        forEachTenant(job, tenantService.getAllTenantsActive(), defaultTimeoutMs, task);
+    }
+
+    public void forEachActiveTenant(String job, long timeoutMs, Consumer<Tenant> task) {
+        forEachTenant(job, tenantService.getAllTenantsActive(), timeoutMs, task);
+    }
+
+    public void forEachTenant(String job, List<Tenant> tenants, long timeoutMs, Consumer<Tenant> task) {
+        List<Tenant> owned = tenants.stream()
+                .filter(tenant -> {
+                    String lease = job + ":" + tenant.getCode();
+                    if (tenantShardManager.owns(tenant.getCode()) && jobLeaseManager.tryAcquire(lease)) return true;
+                    // Tenant đã chuyển sang node khác → trả lease để node mới nhận ngay
+                    if (!tenantShardManager.owns(tenant.getCode())) jobLeaseManager.release(lease);
+                    outcome(job, "remote");
+                    return false;
+                })
+                .toList();
+
+        Semaphore permits = new Semaphore(parallelism);
+        CountDownLatch finished = new CountDownLatch(owned.size());
+
+        try {
+            for (Tenant tenant : owned) {
+                permits.acquire();
+
+                String key = job + ":" + tenant.getCode();
+                if (!running.add(key)) {
+                    outcome(job, "skipped");
+                    log.warn("[{}] Job {} vẫn đang chạy từ lượt trước, bỏ qua", tenant.getCode(), job);
+                    permits.release();
+                    finished.countDown();
+                    continue;
+                }
+
+                AtomicBoolean started = new AtomicBoolean(false);
+                AtomicBoolean done = new AtomicBoolean(false);
+                Runnable release = () -> {
+                    if (done.compareAndSet(false, true)) {
+                        permits.release();
+                        finished.countDown();
+                    }
+                };
+
+                Future<?> future;
+                try {
+                    future = workers.submit(() -> runForTenant(job, key, tenant, task, started, release));
+                } catch (RejectedExecutionException e) {
+                    running.remove(key);
+                    release.run();
+                    continue;
+                }
+
+                watchdog.schedule(() -> {
+                    // Giành cờ done trước khi interrupt: task bị huỷ không được trả permit trước khi ghi nhận timeout
+                    if (future.isDone() || !done.compareAndSet(false, true)) return;
+                    future.cancel(true);
+                    // Bị huỷ khi còn nằm trong hàng đợi → task không bao giờ chạy để tự gỡ cờ running
+                    if (!started.get()) running.remove(key);
+                    outcome(job, "timeout");
+                    log.warn("[{}] Job {} quá thời gian {}ms, bỏ qua tenant này", tenant.getCode(), job, timeoutMs);
+                    permits.release();
+                    finished.countDown();
+                }, timeoutMs, TimeUnit.MILLISECONDS);
+            }
+
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runForTenant(String job, String key, Tenant tenant, Consumer<Tenant> task,
+                              AtomicBoolean started, Runnable release) {
+        started.set(true);
+        long start = System.nanoTime();
+        try {
+            TenantContext.setTenantId(tenant.getCode());
+            task.accept(tenant);
+            outcome(job, "success");
+        } catch (Exception e) {
+            outcome(job, "error");
+            log.error("[{}] Lỗi khi chạy job {}: {}", tenant.getCode(), job, e.getMessage(), e);
+        } finally {
+            TenantContext.clear();
+            Timer.builder("tenant.job.duration")
+                    .description("Thời gian chạy job cho một tenant")
+                    .tag("job", job)
+                    .tag("tenant", tenant.getCode())
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            running.remove(key);
+            release.run();
+        }
+    }
+
+    private void outcome(String job, String outcome) {
+        Counter.builder("tenant.job.runs")
+                .description("Số lượt chạy job theo tenant, theo kết quả")
+                .tag("job", job)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        workers.shutdownNow();
+    }
+}
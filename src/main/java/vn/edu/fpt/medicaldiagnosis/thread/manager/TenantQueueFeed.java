@@ -0,0 +1,138 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueueDeltaResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nhật ký thay đổi hàng đợi của MỘT tenant.
+ *
+ * - version tăng đơn điệu sau mỗi thay đổi; giá trị khởi tạo là thời điểm tạo feed (ms) nên vẫn tăng
+ *   khi ứng dụng khởi động lại → sinceVersion cũ của client không bị hiểu nhầm là mới.
+ * - Giữ tối đa capacity thay đổi gần nhất; client tụt lại quá xa sẽ nhận resyncRequired.
+ * - Mỗi thay đổi ghi kèm phòng trước đó của lượt khám: client lọc theo phòng cũ nhận removedIds khi bệnh nhân
+ *   được chuyển/gán sang phòng khác. Phòng hiện tại theo id được nhớ cho tối đa capacity * ROOM_INDEX_FACTOR
+ *   lượt khám gần nhất.
+ *
+ * Mỗi thay đổi lưu bản sao của lượt khám tại thời điểm ghi: sửa đối tượng gốc về sau không làm đổi lịch sử đã phát.
+ *
+ * Mọi thao tác đồng bộ trên chính đối tượng feed (số thay đổi mỗi tenant nhỏ, lock rất ngắn).
+ */
+public class TenantQueueFeed {
+
+    private static final int ROOM_INDEX_FACTOR = 10;
+
+    private record Change(long version, QueuePatientsResponse patient, String previousRoom, boolean deleted) {
+
+        boolean touches(String roomNumber) {
+            return roomNumber.equals(patient.getRoomNumber()) || roomNumber.equals(previousRoom);
+        }
+    }
+
+    private final int capacity;
+    private final Deque<Change> changes = new ArrayDeque<>();
+    private final Map<String, String> roomById;
+    private long version;
+
+    public TenantQueueFeed(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.version = System.currentTimeMillis();
+        int roomIndexSize = this.capacity * ROOM_INDEX_FACTOR;
+        this.roomById = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > roomIndexSize;
+            }
+        };
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Ghi nhận một thay đổi và trả về version mới.
+     */
+    public synchronized long append(QueuePatientsResponse patient, boolean deleted) {
+        patient = patient.toBuilder().build();
+        version++;
+        String previousRoom = deleted
+                ? roomById.remove(patient.getId())
+                : roomById.put(patient.getId(), patient.getRoomNumber());
+        changes.addLast(new Change(version, patient, previousRoom, deleted));
+        while (changes.size() > capacity) {
+            changes.removeFirst();
+        }
+        return version;
+    }
+
+    /**
+     * Các thay đổi sau sinceVersion, lọc theo phòng nếu có: lượt khám hiện ở phòng → changes,
+     * lượt khám đã rời phòng (chuyển phòng/xoá) trong khoảng này → removedIds.
+     * @return null nếu chưa có thay đổi nào phù hợp (listener tiếp tục chờ).
+     */
+    public synchronized QueueDeltaResponse deltaSince(long sinceVersion, String roomNumber) {
+        long oldest = changes.isEmpty() ? version : changes.peekFirst().version() - 1;
+        if (sinceVersion < oldest || sinceVersion > version) {
+            return resync();
+        }
+        if (sinceVersion == version) return null;
+
+        // Bản mới nhất của mỗi lượt khám (không lọc), và các lượt khám từng ở phòng đang lọc trong khoảng này
+        Map<String, Change> latest = new LinkedHashMap<>();
+        Set<String> touched = new HashSet<>();
+        Iterator<Change> it = changes.descendingIterator();
+        while (it.hasNext()) {
+            Change change = it.next();
+            if (change.version() <= sinceVersion) break;
+            latest.putIfAbsent(change.patient().getId(), change);
+            if (roomNumber != null && change.touches(roomNumber)) touched.add(change.patient().getId());
+        }
+
+        List<QueuePatientsResponse> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        latest.values().forEach(change -> {
+            String id = change.patient().getId();
+            if (roomNumber != null && !touched.contains(id)) return;
+
+            boolean inRoom = roomNumber == null || roomNumber.equals(change.patient().getRoomNumber());
+            if (change.deleted() || !inRoom) removed.add(id);
+            else updated.add(change.patient());
+        });
+        if (updated.isEmpty() && removed.isEmpty()) return null;
+        // Duyệt từ mới → cũ để giữ bản mới nhất; trả về theo thứ tự thay đổi
+        Collections.reverse(updated);
+        Collections.reverse(removed);
+        return QueueDeltaResponse.builder()
+                .version(version)
+                .changes(updated)
+                .removedIds(removed)
+                .build();
+    }
+
+    /** Phản hồi rỗng tại version hiện tại (dùng khi hết thời gian chờ). */
+    public synchronized QueueDeltaResponse empty() {
+        return QueueDeltaResponse.builder()
+                .version(version)
+                .changes(List.of())
+                .removedIds(List.of())
+                .build();
+    }
+
+    private QueueDeltaResponse resync() {
+        return QueueDeltaResponse.builder()
+                .version(version)
+                .resyncRequired(true)
+                .build();
+    }
+}
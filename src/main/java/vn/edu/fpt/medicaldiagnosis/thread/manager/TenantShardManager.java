@@ -0,0 +1,226 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import vn.edu.fpt.medicaldiagnosis.thread.event.TenantShardsChangedEvent;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chia tenant cho các node của ứng dụng bằng consistent hashing.
+ *
+ * - Mỗi node ghi heartbeat vào bảng cluster_nodes (DB control) mỗi tenant-shard.heartbeat-ms; node còn sống là node
+ *   có heartbeat trong tenant-shard.node-ttl-ms gần nhất. Khi tắt, node tự xoá dòng của mình để các node khác nhận tenant ngay.
+ * - Từ danh sách node sống dựng vòng hash (tenant-shard.virtual-nodes điểm ảo mỗi node). Tenant thuộc node đứng sau
+ *   hash của mã tenant trên vòng → khi một node vào/ra chỉ khoảng 1/N tenant đổi chủ.
+ * - Khi danh sách node đổi, phát TenantShardsChangedEvent để giải phóng trạng thái trong bộ nhớ (room worker, feed...)
+ *   của tenant không còn thuộc node này. Job theo tenant vẫn giữ lease job:tenant (JobLeaseManager) nên trong lúc
+ *   chuyển giao không có hai node cùng xử lý một tenant.
+ * - Mất kết nối DB control: giữ nguyên vòng hash gần nhất.
+ */
+@Slf4j
+@Component
+public class TenantShardManager {
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS cluster_nodes (
+                node_id      VARCHAR(191) NOT NULL PRIMARY KEY,
+                address      VARCHAR(255),
+                heartbeat_at DATETIME(3)  NOT NULL
+            )""";
+
+    private static final String HEARTBEAT_SQL = """
+            INSERT INTO cluster_nodes (node_id, address, heartbeat_at) VALUES (?, ?, NOW(3))
+            ON DUPLICATE KEY UPDATE address = VALUES(address), heartbeat_at = NOW(3)""";
+
+    private static final String LIVE_NODES_SQL =
+            "SELECT node_id, address FROM cluster_nodes WHERE heartbeat_at >= NOW(3) - INTERVAL ? MICROSECOND";
+
+    private static final String PURGE_SQL =
+            "DELETE FROM cluster_nodes WHERE heartbeat_at < NOW(3) - INTERVAL ? MICROSECOND";
+
+    private static final String LEAVE_SQL = "DELETE FROM cluster_nodes WHERE node_id = ?";
+
+    private final DataSource controlDataSource;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ClusterNode self;
+    private final long heartbeatMs;
+    private final long nodeTtlMs;
+    private final int virtualNodes;
+
+    private volatile Ring ring;
+
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("tenant-shard-heartbeat").daemon(true).factory());
+
+    public TenantShardManager(@Qualifier("controlDataSource") DataSource controlDataSource,
+                              JobLeaseManager jobLeaseManager,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry,
+                              @Value("${tenant-shard.advertised-address:}") String advertisedAddress,
+                              @Value("${tenant-shard.heartbeat-ms:10000}") long heartbeatMs,
+                              @Value("${tenant-shard.node-ttl-ms:30000}") long nodeTtlMs,
+                              @Value("${tenant-shard.virtual-nodes:64}") int virtualNodes) {
+        this.controlDataSource = controlDataSource;
+        this.eventPublisher = eventPublisher;
+        this.self = new ClusterNode(jobLeaseManager.getNodeId(),
+                advertisedAddress == null || advertisedAddress.isBlank() ? null : advertisedAddress);
+        this.heartbeatMs = heartbeatMs;
+        this.nodeTtlMs = nodeTtlMs;
+        this.virtualNodes = Math.max(1, virtualNodes);
+        // Trước heartbeat đầu tiên node chỉ thấy chính mình
+        this.ring = Ring.of(List.of(self), this.virtualNodes);
+
+        Gauge.builder("tenant.shard.nodes", () -> ring.nodeIds().size())
+                .description("Số node đang sống trong vòng hash tenant")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        try (Connection conn = controlDataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(CREATE_TABLE_SQL);
+        } catch (SQLException e) {
+            log.error("Không tạo được bảng cluster_nodes: {}", e.getMessage());
+        }
+        refresh();
+        heartbeat.scheduleWithFixedDelay(this::refresh, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean owns(String tenantCode) {
+        return self.nodeId().equals(ring.ownerOf(tenantCode).nodeId());
+    }
+
+    public ClusterNode ownerOf(String tenantCode) {
+        return ring.ownerOf(tenantCode);
+    }
+
+    public ClusterNode self() {
+        return self;
+    }
+
+    /**
+     * Có node khác đang sống trong vòng hash hay không (chạy đơn node → false).
+     */
+    public boolean isClustered() {
+        return ring.members().size() > 1;
+    }
+
+    /**
+     * Gửi heartbeat, đọc danh sách node sống và dựng lại vòng hash nếu thành viên thay đổi.
+     */
+    void refresh() {
+        List<ClusterNode> live = new ArrayList<>();
+        long ttlMicros = TimeUnit.MILLISECONDS.toMicros(nodeTtlMs);
+        try (Connection conn = controlDataSource.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(HEARTBEAT_SQL)) {
+                stmt.setString(1, self.nodeId());
+                stmt.setString(2, self.address());
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(LIVE_NODES_SQL)) {
+                stmt.setLong(1, ttlMicros);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        live.add(new ClusterNode(rs.getString("node_id"), rs.getString("address")));
+                    }
+                }
+            }
+            // Dọn node chết lâu (gấp 10 lần TTL) để bảng không phình theo số lần deploy
+            try (PreparedStatement stmt = conn.prepareStatement(PURGE_SQL)) {
+                stmt.setLong(1, ttlMicros * 10);
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            log.warn("Heartbeat cluster thất bại, giữ vòng hash hiện tại: {}", e.getMessage());
+            return;
+        } catch (Exception e) {
+            log.error("Lỗi heartbeat cluster: {}", e.getMessage(), e);
+            return;
+        }
+
+        if (live.stream().noneMatch(n -> n.nodeId().equals(self.nodeId()))) live.add(self);
+
+        Ring current = ring;
+        Ring next = Ring.of(live, virtualNodes);
+        if (next.members().equals(current.members())) return;
+
+        ring = next;
+        log.info("Thành viên cluster thay đổi: {} → {}", current.nodeIds(), next.nodeIds());
+        eventPublisher.publishEvent(new TenantShardsChangedEvent(next.nodeIds()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        try (Connection conn = controlDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LEAVE_SQL)) {
+            stmt.setString(1, self.nodeId());
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            log.warn("Không xoá được node {} khỏi cluster_nodes: {}", self.nodeId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Một node của ứng dụng; address là địa chỉ để client/load balancer gọi thẳng tới node (có thể null).
+     */
+    public record ClusterNode(String nodeId, String address) {
+    }
+
+    /**
+     * Vòng hash bất biến, dựng lại mỗi khi danh sách node thay đổi.
+     */
+    record Ring(NavigableMap<Long, ClusterNode> points, Set<ClusterNode> members) {
+
+        static Ring of(Collection<ClusterNode> nodes, int virtualNodes) {
+            TreeMap<Long, ClusterNode> points = new TreeMap<>();
+            for (ClusterNode node : nodes) {
+                for (int i = 0; i < virtualNodes; i++) {
+                    points.put(hash(node.nodeId() + "#" + i), node);
+                }
+            }
+            return new Ring(Collections.unmodifiableNavigableMap(points), Set.copyOf(nodes));
+        }
+
+        ClusterNode ownerOf(String tenantCode) {
+            Map.Entry<Long, ClusterNode> entry = points.ceilingEntry(hash(tenantCode));
+            return entry != null ? entry.getValue() : points.firstEntry().getValue();
+        }
+
+        Set<String> nodeIds() {
+            Set<String> ids = new TreeSet<>();
+            members.forEach(n -> ids.add(n.nodeId()));
+            return ids;
+        }
+
+        static long hash(String key) {
+            try {
+                byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+                long h = 0;
+                for (int i = 0; i < 8; i++) {
+                    h = (h << 8) | (digest[i] & 0xff);
+                }
+                return h;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package vn.edu.fpt.medicaldiagnosis.thread.worker;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueueDeltaResponse;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantQueueFeed;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Một màn hình hàng đợi đang kết nối SSE.
+ *
+ * - Không giữ thread: mỗi lần {@link #signal()} (feed có thay đổi) hoặc {@link #heartbeat()}, client được submit
+ *   vào executor dùng chung, ghi sự kiện rồi trả thread (giống RoomWorker).
+ * - Backpressure: mỗi client tối đa 1 lượt ghi đang chạy; các thay đổi đến trong lúc ghi được gom lại và gửi thành
+ *   MỘT delta từ lastVersion ở lượt sau. Client quá chậm (tụt khỏi nhật ký của feed) nhận sự kiện "resync".
+ * - Lỗi ghi (client ngắt kết nối) → đóng client và gọi onClose để gỡ khỏi registry.
+ */
+@Slf4j
+public class QueueStreamClient implements Runnable {
+
+    public static final String EVENT_DELTA = "delta";
+    public static final String EVENT_RESYNC = "resync";
+
+    @Getter
+    private final String tenantCode;
+    private final String roomNumber;
+    @Getter
+    private final SseEmitter emitter;
+    private final TenantQueueFeed feed;
+    private final Executor executor;
+    private final Consumer<QueueStreamClient> onClose;
+
+    private volatile long lastVersion;
+    private volatile boolean closed;
+
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final AtomicBoolean ping = new AtomicBoolean(false);
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    public QueueStreamClient(String tenantCode, String roomNumber, SseEmitter emitter, TenantQueueFeed feed,
+                             long sinceVersion, Executor executor, Consumer<QueueStreamClient> onClose) {
+        this.tenantCode = tenantCode;
+        this.roomNumber = roomNumber;
+        this.emitter = emitter;
+        this.feed = feed;
+        this.lastVersion = sinceVersion;
+        this.executor = executor;
+        this.onClose = onClose;
+    }
+
+    /** Feed của tenant vừa có thay đổi. */
+    public void signal() {
+        dirty.set(true);
+        schedule();
+    }
+
+    /** Gửi comment giữ kết nối (proxy/load balancer không cắt kết nối rảnh). */
+    public void heartbeat() {
+        ping.set(true);
+        schedule();
+    }
+
+    public void close() {
+        if (closed) return;
+        closed = true;
+        onClose.accept(this);
+    }
+
+    private void schedule() {
+        if (closed) return;
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                log.warn("Không thể lên lịch gửi SSE cho tenant {}: {}", tenantCode, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!closed && (dirty.get() || ping.get())) {
+                if (dirty.getAndSet(false)) {
+                    QueueDeltaResponse delta = feed.deltaSince(lastVersion, roomNumber);
+                    if (delta != null) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(delta.getVersion()))
+                                .name(delta.isResyncRequired() ? EVENT_RESYNC : EVENT_DELTA)
+                                .data(delta));
+                        lastVersion = delta.getVersion();
+                        ping.set(false); // vừa gửi dữ liệu thì không cần heartbeat
+                    }
+                }
+                if (ping.getAndSet(false)) {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                }
+            }
+        } catch (Exception e) {
+            // IOException / IllegalStateException khi client đã ngắt kết nối
+            log.debug("Đóng kết nối SSE tenant {}: {}", tenantCode, e.getMessage());
+            close();
+            emitter.completeWithError(e);
+        } finally {
+            scheduled.set(false);
+        }
+
+        // Tín hiệu đến sau khi thoát vòng lặp nhưng trước khi nhả cờ scheduled → lên lịch lại
+        if (!closed && (dirty.get() || ping.get())) {
+            schedule();
+        }
+    }
+}
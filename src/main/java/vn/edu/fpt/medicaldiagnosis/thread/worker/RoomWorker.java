@@ -10,28 +10,45 @@ import vn.edu.fpt.medicaldiagnosis.exception.AppException;
 import vn.edu.fpt.medicaldiagnosis.repository.PatientRepository;
 import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
 import vn.edu.fpt.medicaldiagnosis.service.TextToSpeechService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.RoomQueue;
 
-import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Luồng xử lý riêng cho mỗi phòng khám.
+ * Bộ xử lý riêng cho mỗi phòng khám.
  * Mỗi RoomWorker chịu trách nhiệm duyệt danh sách bệnh nhân trong phòng tương ứng,
  * cập nhật trạng thái theo thời gian thực (gọi khám, vào khám, hoàn tất, huỷ...).
+ *
+ * Hoạt động theo sự kiện:
+ * - Worker KHÔNG giữ thread riêng. Mỗi lần {@link #signal()} (enqueue, refresh, hoặc QueuePatientChangedEvent
+ *   sau khi DB commit), worker được submit vào executor dùng chung (RoomWorkerScheduler), xử lý đầu hàng đợi rồi trả thread.
+ * - Cờ scheduled đảm bảo mỗi phòng chỉ có tối đa 1 lượt xử lý đang chạy; tín hiệu đến trong lúc đang chạy
+ *   được gom lại (dirty) và xử lý ngay ở vòng kế tiếp.
+ * - Dữ liệu trong queue luôn được RoomQueueHolder cập nhật theo sự kiện, nên worker KHÔNG đọc lại DB
+ *   mỗi vòng lặp → phòng rảnh không phát sinh truy vấn nào và không chiếm thread.
  */
 @Slf4j
 public class RoomWorker implements Runnable {
 
     private final int roomNumber; // Mã phòng khám đang xử lý
     private final String tenantCode; // Mã tenant hiện tại (phân biệt trong hệ thống đa tenant)
-    private final Queue<QueuePatientsResponse> queue; // Hàng đợi bệnh nhân của phòng
+    private final RoomQueue queue; // Hàng đợi bệnh nhân của phòng
     private final QueuePatientsService queuePatientsService; // Service xử lý dữ liệu hàng đợi bệnh nhân
     private final TextToSpeechService textToSpeechService;
     private final PatientRepository patientRepository;
+    private final Executor executor; // Executor dùng chung để chạy các lượt xử lý
 
-    private volatile boolean running = true; // Cờ điều khiển để dừng thread khi cần
+    private volatile boolean running = true; // Cờ điều khiển để dừng worker khi cần
+
+    // Queue đã thay đổi kể từ lần xử lý trước
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    // Đang có một lượt xử lý được submit/đang chạy cho phòng này
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
 
     // Ghi nhớ thời điểm phát lời gọi gần nhất cho từng bệnh nhân (key: patientId, value: timestamp ms)
     private final Map<String, Long> lastSpeechTimestamps = new HashMap<>();
@@ -40,104 +57,109 @@ public class RoomWorker implements Runnable {
     private static final long SPEECH_INTERVAL_MS = 20_000;
 
 
-    public RoomWorker(int roomNumber, String tenantCode, Queue<QueuePatientsResponse> queue, QueuePatientsService queuePatientsService, TextToSpeechService textToSpeechService, PatientRepository patientRepository) {
+    public RoomWorker(int roomNumber, String tenantCode, RoomQueue queue, QueuePatientsService queuePatientsService, TextToSpeechService textToSpeechService, PatientRepository patientRepository, Executor executor) {
         this.roomNumber = roomNumber;
         this.tenantCode = tenantCode;
         this.queue = queue;
         this.queuePatientsService = queuePatientsService;
         this.textToSpeechService = textToSpeechService;
         this.patientRepository = patientRepository;
+        this.executor = executor;
     }
 
     /**
-     * Gửi tín hiệu dừng cho thread này.
+     * Gửi tín hiệu dừng cho worker này.
      * Sử dụng trong các tình huống như tắt hệ thống hoặc tenant bị tắt.
      */
     public void stopWorker() {
         this.running = false;
     }
 
+    /**
+     * Báo hiệu hàng đợi của phòng vừa thay đổi và lên lịch xử lý (nếu chưa có lượt nào đang chờ/chạy).
+     * Gọi từ RoomQueueHolder sau khi enqueue / refresh / áp dụng sự kiện thay đổi trạng thái.
+     */
+    public void signal() {
+        if (!running) return;
+        dirty.set(true);
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                log.warn("RoomWorker phòng {} không thể lên lịch: {}", roomNumber, e.getMessage());
+            }
+        }
+    }
+
     @Override
     public void run() {
-        while (running) {
-            try {
-                // Thiết lập ngữ cảnh tenant để đảm bảo đúng DB khi xử lý
-                TenantContext.setTenantId(tenantCode);
+        try {
+            // Thiết lập ngữ cảnh tenant để đảm bảo đúng DB khi xử lý
+            TenantContext.setTenantId(tenantCode);
 
+            while (running && dirty.getAndSet(false)) {
+                QueuePatientsResponse head;
                 synchronized (queue) {
-                    QueuePatientsResponse queuePatientsResponse = queue.peek(); // Lấy bệnh nhân đầu tiên trong hàng đợi
-
-                    if (queuePatientsResponse == null) {
-                        Thread.sleep(500);
-                        continue;
-                    }
-
-                    Patient patient = patientRepository.findByIdAndDeletedAtIsNull(queuePatientsResponse.getPatientId()).orElse(null);
-
-                    // Luôn lấy bản ghi mới nhất từ DB để đảm bảo dữ liệu không bị stale
-                    QueuePatientsResponse latest;
-                    try {
-                        latest = queuePatientsService.getQueuePatientsById(queuePatientsResponse.getId());
-                    } catch (AppException ex) {
-                        log.error("RoomWorker phòng {} lỗi: {}. Xoá bệnh nhân khỏi hàng đợi", roomNumber, ex.getMessage());
-                        queue.poll(); // Xoá bản ghi hỏng khỏi queue
-                        continue;
-                    }
-
-                    String status = latest.getStatus();
-
-                    // Nếu bệnh nhân đang đươc gọi (CALLING)
-                    if (Status.CALLING.name().equalsIgnoreCase(status)) {
-                        if(latest.getMessage() == null) {
-                            String message = String.format("Mời bệnh nhân %s vào phòng số %d",
-                                    patient != null && patient.getFullName() != null ? patient.getFullName() : "Không rõ tên",
-                                    roomNumber);
-                            queuePatientsService.updateQueuePatients(queuePatientsResponse.getId(), QueuePatientsRequest.builder()
-                                    .message(message)
-                                    .build());
-                        }
-
-//                        // Lấy thời điểm hiện tại (đơn vị: millisecond)
-//                        long nowMillis = System.currentTimeMillis();
-//
-//                        // Lấy thời điểm gần nhất đã phát lời gọi cho bệnh nhân này, mặc định là 0 nếu chưa từng gọi
-//                        long lastSpoken = lastSpeechTimestamps.getOrDefault(latest.getId(), 0L);
-//
-//                        // Nếu đã đủ 10 giây kể từ lần phát trước → gọi lại
-//                        if (nowMillis - lastSpoken >= SPEECH_INTERVAL_MS) {
-//                            String message = String.format("Mời bệnh nhân %s vào phòng số %d",
-//                                    patient != null && patient.getFullName() != null ? patient.getFullName() : "Không rõ tên",
-//                                    roomNumber);
-//
-//                            // Gửi nội dung đến TextToSpeech để phát qua loa
-//                            textToSpeechService.speak(message);
-//
-//                            // Ghi nhận thời điểm phát gần nhất để tránh lặp lại quá sớm
-//                            lastSpeechTimestamps.put(latest.getId(), nowMillis);
-//                        }
-                    }
+                    head = queue.peek(); // Lấy bệnh nhân đầu tiên trong hàng đợi
                 }
+                if (head == null) continue;
 
-                // Tạm nghỉ 1 giây trước khi tiếp tục xử lý lặp kế tiếp
-                synchronized (queue) {
-                    queue.wait(1000);
+                try {
+                    process(head);
+                } catch (Exception e) {
+                    // Bắt và log mọi lỗi xảy ra trong quá trình xử lý bệnh nhân
+                    log.error("RoomWorker phòng {} gặp lỗi: {}", roomNumber, e.getMessage(), e);
                 }
+            }
+        } finally {
+            // Luôn clear tenant context để không rò rỉ tenant giữa các thread dùng chung
+            TenantContext.clear();
+            scheduled.set(false);
+        }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt(); // Đánh dấu trạng thái interrupted
-                log.warn("RoomWorker {} bị dừng do interrupt", roomNumber);
-                break;
-
-            } catch (Exception e) {
-                // Bắt và log mọi lỗi xảy ra trong quá trình xử lý bệnh nhân
-                log.error("RoomWorker phòng {} gặp lỗi: {}", roomNumber, e.getMessage(), e);
+        // Tín hiệu đến sau khi thoát vòng lặp nhưng trước khi nhả cờ scheduled → lên lịch lại
+        if (running && dirty.get()) {
+            signal();
+        }
+    }
 
-            } finally {
-                // Luôn clear tenant context để không rò rỉ tenant giữa các thread
-                TenantContext.clear();
+    /**
+     * Xử lý bệnh nhân đứng đầu hàng đợi dựa trên dữ liệu đã được đồng bộ theo sự kiện.
+     * - CALLING và chưa có message → sinh lời mời vào phòng (chỉ đọc DB một lần khi chuyển trạng thái).
+     */
+    private void process(QueuePatientsResponse head) {
+        // Nếu bệnh nhân đang đươc gọi (CALLING)
+        if (Status.CALLING.name().equalsIgnoreCase(head.getStatus()) && head.getMessage() == null) {
+            Patient patient = patientRepository.findByIdAndDeletedAtIsNull(head.getPatientId()).orElse(null);
+            String message = String.format("Mời bệnh nhân %s vào phòng số %d",
+                    patient != null && patient.getFullName() != null ? patient.getFullName() : "Không rõ tên",
+                    roomNumber);
+            try {
+                queuePatientsService.updateQueuePatients(head.getId(), QueuePatientsRequest.builder()
+                        .message(message)
+                        .build());
+            } catch (AppException ex) {
+                log.error("RoomWorker phòng {} lỗi: {}. Xoá bệnh nhân khỏi hàng đợi", roomNumber, ex.getMessage());
+                synchronized (queue) {
+                    queue.remove(head.getId()); // Xoá bản ghi hỏng khỏi queue
+                }
             }
-        }
 
-        log.info("RoomWorker phòng {} đã dừng", roomNumber);
+//            // Lấy thời điểm hiện tại (đơn vị: millisecond)
+//            long nowMillis = System.currentTimeMillis();
+//
+//            // Lấy thời điểm gần nhất đã phát lời gọi cho bệnh nhân này, mặc định là 0 nếu chưa từng gọi
+//            long lastSpoken = lastSpeechTimestamps.getOrDefault(head.getId(), 0L);
+//
+//            // Nếu đã đủ 10 giây kể từ lần phát trước → gọi lại
+//            if (nowMillis - lastSpoken >= SPEECH_INTERVAL_MS) {
+//                // Gửi nội dung đến TextToSpeech để phát qua loa
+//                textToSpeechService.speak(message);
+//
+//                // Ghi nhận thời điểm phát gần nhất để tránh lặp lại quá sớm
+//                lastSpeechTimestamps.put(head.getId(), nowMillis);
+//            }
+        }
     }
 }
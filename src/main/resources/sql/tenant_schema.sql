@@ -6,7 +6,8 @@ CREATE TABLE IF NOT EXISTS accounts (
     is_tenant BOOLEAN DEFAULT FALSE,
     created_at TIMESTAMP,
     updated_at TIMESTAMP,
-    deleted_at TIMESTAMP
+    deleted_at TIMESTAMP,
+    INDEX idx_accounts_updated (updated_at, id)
 );
 -- TABLE: roles
 CREATE TABLE IF NOT EXISTS roles (
@@ -44,7 +45,8 @@ CREATE TABLE IF NOT EXISTS role_permissions (
 -- TABLE: invalidated_tokens
 CREATE TABLE IF NOT EXISTS invalidated_tokens (
                                                   id VARCHAR(100) PRIMARY KEY,
-    expire_time TIMESTAMP
+    expire_time TIMESTAMP,
+    INDEX idx_invalidated_tokens_expire (expire_time)
     );
 -- TABLE: specializations
 CREATE TABLE IF NOT EXISTS specializations (
@@ -161,6 +163,7 @@ CREATE TABLE IF NOT EXISTS queue_patients (
     created_at TIMESTAMP,
     updated_at TIMESTAMP,
     deleted_at TIMESTAMP,
+    INDEX idx_queue_patients_queue_updated (queue_id, updated_at, id),
     FOREIGN KEY (specialization_id) REFERENCES specializations(id),
     FOREIGN KEY (patient_id) REFERENCES patients(id),
     FOREIGN KEY (queue_id) REFERENCES daily_queues(id)
@@ -263,6 +266,13 @@ CREATE TABLE IF NOT EXISTS code_sequences (
     -- Loại mã (vd: MEDICAL_RECORD, INVOICE)
     current_value BIGINT NOT NULL -- Giá trị hiện tại (sẽ tăng dần mỗi lần sinh mã)
     );
+-- TABLE: queue_order_sequences
+CREATE TABLE IF NOT EXISTS queue_order_sequences (
+    queue_id VARCHAR(36) NOT NULL, -- Hàng đợi trong ngày (daily_queues.id)
+    room_number VARCHAR(36) NOT NULL, -- Phòng khám
+    current_value BIGINT NOT NULL, -- queueOrder lớn nhất đã cấp cho phòng
+    PRIMARY KEY (queue_id, room_number)
+    );
 -- TABLE: medical_result_images
 CREATE TABLE IF NOT EXISTS medical_results (
                                                id CHAR(36) PRIMARY KEY,
@@ -316,9 +326,11 @@ CREATE TABLE IF NOT EXISTS email_tasks (
     content TEXT,
     retry_count INT DEFAULT 0,
     status VARCHAR(50),
+    next_attempt_at DATETIME NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    deleted_at TIMESTAMP NULL
+    deleted_at TIMESTAMP NULL,
+    INDEX idx_email_tasks_claim (status, next_attempt_at, created_at)
     );
 -- table: shifts
 CREATE TABLE IF NOT EXISTS shifts (
@@ -0,0 +1,106 @@
+package vn.edu.fpt.medicaldiagnosis.common;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.scheduling.support.ScheduledMethodRunnable;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GroupedTaskSchedulerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private GroupedTaskScheduler scheduler;
+
+    static final CountDownLatch release = new CountDownLatch(1);
+    static final CountDownLatch fastRuns = new CountDownLatch(3);
+    static final AtomicInteger ticks = new AtomicInteger();
+
+    @JobGroup("slow")
+    static class SlowJob {
+        public void run() throws InterruptedException {
+            release.await(); // job treo, chiếm thread của nhóm "slow"
+        }
+    }
+
+    @JobGroup("fast")
+    static class FastJob {
+        public void run() {
+            fastRuns.countDown();
+        }
+    }
+
+    @JobGroup("ticker")
+    static class TickJob {
+        public void run() {
+            ticks.incrementAndGet();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new GroupedTaskScheduler(new MockEnvironment(), registry);
+        scheduler.setPoolSize(1);
+        scheduler.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void slowGroup_doesNotDelayOtherGroups() throws Exception {
+        scheduler.scheduleWithFixedDelay(runnable(new SlowJob()), Duration.ofMillis(10));
+        scheduler.scheduleWithFixedDelay(runnable(new FastJob()), Duration.ofMillis(10));
+
+        assertTrue(fastRuns.await(2, TimeUnit.SECONDS), "fast job bị chặn bởi slow job");
+        assertNotNull(registry.find("scheduler.job.lag").tag("group", "fast").tag("job", "FastJob.run").timer());
+    }
+
+    @Test
+    void fixedDelayHandle_getBlocksUntilCancelled() throws Exception {
+        ScheduledFuture<?> handle = scheduler.scheduleWithFixedDelay(runnable(new TickJob()), Duration.ofMillis(10));
+
+        assertThrows(TimeoutException.class, () -> handle.get(50, TimeUnit.MILLISECONDS));
+        assertFalse(handle.isDone());
+
+        CompletableFuture<Throwable> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                handle.get();
+                return null;
+            } catch (Throwable t) {
+                return t;
+            }
+        });
+        assertThrows(TimeoutException.class, () -> waiter.get(50, TimeUnit.MILLISECONDS));
+
+        assertTrue(handle.cancel(false));
+        assertInstanceOf(CancellationException.class, waiter.get(2, TimeUnit.SECONDS));
+        assertTrue(handle.isCancelled());
+        assertTrue(handle.isDone());
+        assertThrows(CancellationException.class, () -> handle.get(1, TimeUnit.MILLISECONDS));
+
+        // Sau khi huỷ, job không được lập lịch lại
+        int afterCancel = ticks.get();
+        Thread.sleep(50);
+        assertTrue(ticks.get() <= afterCancel + 1);
+    }
+
+    private static ScheduledMethodRunnable runnable(Object target) throws NoSuchMethodException {
+        return new ScheduledMethodRunnable(target, target.getClass().getMethod("run"));
+    }
+}
@@ -0,0 +1,66 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+
+/**
+ * Đo chi phí DataSourceProvider.getDataSource trên đường nóng (pool đã tạo), gọi đồng thời từ nhiều thread.
+ * Chạy: mvn test-compile rồi chạy main của class này với classpath test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class DataSourceProviderBenchmark {
+
+    private DataSourceProvider provider;
+
+    @Setup
+    public void setUp() throws Exception {
+        HikariDataSource pool = mock(HikariDataSource.class);
+        when(pool.getConnection()).thenReturn(mock(Connection.class));
+        TenantService tenantService = mock(TenantService.class);
+        when(tenantService.getTenantByCodeActive("t1")).thenReturn(Tenant.builder().code("t1").dbHost("db").build());
+
+        provider = new DataSourceProvider(tenantService, mock(TenantPoolManager.class), new SimpleMeterRegistry()) {
+            @Override
+            protected HikariDataSource buildDataSource(Tenant tenant) {
+                return pool;
+            }
+        };
+        // Tạo pool trước khi đo
+        provider.getDataSource("t1");
+    }
+
+    @TearDown
+    public void tearDown() {
+        provider.shutdown();
+    }
+
+    @Benchmark
+    public DataSource getDataSource() {
+        return provider.getDataSource("t1");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DataSourceProviderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
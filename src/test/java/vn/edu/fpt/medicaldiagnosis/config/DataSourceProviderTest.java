@@ -0,0 +1,87 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+
+/**
+ * Pool Hikari được giả lập bằng mock: kiểm tra đường nóng không mở connection thử.
+ * Đo chi phí định tuyến: DataSourceProviderBenchmark.
+ */
+public class DataSourceProviderTest {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 1_000;
+
+    private final TenantService tenantService = mock(TenantService.class);
+    private HikariDataSource pool;
+    private HikariDataSource rebuiltPool;
+    private DataSourceProvider provider;
+    private int builds;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        pool = mock(HikariDataSource.class);
+        rebuiltPool = mock(HikariDataSource.class);
+        when(pool.getConnection()).thenReturn(mock(Connection.class));
+        when(rebuiltPool.getConnection()).thenReturn(mock(Connection.class));
+        when(tenantService.getTenantByCodeActive("t1")).thenReturn(Tenant.builder().code("t1").dbHost("db").build());
+
+        provider = new DataSourceProvider(tenantService, mock(TenantPoolManager.class), new SimpleMeterRegistry()) {
+            @Override
+            protected HikariDataSource buildDataSource(Tenant tenant) {
+                return builds++ == 0 ? pool : rebuiltPool;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        provider.shutdown();
+    }
+
+    @Test
+    void hotPath_doesNotProbeConnections() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    assertSame(pool, provider.getDataSource("t1"));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+
+        // Chỉ một lần probe khi tạo pool, không probe theo từng lần định tuyến
+        verify(pool, times(1)).getConnection();
+        verify(tenantService, times(1)).getTenantByCodeActive("t1");
+    }
+
+    @Test
+    void brokenPool_isRebuiltInBackground() throws Exception {
+        assertSame(pool, provider.getDataSource("t1"));
+        when(pool.getConnection()).thenThrow(new SQLException("Communications link failure"));
+
+        provider.ensureDataSource("t1");
+
+        verify(pool, timeout(2000)).close();
+        assertSame(rebuiltPool, provider.getDataSource("t1"));
+        assertTrue(provider.isHealthy("t1"));
+    }
+}
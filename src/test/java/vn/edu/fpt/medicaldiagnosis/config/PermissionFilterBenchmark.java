@@ -0,0 +1,99 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.entity.Permission;
+import vn.edu.fpt.medicaldiagnosis.entity.Role;
+import vn.edu.fpt.medicaldiagnosis.repository.AccountRepository;
+
+/**
+ * Đo chi phí PermissionFilter trên đường nóng (quyền đã nằm trong cache).
+ * Chạy: mvn test-compile rồi chạy main của class này với classpath test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionFilterBenchmark {
+
+    private PermissionFilter filter;
+    private PermissionRouteTable routeTable;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() throws Exception {
+        Role role = new Role();
+        role.setName("DOCTOR");
+        role.setPermissions(Set.of(permission("PATIENTS:READ"), permission("MEDICAL-RECORDS:UPDATE")));
+        Account account = new Account();
+        account.setUsername("doctor");
+        account.setRoles(Set.of(role));
+
+        AccountRepository accountRepository = mock(AccountRepository.class);
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("doctor")).thenReturn(Optional.of(account));
+
+        routeTable = new PermissionRouteTable();
+        PrincipalPermissionCache cache =
+                new PrincipalPermissionCache(accountRepository, new SimpleMeterRegistry(), 300_000, 5_000);
+        filter = new PermissionFilter(cache, routeTable, new ObjectMapper());
+
+        // Thread đo của JMH không phải thread chạy @Setup
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_GLOBAL);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("doctor", null, List.of()));
+        request = new MockHttpServletRequest("GET",
+                "/medical-diagnosis/patients/3f2b8c1e-9a4d-4e6f-8b7a-1c2d3e4f5a6b");
+
+        // Nạp cache trước khi đo
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+        SecurityContextHolder.setStrategyName(SecurityContextHolder.MODE_THREADLOCAL);
+    }
+
+    private static Permission permission(String name) {
+        Permission permission = new Permission();
+        permission.setName(name);
+        return permission;
+    }
+
+    @Benchmark
+    public int filterCachedPrincipal() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    @Benchmark
+    public String resolvePermission() {
+        return routeTable.resolve(request.getRequestURI(), request.getMethod());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PermissionFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,32 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class PermissionRouteTableTest {
+
+    private final PermissionRouteTable table = new PermissionRouteTable();
+
+    @Test
+    void resolvesEntityAndAction_skippingIdSegments() {
+        assertEquals("PATIENTS:READ", table.resolve("/medical-diagnosis/patients", "GET"));
+        assertEquals("PATIENTS:UPDATE",
+                table.resolve("/medical-diagnosis/patients/3f2b8c1e-9a4d-4e6f-8b7a-1c2d3e4f5a6b", "PUT"));
+        assertEquals("PATIENTS:DELETE", table.resolve("/medical-diagnosis/12/patients/34", "DELETE"));
+        assertEquals("MEDICAL-RECORDS:CREATE", table.resolve("/medical-diagnosis/medical-records/export", "post"));
+        assertEquals("PATIENTS:UPDATE", table.resolve("//medical-diagnosis//patients/", "PATCH"));
+    }
+
+    @Test
+    void unknownEntityOrMethod() {
+        assertEquals("UNKNOWN:READ", table.resolve("/medical-diagnosis", "GET"));
+        assertEquals("UNKNOWN:READ", table.resolve("/", "GET"));
+        assertEquals("PATIENTS:UNKNOWN", table.resolve("/medical-diagnosis/patients", "OPTIONS"));
+    }
+
+    @Test
+    void returnsSameInstanceForRepeatedRoutes() {
+        assertSame(table.resolve("/medical-diagnosis/staffs/1", "GET"), table.resolve("/medical-diagnosis/staffs/2", "GET"));
+    }
+}
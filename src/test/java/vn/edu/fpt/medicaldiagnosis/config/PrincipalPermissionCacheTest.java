@@ -0,0 +1,126 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.entity.Permission;
+import vn.edu.fpt.medicaldiagnosis.entity.Role;
+import vn.edu.fpt.medicaldiagnosis.repository.AccountRepository;
+
+public class PrincipalPermissionCacheTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PrincipalPermissionCache cache =
+            new PrincipalPermissionCache(accountRepository, registry, 300_000, 100);
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setTenantId("t1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static Account account(String username, String roleName, String... permissions) {
+        Set<Permission> granted = new HashSet<>();
+        for (String p : permissions) granted.add(Permission.builder().name(p).build());
+        Role role = Role.builder().name(roleName).permissions(granted).build();
+        return Account.builder().username(username).roles(Set.of(role)).build();
+    }
+
+    private double lookups(String result) {
+        return registry.get("permission.cache.lookups").tag("result", result).counter().count();
+    }
+
+    @Test
+    void secondLookupIsServedFromCache() {
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("doctor"))
+                .thenReturn(Optional.of(account("doctor", "DOCTOR", "patients:read")));
+
+        PrincipalPermissionCache.Principal first = cache.get("doctor");
+        PrincipalPermissionCache.Principal second = cache.get("doctor");
+
+        assertSame(first, second);
+        assertTrue(second.allows("PATIENTS:READ"));
+        assertFalse(second.allows("PATIENTS:DELETE"));
+        assertEquals(1, lookups("miss"));
+        assertEquals(1, lookups("hit"));
+        verify(accountRepository, times(1)).findByUsernameAndDeletedAtIsNull("doctor");
+    }
+
+    @Test
+    void entriesAreScopedPerTenant_andMissingAccountIsNotCached() {
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("doctor"))
+                .thenReturn(Optional.of(account("doctor", "ADMIN")));
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("ghost")).thenReturn(Optional.empty());
+
+        assertTrue(cache.get("doctor").admin());
+        TenantContext.setTenantId("t2");
+        assertTrue(cache.get("doctor").admin());
+
+        assertNull(cache.get("ghost"));
+        assertNull(cache.get("ghost"));
+
+        verify(accountRepository, times(2)).findByUsernameAndDeletedAtIsNull("doctor");
+        verify(accountRepository, times(2)).findByUsernameAndDeletedAtIsNull("ghost");
+    }
+
+    @Test
+    void invalidationDuringLoad_preventsCachingStaleResult() {
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("doctor"))
+                .thenAnswer(invocation -> {
+                    // Quyền bị đổi trong lúc đang đọc DB → kết quả đọc được có thể đã cũ
+                    cache.invalidateTenant();
+                    return Optional.of(account("doctor", "DOCTOR", "patients:read"));
+                })
+                .thenReturn(Optional.of(account("doctor", "DOCTOR")));
+
+        assertTrue(cache.get("doctor").allows("PATIENTS:READ"));
+        assertFalse(cache.get("doctor").allows("PATIENTS:READ"));
+
+        verify(accountRepository, times(2)).findByUsernameAndDeletedAtIsNull("doctor");
+    }
+
+    @Test
+    void invalidateTenant_clearsAgainAfterCommit() {
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("doctor"))
+                .thenReturn(Optional.of(account("doctor", "DOCTOR", "patients:read")))
+                .thenReturn(Optional.of(account("doctor", "DOCTOR", "patients:read")))
+                .thenReturn(Optional.of(account("doctor", "DOCTOR")));
+        cache.get("doctor");
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateTenant();
+
+        // Request khác đọc lại trước khi transaction commit → vẫn thấy quyền cũ và cache lại
+        assertTrue(cache.get("doctor").allows("PATIENTS:READ"));
+        assertTrue(cache.get("doctor").allows("PATIENTS:READ"));
+        verify(accountRepository, times(2)).findByUsernameAndDeletedAtIsNull("doctor");
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        assertFalse(cache.get("doctor").allows("PATIENTS:READ"));
+        verify(accountRepository, times(3)).findByUsernameAndDeletedAtIsNull("doctor");
+    }
+}
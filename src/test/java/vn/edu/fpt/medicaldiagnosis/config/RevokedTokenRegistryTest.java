@@ -0,0 +1,77 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.InvalidatedToken;
+import vn.edu.fpt.medicaldiagnosis.repository.InvalidatedTokenRepository;
+
+public class RevokedTokenRegistryTest {
+
+    private final InvalidatedTokenRepository repository = mock(InvalidatedTokenRepository.class);
+    private final RevokedTokenRegistry registry =
+            new RevokedTokenRegistry(repository, new SimpleMeterRegistry(), 3_600_000);
+
+    private static Date inMinutes(int minutes) {
+        return new Date(System.currentTimeMillis() + minutes * 60_000L);
+    }
+
+    @AfterEach
+    void clearTenant() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void loadsOncePerTenant_andTracksRevocations() {
+        TenantContext.setTenantId("t1");
+        when(repository.findByExpireTimeAfter(any()))
+                .thenReturn(List.of(new InvalidatedToken("old", inMinutes(10))));
+
+        assertTrue(registry.isRevoked("old"));
+        assertFalse(registry.isRevoked("fresh"));
+
+        registry.revoke("fresh", inMinutes(10));
+        assertTrue(registry.isRevoked("fresh"));
+        verify(repository, times(1)).findByExpireTimeAfter(any());
+
+        TenantContext.setTenantId("t2");
+        when(repository.findByExpireTimeAfter(any())).thenReturn(List.of());
+        assertFalse(registry.isRevoked("old"));
+    }
+
+    @Test
+    void expiredRevocationsAreIgnored_andDroppedOnRefresh() {
+        TenantContext.setTenantId("t1");
+        when(repository.findByExpireTimeAfter(any())).thenReturn(List.of());
+        assertFalse(registry.isRevoked("x"));
+
+        registry.revoke("gone", new Date(System.currentTimeMillis() - 1));
+        registry.revoke("kept", inMinutes(10));
+        assertFalse(registry.isRevoked("gone"));
+
+        registry.refreshAll();
+        assertTrue(registry.isRevoked("kept"));
+        assertFalse(registry.isRevoked("gone"));
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegatives() {
+        RevokedTokenRegistry.BloomFilter bloom = RevokedTokenRegistry.BloomFilter.forExpected(5_000);
+        List<String> ids = IntStream.range(0, 5_000).mapToObj(i -> "jti-" + i).toList();
+        ids.forEach(bloom::put);
+
+        ids.forEach(id -> assertTrue(bloom.mightContain(id)));
+        long falsePositives = IntStream.range(0, 10_000).filter(i -> bloom.mightContain("other-" + i)).count();
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,81 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.config.TenantPoolManager.Candidate;
+import vn.edu.fpt.medicaldiagnosis.config.TenantPoolManager.PoolState;
+import vn.edu.fpt.medicaldiagnosis.config.TenantPoolManager.Sample;
+
+public class TenantPoolManagerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    // min 2, max 20, initial 5, budget 12/host, nghẽn khi chờ >= 20ms, giảm sau 3 chu kỳ rảnh
+    private final TenantPoolManager manager = new TenantPoolManager(registry, 2, 20, 5, 12, 20, 3);
+
+    private PoolState pool(String tenant, HikariConfigMXBean config) {
+        HikariDataSource ds = mock(HikariDataSource.class);
+        when(ds.getHikariConfigMXBean()).thenReturn(config);
+        return new PoolState(tenant, "db:3306", 2, 20, ds, TenantPoolManager.connectionsOpened(registry, tenant));
+    }
+
+    @Test
+    void congestedPool_growsByWaitingThreads() {
+        PoolState state = pool("t1", mock(HikariConfigMXBean.class));
+
+        int target = manager.decide(state, new Sample(5, 5, 3, 100, 0, 0));
+
+        assertEquals(8, target);
+    }
+
+    @Test
+    void slowAcquire_countsAsCongestion() {
+        PoolState state = pool("t1", mock(HikariConfigMXBean.class));
+
+        // 10 lần lấy, tổng chờ 500ms → trung bình 50ms
+        int target = manager.decide(state, new Sample(5, 2, 0, 10, 500_000_000L, 0));
+
+        assertEquals(6, target);
+    }
+
+    @Test
+    void idlePool_shrinksOnlyAfterConsecutiveSamples() {
+        PoolState state = pool("t1", mock(HikariConfigMXBean.class));
+        Sample idle = new Sample(5, 1, 0, 10, 0, 0);
+
+        assertEquals(5, manager.decide(state, idle));
+        assertEquals(5, manager.decide(state, idle));
+        assertEquals(4, manager.decide(state, idle));
+    }
+
+    @Test
+    void growth_isCappedByHostBudget_andPrioritisesTimeouts() {
+        HikariConfigMXBean busyConfig = mock(HikariConfigMXBean.class);
+        HikariConfigMXBean timeoutConfig = mock(HikariConfigMXBean.class);
+        HikariConfigMXBean idleConfig = mock(HikariConfigMXBean.class);
+        PoolState busy = pool("busy", busyConfig);
+        PoolState timingOut = pool("timeout", timeoutConfig);
+        PoolState idle = pool("idle", idleConfig);
+
+        // Đang dùng 4 + 4 + 4 = 12 (hết ngân sách); idle giảm còn 2 → còn 2 connection để chia
+        manager.allocate(List.of(
+                new Candidate(busy, new Sample(4, 4, 2, 50, 0, 0), 6),
+                new Candidate(timingOut, new Sample(4, 4, 1, 50, 0, 3), 6),
+                new Candidate(idle, new Sample(4, 0, 0, 0, 0, 0), 2)));
+
+        verify(idleConfig).setMaximumPoolSize(2);
+        verify(timeoutConfig).setMaximumPoolSize(6);
+        verify(busyConfig, never()).setMaximumPoolSize(anyInt());
+        assertEquals(1.0, registry.get("tenant.datasource.pool.resize")
+                .tag("tenant", "busy").tag("direction", "denied").counter().count());
+    }
+}
@@ -0,0 +1,131 @@
+package vn.edu.fpt.medicaldiagnosis.config;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+
+public class TenantSchemaInitializerTest {
+
+    private final Connection conn = mock(Connection.class);
+    private final Statement ddl = mock(Statement.class);
+    private final DataSource dataSource = mock(DataSource.class);
+    private final TenantService tenantService = mock(TenantService.class);
+    private final TenantSchemaInitializer initializer = new TenantSchemaInitializer(
+            mock(DataSourceProvider.class), dataSource, tenantService, 3_600, 36_000);
+
+    private void stubCount(String infoTable, long count) throws Exception {
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(conn.prepareStatement(contains("information_schema." + infoTable))).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong(1)).thenReturn(count);
+    }
+
+    private PreparedStatement stubMarker(int inserted) throws Exception {
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        when(conn.prepareStatement(contains("INTO schema_upgrades"))).thenReturn(stmt);
+        when(stmt.executeUpdate()).thenReturn(inserted);
+        return stmt;
+    }
+
+    private void connect() throws Exception {
+        when(dataSource.getConnection()).thenReturn(conn);
+        when(conn.createStatement()).thenReturn(ddl);
+    }
+
+    @Test
+    void applyUpgrades_addsOnlyWhatIsMissing() throws Exception {
+        connect();
+        stubCount("tables", 1);
+        stubCount("columns", 0);
+        stubCount("statistics", 1);
+        stubMarker(0);
+
+        initializer.applyUpgrades("t1", dataSource);
+
+        verify(ddl).execute(startsWith("ALTER TABLE email_tasks ADD COLUMN next_attempt_at"));
+        verify(ddl, never()).execute(startsWith("CREATE INDEX idx_email_tasks_claim"));
+    }
+
+    @Test
+    void applyUpgrades_addsMissingIndexesForExistingTables() throws Exception {
+        connect();
+        stubCount("tables", 1);
+        stubCount("columns", 1);
+        stubCount("statistics", 0);
+        stubMarker(0);
+
+        initializer.applyUpgrades("t1", dataSource);
+
+        verify(ddl).execute(startsWith("CREATE INDEX idx_email_tasks_claim"));
+        verify(ddl).execute(startsWith("CREATE INDEX idx_queue_patients_queue_updated ON queue_patients"));
+        verify(ddl).execute(startsWith("CREATE INDEX idx_accounts_updated ON accounts"));
+    }
+
+    @Test
+    void applyUpgrades_createsMissingTenantTables_andSkipsColumnsOfMissingTables() throws Exception {
+        connect();
+        stubCount("tables", 0);
+
+        initializer.applyUpgrades("t1", dataSource);
+
+        verify(ddl).execute(contains("CREATE TABLE IF NOT EXISTS queue_order_sequences"));
+        verify(ddl, times(1)).execute(anyString());
+    }
+
+    @Test
+    void startupPass_neverCreatesTenantTablesInControlDb() throws Exception {
+        connect();
+        stubCount("tables", 0);
+        when(tenantService.getAllTenantsActive()).thenReturn(List.of());
+        ReflectionTestUtils.setField(initializer, "upgradeOnStartup", true);
+
+        initializer.upgradeExistingDatabases();
+
+        verify(ddl, never()).execute(anyString());
+    }
+
+    @Test
+    void legacyRevokedTokens_areExtendedToRefreshWindowOnce() throws Exception {
+        connect();
+        stubCount("tables", 1);
+        stubCount("columns", 1);
+        stubCount("statistics", 1);
+        PreparedStatement marker = stubMarker(1);
+
+        initializer.applyUpgrades("t1", dataSource);
+
+        verify(marker).setString(1, "invalidated_tokens_refresh_window");
+        verify(ddl).execute(contains("CREATE TABLE IF NOT EXISTS schema_upgrades"));
+        verify(ddl).execute("UPDATE invalidated_tokens SET expire_time = TIMESTAMPADD(SECOND, 32400, expire_time)");
+        verify(conn).commit();
+    }
+
+    @Test
+    void legacyRevokedTokens_notExtendedAgainOnceMarked() throws Exception {
+        connect();
+        stubCount("tables", 1);
+        stubCount("columns", 1);
+        stubCount("statistics", 1);
+        stubMarker(0);
+
+        initializer.applyUpgrades("t1", dataSource);
+
+        verify(ddl, never()).execute(startsWith("UPDATE invalidated_tokens"));
+        verify(conn).rollback();
+        verify(conn, never()).commit();
+    }
+}
@@ -0,0 +1,65 @@
+package vn.edu.fpt.medicaldiagnosis.context;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.entity.Staff;
+import vn.edu.fpt.medicaldiagnosis.exception.AppException;
+import vn.edu.fpt.medicaldiagnosis.exception.ErrorCode;
+import vn.edu.fpt.medicaldiagnosis.repository.AccountRepository;
+import vn.edu.fpt.medicaldiagnosis.repository.StaffRepository;
+
+public class CurrentActorResolverTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final StaffRepository staffRepository = mock(StaffRepository.class);
+    private final CurrentActorResolver resolver = new CurrentActorResolver(accountRepository, staffRepository);
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("alice", "pwd"));
+        Account account = new Account();
+        account.setId("ACC");
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("alice")).thenReturn(Optional.of(account));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void resolvesOncePerRequest() {
+        Staff staff = new Staff();
+        staff.setId("S1");
+        when(staffRepository.findByAccountIdAndDeletedAtIsNull("ACC")).thenReturn(Optional.of(staff));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        assertSame(staff, resolver.currentStaff());
+        assertSame(staff, resolver.currentStaff());
+        verify(accountRepository, times(1)).findByUsernameAndDeletedAtIsNull("alice");
+        verify(staffRepository, times(1)).findByAccountIdAndDeletedAtIsNull("ACC");
+    }
+
+    @Test
+    void accountWithoutStaff_throwsStaffNotFound() {
+        when(staffRepository.findByAccountIdAndDeletedAtIsNull("ACC")).thenReturn(Optional.empty());
+
+        assertEquals("ACC", resolver.current().account().getId());
+        AppException ex = assertThrows(AppException.class, resolver::currentStaff);
+        assertEquals(ErrorCode.STAFF_NOT_FOUND, ex.getErrorCode());
+    }
+}
@@ -0,0 +1,98 @@
+package vn.edu.fpt.medicaldiagnosis.schedule;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import vn.edu.fpt.medicaldiagnosis.config.DataSourceProvider;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
+
+public class AccountSyncJobTest {
+
+    private final DataSource routingDataSource = mock(DataSource.class);
+    private final DataSource controlDataSource = mock(DataSource.class);
+    private final DataSource tenantDataSource = mock(DataSource.class);
+    private final DataSourceProvider dataSourceProvider = mock(DataSourceProvider.class);
+    private final TenantService tenantService = mock(TenantService.class);
+    private final TenantFanOutExecutor tenantFanOutExecutor = mock(TenantFanOutExecutor.class);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void insertsIntoControlPool_whileTenantContextIsSet() throws Exception {
+        Tenant tenant = Tenant.builder().code("t1").build();
+        when(tenantService.getAllTenantsActive()).thenReturn(List.of(tenant));
+        when(dataSourceProvider.getDataSource("t1")).thenReturn(tenantDataSource);
+        stubTenantAccount();
+        PreparedStatement insert = stubControlInsert();
+
+        // Giống TenantFanOutExecutor.runForTenant: đặt TenantContext trước khi chạy task
+        doAnswer(invocation -> {
+            Consumer<Tenant> task = invocation.getArgument(3);
+            for (Tenant t : (List<Tenant>) invocation.getArgument(1)) {
+                TenantContext.setTenantId(t.getCode());
+                try {
+                    task.accept(t);
+                } finally {
+                    TenantContext.clear();
+                }
+            }
+            return null;
+        }).when(tenantFanOutExecutor).forEachTenant(anyString(), anyList(), anyLong(), any());
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            // DataSource @Primary là routing DataSource của tenant như trong DataSourceConfig
+            context.registerBean("dataSource", DataSource.class, () -> routingDataSource, bd -> bd.setPrimary(true));
+            context.registerBean("controlDataSource", DataSource.class, () -> controlDataSource);
+            context.registerBean(DataSourceProvider.class, () -> dataSourceProvider);
+            context.registerBean(TenantService.class, () -> tenantService);
+            context.registerBean(TenantFanOutExecutor.class, () -> tenantFanOutExecutor);
+            context.register(AccountSyncJob.class);
+            context.refresh();
+
+            context.getBean(AccountSyncJob.class).syncTenantAccountsToControl();
+        }
+
+        verify(controlDataSource).getConnection();
+        verify(insert, times(2)).executeUpdate();
+        verifyNoInteractions(routingDataSource);
+        assertNull(TenantContext.getTenantId());
+    }
+
+    private void stubTenantAccount() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(tenantDataSource.getConnection()).thenReturn(conn);
+        when(conn.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getString("id")).thenReturn("a1");
+        when(rs.getString("username")).thenReturn("clinic-admin");
+        when(rs.getString("password")).thenReturn("hash");
+        when(rs.getTimestamp("updated_at")).thenReturn(new Timestamp(1_000));
+    }
+
+    private PreparedStatement stubControlInsert() throws Exception {
+        Connection conn = mock(Connection.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        when(controlDataSource.getConnection()).thenReturn(conn);
+        when(conn.prepareStatement(anyString())).thenReturn(stmt);
+        when(stmt.executeUpdate()).thenReturn(1);
+        return stmt;
+    }
+}
@@ -0,0 +1,138 @@
+package vn.edu.fpt.medicaldiagnosis.schedule;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.config.CallbackRegistry;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+import vn.edu.fpt.medicaldiagnosis.repository.PatientRepository;
+import vn.edu.fpt.medicaldiagnosis.service.*;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.QueueOrderAllocator;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.RoomQueueHolder;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.RoomWorkerScheduler;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantShardManager;
+
+public class AutoRoomAssignmentJobTest {
+
+    private final QueuePatientsService queuePatientsService = mock(QueuePatientsService.class);
+    private final DailyQueueService dailyQueueService = mock(DailyQueueService.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final TenantFanOutExecutor tenantFanOutExecutor = mock(TenantFanOutExecutor.class);
+    private final TenantShardManager tenantShardManager = mock(TenantShardManager.class);
+
+    private RoomWorkerScheduler scheduler;
+    private RoomQueueHolder holder;
+    private AutoRoomAssignmentJob job;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        job = new AutoRoomAssignmentJob(mock(CallbackRegistry.class), mock(EmailService.class), queuePatientsService,
+                dailyQueueService, mock(DepartmentService.class), mock(PatientService.class), mock(TextToSpeechService.class),
+                mock(WorkScheduleService.class), mock(SettingService.class), mock(PatientRepository.class),
+                mock(RoomWorkerScheduler.class), mock(QueueOrderAllocator.class), eventPublisher, tenantFanOutExecutor,
+                tenantShardManager);
+        ReflectionTestUtils.setField(job, "dispatchBatchSize", 2);
+        ReflectionTestUtils.setField(job, "rescanIntervalMs", 60_000L);
+        ReflectionTestUtils.setField(job, "reconcileIntervalMs", 60_000L);
+
+        // Hàng đợi của tenant đã được dựng trên node sở hữu: phòng 1 có bệnh nhân "a" đang chờ
+        scheduler = new RoomWorkerScheduler("shared", 1, new SimpleMeterRegistry());
+        holder = new RoomQueueHolder(scheduler);
+        holder.initRoom(1, "t1", null, null, null, null);
+        holder.enqueue(1, patient("a", Status.WAITING));
+        ((Map<String, RoomQueueHolder>) ReflectionTestUtils.getField(job, "tenantQueues")).put("t1", holder);
+
+        when(dailyQueueService.getActiveQueueIdForToday()).thenReturn("q1");
+        when(queuePatientsService.getWaitingChangedSince(anyString(), any(), anyString(), anyInt())).thenReturn(List.of());
+        when(tenantShardManager.isClustered()).thenReturn(true);
+
+        // Giống TenantFanOutExecutor: chạy task với TenantContext của tenant
+        doAnswer(invocation -> {
+            Consumer<Tenant> task = invocation.getArgument(2);
+            TenantContext.setTenantId("t1");
+            try {
+                task.accept(Tenant.builder().code("t1").build());
+            } finally {
+                TenantContext.clear();
+            }
+            return null;
+        }).when(tenantFanOutExecutor).forEachActiveTenant(anyString(), anyLong(), any());
+
+        // Sự kiện phát lại được giao cho listener như khi publish trên node ghi
+        doAnswer(invocation -> {
+            job.onQueuePatientChanged(invocation.getArgument(0));
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        holder.stopAllWorkers();
+        scheduler.shutdown();
+    }
+
+    private static QueuePatientsResponse patient(String id, Status status) {
+        return QueuePatientsResponse.builder()
+                .id(id)
+                .roomNumber("1")
+                .status(status.name())
+                .isPriority(false)
+                .queueOrder(1L)
+                .updatedAt(LocalDateTime.now().minusSeconds(5))
+                .build();
+    }
+
+    @Test
+    void changeWrittenOnOtherNode_isAppliedToOwnerQueue() {
+        QueuePatientChangedEvent remote = new QueuePatientChangedEvent("t1", patient("a", Status.IN_PROGRESS), false);
+        when(queuePatientsService.getChangesSince(eq("q1"), any(), anyString(), any(), eq(2)))
+                .thenReturn(List.of(remote))
+                .thenReturn(List.of());
+
+        job.dispatchAndProcess();
+
+        assertEquals(Status.IN_PROGRESS.name(), holder.getQueue(1).get("a").getStatus());
+        verify(eventPublisher).publishEvent(remote);
+    }
+
+    @Test
+    void changeAlreadyAppliedLocally_isNotPublishedAgain_andRunsOncePerInterval() {
+        QueuePatientChangedEvent local = new QueuePatientChangedEvent("t1", patient("a", Status.WAITING), false);
+        when(queuePatientsService.getChangesSince(eq("q1"), any(), anyString(), any(), eq(2)))
+                .thenReturn(List.of(local));
+
+        job.dispatchAndProcess();
+        job.dispatchAndProcess();
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        verify(queuePatientsService, times(1)).getChangesSince(anyString(), any(), anyString(), any(), anyInt());
+    }
+
+    @Test
+    void singleNode_skipsReconcile() {
+        when(tenantShardManager.isClustered()).thenReturn(false);
+
+        job.dispatchAndProcess();
+
+        verify(queuePatientsService, never()).getChangesSince(anyString(), any(), anyString(), any(), anyInt());
+    }
+}
@@ -0,0 +1,98 @@
+package vn.edu.fpt.medicaldiagnosis.schedule;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
+import vn.edu.fpt.medicaldiagnosis.service.EmailService;
+import vn.edu.fpt.medicaldiagnosis.service.EmailTaskService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.JobLeaseManager;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantFanOutExecutor;
+
+public class EmailTaskJobTest {
+
+    private final EmailTaskService emailTaskService = mock(EmailTaskService.class);
+    private final EmailService emailService = mock(EmailService.class);
+    private final JobLeaseManager jobLeaseManager = mock(JobLeaseManager.class);
+
+    private EmailTaskJob job;
+
+    @BeforeEach
+    void setUp() {
+        when(jobLeaseManager.tryAcquire("control-email")).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (job != null) job.shutdown();
+    }
+
+    private EmailTaskJob job(int batchSize, long runBudgetMs) {
+        job = new EmailTaskJob(emailTaskService, emailService, mock(TenantFanOutExecutor.class), jobLeaseManager,
+                new SimpleMeterRegistry(), batchSize, 1, 3, 20, 600, runBudgetMs);
+        return job;
+    }
+
+    private static EmailTask task(String id) {
+        return EmailTask.builder().id(id).emailTo(id + "@example.com").build();
+    }
+
+    @Test
+    void interrupted_recordsChunksThatAlreadyFinished() throws Exception {
+        EmailTask slow = task("slow");
+        EmailTask fast1 = task("fast1");
+        EmailTask fast2 = task("fast2");
+        when(emailTaskService.claim(anyInt())).thenReturn(List.of(slow, fast1, fast2));
+
+        CountDownLatch fastSent = new CountDownLatch(2);
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        when(emailService.sendBatch(anyList())).thenAnswer(invocation -> {
+            List<EmailTask> chunk = invocation.getArgument(0);
+            if (chunk.contains(slow)) {
+                slowStarted.countDown();
+                new CountDownLatch(1).await(); // SMTP treo: chỉ thoát khi bị huỷ
+            }
+            fastSent.countDown();
+            return Map.of();
+        });
+
+        Thread runner = new Thread(job(10, 40_000)::processEmails);
+        runner.start();
+
+        assertTrue(fastSent.await(2, TimeUnit.SECONDS));
+        assertTrue(slowStarted.await(2, TimeUnit.SECONDS));
+        Thread.sleep(100); // để future của các phần nhanh kịp hoàn tất
+        runner.interrupt(); // watchdog của TenantFanOutExecutor huỷ lượt của tenant
+        runner.join(2_000);
+
+        assertFalse(runner.isAlive());
+        verify(emailTaskService).markSent(List.of("fast1", "fast2"));
+        verify(emailTaskService, never()).markFailed(any());
+        verify(emailTaskService, times(1)).claim(anyInt());
+    }
+
+    @Test
+    void stopsClaimingNewBatchesOnceRunBudgetIsSpent() {
+        when(emailTaskService.claim(2)).thenAnswer(invocation -> List.of(task("a"), task("b")));
+        when(emailService.sendBatch(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(30);
+            return Map.of();
+        });
+
+        job(2, 10).processEmails();
+
+        verify(emailTaskService, times(1)).claim(2);
+        verify(emailTaskService).markSent(List.of("a", "b"));
+    }
+}
@@ -0,0 +1,55 @@
+package vn.edu.fpt.medicaldiagnosis.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import vn.edu.fpt.medicaldiagnosis.entity.EmailTask;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+import vn.edu.fpt.medicaldiagnosis.repository.EmailTaskRepository;
+import vn.edu.fpt.medicaldiagnosis.service.impl.EmailTaskServiceImpl;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class EmailTaskServiceImplTest {
+
+    private final EmailTaskRepository repository = mock(EmailTaskRepository.class);
+    private final EmailTaskServiceImpl service = new EmailTaskServiceImpl(repository, 4, 1_000, 3_000);
+
+    private long delayAfterFailure(int previousRetries) {
+        EmailTask task = EmailTask.builder().id("t").retryCount(previousRetries).build();
+        assertThat(service.markFailed(task)).isEqualTo(Status.PENDING);
+
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(repository).markAttemptFailed(eq("t"), eq("PENDING"), eq(previousRetries + 1), delay.capture());
+        clearInvocations(repository);
+        return delay.getValue();
+    }
+
+    @Test
+    void markFailed_backsOffExponentiallyUpToTheCap() {
+        assertThat(delayAfterFailure(0)).isBetween(800L, 1_200L);
+        assertThat(delayAfterFailure(1)).isBetween(1_600L, 2_400L);
+        assertThat(delayAfterFailure(2)).isBetween(2_400L, 3_600L);
+    }
+
+    @Test
+    void markFailed_givesUpAfterMaxRetries() {
+        EmailTask task = EmailTask.builder().id("t").retryCount(3).build();
+
+        assertThat(service.markFailed(task)).isEqualTo(Status.FAILED);
+        verify(repository).markAttemptFailed("t", "FAILED", 4, 0);
+    }
+
+    @Test
+    void claim_locksThenMarksInProgress() {
+        when(repository.lockClaimable(50)).thenReturn(List.of("a", "b"));
+        when(repository.findAllById(List.of("a", "b"))).thenReturn(List.of(
+                EmailTask.builder().id("a").build(), EmailTask.builder().id("b").build()));
+
+        assertThat(service.claim(50)).hasSize(2);
+        verify(repository).markInProgress(List.of("a", "b"));
+    }
+}
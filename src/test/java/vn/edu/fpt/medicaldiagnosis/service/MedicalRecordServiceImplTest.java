@@ -1,6 +1,7 @@
 package vn.edu.fpt.medicaldiagnosis.service;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -9,6 +10,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActorResolver;
 import vn.edu.fpt.medicaldiagnosis.dto.request.InvoiceServiceRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.request.MedicalRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.*;
@@ -217,6 +220,13 @@ public class MedicalRecordServiceImplTest {
         return ms;
     }
 
+    @BeforeEach
+    void wireCurrentActor() {
+        // @InjectMocks không dựng được resolver thật từ các mock repository
+        ReflectionTestUtils.setField(medicalRecordService, "currentActorResolver",
+                new CurrentActorResolver(accountRepository, staffRepository));
+    }
+
     @AfterEach
     void clearCtx() {
         SecurityContextHolder.clearContext();
@@ -11,6 +11,8 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActorResolver;
 import vn.edu.fpt.medicaldiagnosis.dto.request.UpdateMedicalRecordRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.*;
 import vn.edu.fpt.medicaldiagnosis.entity.*;
@@ -75,6 +77,10 @@ public class MedicalRecordServiceImplTest2 {
     @BeforeEach
     void openStatic() {
         specStatic = Mockito.mockStatic(MedicalRecordSpecification.class);
+        // @InjectMocks không dựng được resolver thật từ các mock repository
+        CurrentActorResolver currentActorResolver = new CurrentActorResolver(accountRepository, staffRepository);
+        ReflectionTestUtils.setField(medicalRecordService, "currentActorResolver", currentActorResolver);
+        ReflectionTestUtils.setField(queuePatientsService, "currentActorResolver", currentActorResolver);
     }
 
     @AfterEach
@@ -4,16 +4,20 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import lombok.extern.slf4j.Slf4j;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
 import vn.edu.fpt.medicaldiagnosis.config.CallbackRegistry;
+import vn.edu.fpt.medicaldiagnosis.context.CurrentActorResolver;
 import vn.edu.fpt.medicaldiagnosis.dto.request.QueuePatientsRequest;
 import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
 import vn.edu.fpt.medicaldiagnosis.entity.*;
@@ -66,12 +70,22 @@ public class QueuePatientsServiceTest {
     @Mock
     private QueuePatientsMapper queuePatientsMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
     private SecurityContext securityContext;
 
     @Mock
     private Authentication authentication;
 
+    @Before
+    public void wireCurrentActor() {
+        // @InjectMocks không dựng được resolver thật từ các mock repository
+        ReflectionTestUtils.setField(queuePatientsService, "currentActorResolver",
+                new CurrentActorResolver(accountRepository, staffRepository));
+    }
+
     @Test
     public void testCreateQueuePatients_Success() {
         // Setup mock data
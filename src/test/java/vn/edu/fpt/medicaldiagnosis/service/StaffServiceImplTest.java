@@ -0,0 +1,95 @@
+package vn.edu.fpt.medicaldiagnosis.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.config.PermissionFilter;
+import vn.edu.fpt.medicaldiagnosis.config.PermissionRouteTable;
+import vn.edu.fpt.medicaldiagnosis.config.PrincipalPermissionCache;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.Account;
+import vn.edu.fpt.medicaldiagnosis.entity.Permission;
+import vn.edu.fpt.medicaldiagnosis.entity.Role;
+import vn.edu.fpt.medicaldiagnosis.entity.Staff;
+import vn.edu.fpt.medicaldiagnosis.exception.ErrorCode;
+import vn.edu.fpt.medicaldiagnosis.mapper.StaffMapper;
+import vn.edu.fpt.medicaldiagnosis.repository.AccountRepository;
+import vn.edu.fpt.medicaldiagnosis.repository.EmailTaskRepository;
+import vn.edu.fpt.medicaldiagnosis.repository.RoleRepository;
+import vn.edu.fpt.medicaldiagnosis.repository.StaffRepository;
+import vn.edu.fpt.medicaldiagnosis.service.impl.CodeGeneratorService;
+import vn.edu.fpt.medicaldiagnosis.service.impl.StaffServiceImpl;
+
+public class StaffServiceImplTest {
+
+    private final StaffRepository staffRepository = mock(StaffRepository.class);
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final PrincipalPermissionCache permissionCache =
+            new PrincipalPermissionCache(accountRepository, new SimpleMeterRegistry(), 300_000, 100);
+    private final PermissionFilter permissionFilter =
+            new PermissionFilter(permissionCache, new PermissionRouteTable(), new ObjectMapper());
+
+    private StaffServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StaffServiceImpl(staffRepository, mock(StaffMapper.class), mock(AccountService.class),
+                mock(EmailService.class), mock(CodeGeneratorService.class), accountRepository,
+                mock(RoleRepository.class), mock(EmailTaskRepository.class), permissionCache);
+        TenantContext.setTenantId("t1");
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated("doctor", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        TenantContext.clear();
+    }
+
+    @Test
+    void deleteStaff_linkedAccountIsRejectedOnNextRequest() throws Exception {
+        Role role = Role.builder().name("DOCTOR")
+                .permissions(Set.of(Permission.builder().name("PATIENTS:READ").build())).build();
+        Account account = Account.builder().id("a1").username("doctor").roles(Set.of(role)).build();
+        Staff staff = Staff.builder().id("s1").accountId("a1").build();
+
+        when(staffRepository.findByIdAndDeletedAtIsNull("s1")).thenReturn(Optional.of(staff));
+        when(accountRepository.findByIdAndDeletedAtIsNull("a1")).thenReturn(Optional.of(account));
+        // Giống truy vấn thật: tài khoản đã xoá mềm không còn được tìm thấy
+        when(accountRepository.findByUsernameAndDeletedAtIsNull("doctor"))
+                .thenAnswer(invocation -> account.getDeletedAt() == null ? Optional.of(account) : Optional.empty());
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        MockFilterChain before = new MockFilterChain();
+        permissionFilter.doFilter(new MockHttpServletRequest("GET", "/medical-diagnosis/patients"),
+                new MockHttpServletResponse(), before);
+        assertNotNull(before.getRequest(), "request trước khi xoá phải được cho qua");
+
+        service.deleteStaff("s1");
+
+        MockFilterChain after = new MockFilterChain();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        permissionFilter.doFilter(new MockHttpServletRequest("GET", "/medical-diagnosis/patients"), response, after);
+
+        assertNull(after.getRequest());
+        assertEquals(ErrorCode.UNAUTHORIZED.getStatusCode().value(), response.getStatus());
+    }
+}
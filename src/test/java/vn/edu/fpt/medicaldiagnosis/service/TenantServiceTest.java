@@ -6,6 +6,7 @@ import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import vn.edu.fpt.medicaldiagnosis.config.DataSourceProvider;
 import vn.edu.fpt.medicaldiagnosis.config.TenantSchemaInitializer;
 import vn.edu.fpt.medicaldiagnosis.dto.request.TenantRequest;
@@ -16,10 +17,12 @@ import vn.edu.fpt.medicaldiagnosis.enums.Status;
 import vn.edu.fpt.medicaldiagnosis.exception.AppException;
 import vn.edu.fpt.medicaldiagnosis.repository.*;
 import vn.edu.fpt.medicaldiagnosis.service.impl.TenantServiceImpl;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Optional;
 import java.util.UUID;
@@ -50,9 +53,11 @@ public class TenantServiceTest {
                 cloudflareTaskRepository,
                 servicePackageRepository,
                 transactionHistoryRepository,
-                transactionHistoryService
+                transactionHistoryService,
+                new SimpleMeterRegistry()
         );
 
+        ReflectionTestUtils.setField(realService, "registryTtlMs", 60_000L);
         tenantServiceImpl = spy(realService);
     }
 
@@ -161,4 +166,30 @@ public class TenantServiceTest {
 
         tenantServiceImpl.deleteTenant("TENANT005");
     }
+
+    // ---------------- ACTIVE TENANT CACHE ----------------
+
+    @Test
+    public void testActiveTenants_LoadedOnceUntilInvalidated() throws Exception {
+        Connection mockConn = mock(Connection.class);
+        PreparedStatement mockStmt = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(controlDataSource.getConnection()).thenReturn(mockConn);
+        when(mockConn.prepareStatement(anyString())).thenReturn(mockStmt);
+        when(mockStmt.executeQuery()).thenAnswer(inv -> rs);
+        when(rs.next()).thenReturn(true, false, true, false);
+        when(rs.getString("code")).thenReturn("TENANT006");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1, tenantServiceImpl.getAllTenantsActive().size());
+            assertNotNull(tenantServiceImpl.getTenantByCodeActive("TENANT006"));
+        }
+        assertNull(tenantServiceImpl.getTenantByCodeActive("UNKNOWN"));
+        verify(mockStmt, times(1)).executeQuery();
+
+        tenantServiceImpl.activateTenant("TENANT007");
+        tenantServiceImpl.getAllTenantsActive();
+
+        verify(mockStmt, times(2)).executeQuery();
+    }
 }
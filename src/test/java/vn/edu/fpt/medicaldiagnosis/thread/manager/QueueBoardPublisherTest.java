@@ -0,0 +1,66 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
+import vn.edu.fpt.medicaldiagnosis.service.QueuePollingService;
+
+@ExtendWith(MockitoExtension.class)
+public class QueueBoardPublisherTest {
+
+    @Mock
+    private QueuePatientsService queuePatientsService;
+
+    @Mock
+    private QueuePollingService queuePollingService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private QueueBoardPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new QueueBoardPublisher(queuePatientsService, queuePollingService, meterRegistry, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void bulkDispatch_buildsBoardOnce() {
+        when(queuePollingService.hasListeners()).thenReturn(true);
+        when(queuePatientsService.getAllQueuePatients()).thenReturn(List.of());
+
+        for (int i = 0; i < 50; i++) {
+            publisher.requestPublish("tenant");
+        }
+
+        verify(queuePollingService, timeout(2000).times(1)).notifyListeners(anyList());
+        verify(queuePatientsService, times(1)).getAllQueuePatients();
+        assertEquals(49.0, meterRegistry.counter("queue.board.publish.coalesced").count());
+    }
+
+    @Test
+    void noListeners_skipsBuildingBoard() {
+        when(queuePollingService.hasListeners()).thenReturn(false);
+
+        publisher.requestPublish("tenant");
+
+        verify(queuePollingService, timeout(2000)).hasListeners();
+        verifyNoInteractions(queuePatientsService);
+    }
+}
@@ -0,0 +1,61 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.thread.event.QueuePatientChangedEvent;
+
+public class QueueBoardSnapshotCacheTest {
+
+    private final QueueBoardSnapshotCache cache = new QueueBoardSnapshotCache(60_000);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private List<QueuePatientsResponse> load() {
+        loads.incrementAndGet();
+        return List.of(QueuePatientsResponse.builder().id("qp-" + loads.get()).build());
+    }
+
+    @Test
+    void repeatedReads_hitDatabaseOnce() {
+        cache.get("t1", "q1", this::load);
+        cache.get("t1", "q1", this::load);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void queueEvent_invalidatesOnlyThatTenant() {
+        cache.get("t1", "q1", this::load);
+        cache.get("t2", "q1", this::load);
+
+        cache.onQueuePatientChanged(new QueuePatientChangedEvent("t1", null, false));
+        cache.get("t1", "q1", this::load);
+        cache.get("t2", "q1", this::load);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void invalidationDuringLoad_isNotCached() {
+        cache.get("t1", "q1", () -> {
+            cache.invalidate("t1");
+            return load();
+        });
+        cache.get("t1", "q1", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void newQueueId_bypassesPreviousDay() {
+        cache.get("t1", "q1", this::load);
+        cache.get("t1", "q2", this::load);
+
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,72 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.service.QueueOrderSequenceService;
+
+/**
+ * So sánh cấp queueOrder từng số và theo khối khi nhiều quầy tiếp đón cùng phân phòng.
+ * Bộ đếm giả lập một dòng queue_order_sequences: khoá theo phòng, mỗi lần tăng tốn ~200µs round-trip DB.
+ * Chạy: mvn test-compile rồi chạy main của class này với classpath test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class QueueOrderAllocatorBenchmark {
+
+    private static final int ROOMS = 3;
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    @Param({"1", "20"})
+    public int blockSize;
+
+    private final Map<String, Long> rows = new ConcurrentHashMap<>();
+    private QueueOrderAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        QueueOrderSequenceService sequence = (queueId, roomNumber, count) -> {
+            synchronized (rows) {
+                LockSupport.parkNanos(ROUND_TRIP_NANOS);
+                return rows.merge(queueId + ":" + roomNumber, (long) count, Long::sum);
+            }
+        };
+        allocator = new QueueOrderAllocator(sequence, blockSize);
+    }
+
+    @State(Scope.Thread)
+    public static class Desk {
+        @Setup
+        public void setUp() {
+            TenantContext.setTenantId("tenant");
+        }
+
+        @TearDown
+        public void tearDown() {
+            TenantContext.clear();
+        }
+    }
+
+    @Benchmark
+    public long nextOrder(Desk desk) {
+        return allocator.next("queue-1", ThreadLocalRandom.current().nextInt(ROOMS) + 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(QueueOrderAllocatorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
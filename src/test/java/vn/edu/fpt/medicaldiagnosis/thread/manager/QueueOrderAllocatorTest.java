@@ -0,0 +1,110 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.service.QueueOrderSequenceService;
+
+/**
+ * Mô phỏng nhiều quầy tiếp đón cùng phân phòng: bộ đếm giả lập một dòng queue_order_sequences (khoá theo phòng).
+ * Đo thông lượng: QueueOrderAllocatorBenchmark.
+ */
+public class QueueOrderAllocatorTest {
+
+    private static final String QUEUE_ID = "queue-1";
+    private static final int ROOMS = 3;
+    private static final int DESKS = 8;
+    private static final int ORDERS_PER_DESK = 25;
+
+    private final Map<String, Long> rows = new ConcurrentHashMap<>();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+
+    private final QueueOrderSequenceService fakeSequence = (queueId, roomNumber, count) -> {
+        roundTrips.incrementAndGet();
+        synchronized (rows) {
+            return rows.merge(queueId + ":" + roomNumber, (long) count, Long::sum);
+        }
+    };
+
+    @Test
+    void parallelDesks_neverReceiveDuplicateOrders() throws Exception {
+        QueueOrderAllocator allocator = new QueueOrderAllocator(fakeSequence, 1);
+
+        Map<Integer, Set<Long>> issued = runDesks(allocator);
+
+        for (int room = 1; room <= ROOMS; room++) {
+            Set<Long> orders = issued.get(room);
+            assertEquals(orders.size(), orders.stream().distinct().count());
+            // block-size = 1 → dãy số liên tục, không có khoảng trống
+            assertEquals(orders.size(), orders.stream().mapToLong(Long::longValue).max().orElse(0));
+        }
+        assertEquals(DESKS * ORDERS_PER_DESK, roundTrips.get());
+    }
+
+    @Test
+    void blockAllocation_isUniqueAndNeedsFewerRoundTrips() throws Exception {
+        QueueOrderAllocator allocator = new QueueOrderAllocator(fakeSequence, 20);
+
+        Map<Integer, Set<Long>> issued = runDesks(allocator);
+
+        int total = issued.values().stream().mapToInt(Set::size).sum();
+        assertEquals(DESKS * ORDERS_PER_DESK, total);
+        assertTrue(roundTrips.get() <= total / 20 + ROOMS,
+                "round trips: " + roundTrips.get());
+    }
+
+    private Map<Integer, Set<Long>> runDesks(QueueOrderAllocator allocator) throws Exception {
+        Map<Integer, Set<Long>> issued = new ConcurrentHashMap<>();
+        for (int room = 1; room <= ROOMS; room++) {
+            issued.put(room, ConcurrentHashMap.newKeySet());
+        }
+        AtomicInteger duplicates = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(DESKS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int desk = 0; desk < DESKS; desk++) {
+            final int seed = desk;
+            futures.add(pool.submit(() -> {
+                TenantContext.setTenantId("tenant");
+                try {
+                    start.await();
+                    for (int i = 0; i < ORDERS_PER_DESK; i++) {
+                        int room = (seed + i) % ROOMS + 1;
+                        if (!issued.get(room).add(allocator.next(QUEUE_ID, room))) {
+                            duplicates.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    TenantContext.clear();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdownNow();
+
+        assertEquals(0, duplicates.get());
+        return issued;
+    }
+}
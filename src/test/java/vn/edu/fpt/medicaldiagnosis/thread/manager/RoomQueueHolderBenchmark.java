@@ -0,0 +1,84 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.dto.response.DepartmentResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.response.SpecializationResponse;
+import vn.edu.fpt.medicaldiagnosis.enums.DepartmentType;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+
+/**
+ * Đo chi phí chọn phòng ít tải nhất + enqueue/remove khi nhiều quầy tiếp đón chạy đồng thời.
+ * Chạy: mvn test-compile rồi chạy main của class này với classpath test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class RoomQueueHolderBenchmark {
+
+    private static final int ROOMS = 10;
+    private static final int PATIENTS_PER_ROOM = 200;
+
+    private final AtomicLong ids = new AtomicLong();
+    private RoomWorkerScheduler scheduler;
+    private RoomQueueHolder holder;
+
+    @Setup
+    public void setUp() {
+        scheduler = new RoomWorkerScheduler("benchmark", 2, new SimpleMeterRegistry());
+        holder = new RoomQueueHolder(scheduler);
+
+        SpecializationResponse specialization = SpecializationResponse.builder().id("spec").build();
+        for (int room = 1; room <= ROOMS; room++) {
+            holder.initRoom(room, "tenant", null, null, null, null);
+            holder.registerDepartmentMetadata(room, DepartmentResponse.builder()
+                    .type(DepartmentType.CONSULTATION)
+                    .specialization(specialization)
+                    .build());
+            for (int i = 0; i < PATIENTS_PER_ROOM; i++) {
+                holder.enqueue(room, waiting());
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        holder.stopAllWorkers();
+        scheduler.shutdown();
+    }
+
+    private QueuePatientsResponse waiting() {
+        return QueuePatientsResponse.builder()
+                .id("p-" + ids.incrementAndGet())
+                .status(Status.WAITING.name())
+                .isPriority(false)
+                .queueOrder(1L)
+                .build();
+    }
+
+    @Benchmark
+    public Integer assignAndRelease() {
+        Integer room = holder.findLeastBusyRoom(DepartmentType.CONSULTATION, "spec");
+        QueuePatientsResponse patient = waiting();
+        holder.enqueue(room, patient);
+        // Giữ kích thước hàng đợi ổn định giữa các lần đo
+        holder.remove(room, patient.getId());
+        return room;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RoomQueueHolderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
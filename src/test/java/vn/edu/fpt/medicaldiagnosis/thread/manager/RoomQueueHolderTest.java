@@ -0,0 +1,153 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.dto.response.DepartmentResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.response.SpecializationResponse;
+import vn.edu.fpt.medicaldiagnosis.enums.DepartmentType;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
+
+public class RoomQueueHolderTest {
+
+    private static final int ROOMS = 10;
+    private static final int THREADS = 8;
+    private static final int PATIENTS_PER_THREAD = 100;
+
+    private RoomWorkerScheduler scheduler;
+    private RoomQueueHolder holder;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new RoomWorkerScheduler("shared", 2, new SimpleMeterRegistry());
+        holder = new RoomQueueHolder(scheduler);
+
+        SpecializationResponse specialization = SpecializationResponse.builder().id("spec").build();
+        for (int room = 1; room <= ROOMS; room++) {
+            holder.initRoom(room, "tenant", null, null, null, null);
+            holder.registerDepartmentMetadata(room, DepartmentResponse.builder()
+                    .type(DepartmentType.CONSULTATION)
+                    .specialization(specialization)
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        holder.stopAllWorkers();
+        scheduler.shutdown();
+    }
+
+    private QueuePatientsResponse waiting(String id) {
+        return QueuePatientsResponse.builder()
+                .id(id)
+                .status(Status.WAITING.name())
+                .isPriority(false)
+                .queueOrder(1L)
+                .build();
+    }
+
+    @Test
+    void concurrentEnqueueAndLeastBusy_balancesRoomsWithoutDuplicates() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Exception> errors = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < PATIENTS_PER_THREAD; i++) {
+                        Integer room = holder.findLeastBusyRoom(DepartmentType.CONSULTATION, "spec");
+                        QueuePatientsResponse patient = waiting(thread + "-" + i);
+                        holder.enqueue(room, patient);
+                        // Enqueue trùng phải bị bỏ qua
+                        holder.enqueue(room, waiting(thread + "-" + i));
+                    }
+                } catch (Exception e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertTrue(errors.isEmpty(), () -> "Errors: " + errors);
+
+        int total = 0;
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int room = 1; room <= ROOMS; room++) {
+            int size = holder.getQueue(room).size();
+            assertEquals(size, holder.getQueue(room).activeCount());
+            total += size;
+            min = Math.min(min, size);
+            max = Math.max(max, size);
+        }
+        assertEquals(THREADS * PATIENTS_PER_THREAD, total);
+        // Phân bổ gần như đều giữa các phòng (sai lệch do đọc không khoá dưới tải đồng thời)
+        assertTrue(max - min <= 2 * THREADS, () -> "Unbalanced rooms");
+    }
+
+    @Test
+    void refreshQueue_reloadsRoomInOneQueryAndDropsDeletedEntries() {
+        holder.enqueue(1, waiting("a"));
+        holder.enqueue(1, waiting("b"));
+        holder.enqueue(1, waiting("c"));
+
+        QueuePatientsService service = mock(QueuePatientsService.class);
+        QueuePatientsResponse calling = waiting("a");
+        calling.setStatus(Status.CALLING.name());
+        calling.setMessage("Mời bệnh nhân");
+        when(service.getQueuePatientsByIds(anyCollection())).thenReturn(List.of(calling, waiting("b")));
+
+        holder.refreshQueue(1, service);
+
+        verify(service, times(1)).getQueuePatientsByIds(anyCollection());
+        RoomQueue queue = holder.getQueue(1);
+        assertEquals(2, queue.size());
+        assertFalse(queue.contains("c"));
+        assertEquals("a", queue.peek().getId());
+        assertEquals(1, queue.countByStatus(Status.CALLING));
+    }
+
+    @Test
+    void enqueueAndApplyChange_keepOwnCopies() {
+        QueuePatientsResponse assigned = waiting("a");
+        holder.enqueue(1, assigned);
+        QueuePatientsResponse queued = holder.getQueue(1).get("a");
+        assertNotSame(assigned, queued);
+        assertNull(assigned.getAssignedTime());
+
+        QueuePatientsResponse change = waiting("a");
+        change.setRoomNumber("1");
+        change.setStatus(Status.CALLING.name());
+        holder.applyChange(change, false);
+
+        // Payload của sự kiện không bị sửa; queue giữ bản sao mang assignedTime cũ
+        assertNull(change.getAssignedTime());
+        QueuePatientsResponse updated = holder.getQueue(1).get("a");
+        assertNotSame(change, updated);
+        assertEquals(queued.getAssignedTime(), updated.getAssignedTime());
+        assertEquals(Status.CALLING.name(), updated.getStatus());
+    }
+}
@@ -0,0 +1,66 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+
+public class RoomQueueTest {
+
+    private QueuePatientsResponse patient(String id, Status status, boolean priority, long order) {
+        return QueuePatientsResponse.builder()
+                .id(id)
+                .status(status.name())
+                .isPriority(priority)
+                .queueOrder(order)
+                .build();
+    }
+
+    @Test
+    void offer_rejectsDuplicateId() {
+        RoomQueue queue = new RoomQueue();
+
+        assertTrue(queue.offer(patient("1", Status.WAITING, false, 1)));
+        assertFalse(queue.offer(patient("1", Status.WAITING, false, 1)));
+
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.activeCount());
+    }
+
+    @Test
+    void peek_followsPriorityComparator() {
+        RoomQueue queue = new RoomQueue();
+        queue.offer(patient("waiting-2", Status.WAITING, false, 2));
+        queue.offer(patient("waiting-1", Status.WAITING, false, 1));
+        queue.offer(patient("priority", Status.WAITING, true, 5));
+        queue.offer(patient("done", Status.DONE, true, 0));
+
+        assertEquals("priority", queue.peek().getId());
+
+        queue.update(patient("waiting-2", Status.IN_PROGRESS, false, 2));
+
+        assertEquals("waiting-2", queue.peek().getId());
+    }
+
+    @Test
+    void counters_trackStatusChanges() {
+        RoomQueue queue = new RoomQueue();
+        queue.offer(patient("1", Status.WAITING, false, 1));
+        queue.offer(patient("2", Status.CALLING, false, 2));
+        queue.offer(patient("3", Status.DONE, false, 3));
+
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.activeCount());
+
+        queue.update(patient("2", Status.DONE, false, 2));
+        assertEquals(1, queue.activeCount());
+        assertEquals(2, queue.countByStatus(Status.DONE));
+
+        queue.remove("1");
+        assertEquals(0, queue.activeCount());
+        assertEquals(2, queue.size());
+        assertNull(queue.remove("1"));
+    }
+}
@@ -0,0 +1,93 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.enums.WorkStatus;
+import vn.edu.fpt.medicaldiagnosis.repository.WorkScheduleRepository;
+import vn.edu.fpt.medicaldiagnosis.thread.event.WorkScheduleChangedEvent;
+
+public class ShiftRosterCacheTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 10);
+
+    private final WorkScheduleRepository repository = mock(WorkScheduleRepository.class);
+
+    @BeforeEach
+    void setUp() {
+        TenantContext.setTenantId("t1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        TenantContext.clear();
+    }
+
+    private ShiftRosterCache cacheAt(LocalTime time) {
+        Clock clock = Clock.fixed(LocalDateTime.of(TODAY, time).toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        return new ShiftRosterCache(repository, 300_000, clock);
+    }
+
+    private static Object[] row(String staffId, LocalDate date, String start, String end) {
+        return new Object[]{staffId, date, LocalTime.parse(start), LocalTime.parse(end)};
+    }
+
+    @Test
+    void onShift_includesEarlyWindow() {
+        ShiftRosterCache cache = cacheAt(LocalTime.of(9, 0));
+        when(repository.findRosterRows(any(), any(), any())).thenReturn(List.of(
+                row("working", TODAY, "08:00", "12:00"),
+                row("early", TODAY, "09:10", "12:00"),
+                row("tooEarly", TODAY, "09:20", "12:00"),
+                row("finished", TODAY, "06:00", "08:59")));
+
+        assertTrue(cache.isOnShift("working"));
+        assertTrue(cache.isOnShift("early"));
+        assertFalse(cache.isOnShift("tooEarly"));
+        assertFalse(cache.isOnShift("finished"));
+        assertFalse(cache.isOnShift("unknown"));
+
+        verify(repository, times(1)).findRosterRows(TODAY.minusDays(1), TODAY, WorkStatus.ON_LEAVE);
+    }
+
+    @Test
+    void onShift_coversOvernightShiftFromYesterday() {
+        ShiftRosterCache cache = cacheAt(LocalTime.of(2, 0));
+        when(repository.findRosterRows(any(), any(), any())).thenReturn(List.of(
+                row("night", TODAY.minusDays(1), "22:00", "06:00"),
+                row("evening", TODAY.minusDays(1), "17:00", "21:00")));
+
+        assertTrue(cache.isOnShift("night"));
+        assertFalse(cache.isOnShift("evening"));
+    }
+
+    @Test
+    void scheduleChange_rebuildsRosterForThatTenantOnly() {
+        ShiftRosterCache cache = cacheAt(LocalTime.of(9, 0));
+        when(repository.findRosterRows(any(), any(), any()))
+                .thenReturn(List.<Object[]>of(row("s1", TODAY, "08:00", "12:00")))
+                .thenReturn(List.of());
+
+        assertTrue(cache.isOnShift("s1"));
+
+        cache.onWorkScheduleChanged(new WorkScheduleChangedEvent("other"));
+        assertTrue(cache.isOnShift("s1"));
+
+        cache.onWorkScheduleChanged(new WorkScheduleChangedEvent("t1"));
+        assertFalse(cache.isOnShift("s1"));
+        verify(repository, times(2)).findRosterRows(any(), any(), any());
+    }
+}
@@ -0,0 +1,122 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.edu.fpt.medicaldiagnosis.context.TenantContext;
+import vn.edu.fpt.medicaldiagnosis.entity.Tenant;
+import vn.edu.fpt.medicaldiagnosis.service.TenantService;
+
+public class TenantFanOutExecutorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final JobLeaseManager jobLeaseManager = mock(JobLeaseManager.class);
+    private final TenantShardManager tenantShardManager = mock(TenantShardManager.class);
+    private final TenantFanOutExecutor executor = new TenantFanOutExecutor(
+            mock(TenantService.class), jobLeaseManager, tenantShardManager, registry, 8, 3, 60_000);
+
+    private static List<Tenant> tenants(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Tenant.builder().code("t" + i).build())
+                .toList();
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(jobLeaseManager.tryAcquire(anyString())).thenReturn(true);
+        when(tenantShardManager.owns(anyString())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void runsEveryTenantWithItsOwnContext_andBoundedParallelism() {
+        Map<String, String> seenContext = new ConcurrentHashMap<>();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        executor.forEachTenant("test", tenants(10), 5_000, tenant -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            seenContext.put(tenant.getCode(), TenantContext.getTenantId());
+            sleepQuietly(20);
+            inFlight.decrementAndGet();
+        });
+
+        assertEquals(10, seenContext.size());
+        seenContext.forEach((code, context) -> assertEquals(code, context));
+        assertTrue(maxInFlight.get() <= 3, "max in flight: " + maxInFlight.get());
+        assertEquals(10.0, registry.get("tenant.job.runs").tag("outcome", "success").counter().count());
+    }
+
+    @Test
+    void slowTenant_timesOutWithoutDelayingOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+
+        long begin = System.nanoTime();
+        executor.forEachTenant("test", tenants(6), 300, tenant -> {
+            if ("t0".equals(tenant.getCode())) {
+                try {
+                    release.await(); // DB treo: chỉ thoát khi bị interrupt
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return;
+            }
+            completed.incrementAndGet();
+        });
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        assertEquals(5, completed.get());
+        assertTrue(elapsedMs < 2_000, "elapsed: " + elapsedMs);
+        assertEquals(1.0, registry.get("tenant.job.runs").tag("outcome", "timeout").counter().count());
+    }
+
+    @Test
+    void tenantsLeasedByAnotherNode_areSkipped() {
+        when(jobLeaseManager.tryAcquire("test:t1")).thenReturn(false);
+        Map<String, String> seen = new ConcurrentHashMap<>();
+
+        executor.forEachTenant("test", tenants(3), 5_000, tenant -> seen.put(tenant.getCode(), tenant.getCode()));
+
+        assertEquals(Set.of("t0", "t2"), seen.keySet());
+        assertEquals(1.0, registry.get("tenant.job.runs").tag("outcome", "remote").counter().count());
+    }
+
+    @Test
+    void tenantsOwnedByAnotherShard_areSkippedAndTheirLeaseReleased() {
+        when(tenantShardManager.owns("t2")).thenReturn(false);
+        Map<String, String> seen = new ConcurrentHashMap<>();
+
+        executor.forEachTenant("test", tenants(3), 5_000, tenant -> seen.put(tenant.getCode(), tenant.getCode()));
+
+        assertEquals(Set.of("t0", "t1"), seen.keySet());
+        verify(jobLeaseManager).release("test:t2");
+        verify(jobLeaseManager, never()).tryAcquire("test:t2");
+    }
+
+    private static void sleepQuietly(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
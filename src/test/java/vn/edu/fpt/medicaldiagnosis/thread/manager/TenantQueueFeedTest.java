@@ -0,0 +1,107 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueueDeltaResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+
+public class TenantQueueFeedTest {
+
+    private static QueuePatientsResponse patient(String id, String room, String status) {
+        return QueuePatientsResponse.builder().id(id).roomNumber(room).status(status).build();
+    }
+
+    @Test
+    void deltaSince_returnsOnlyLatestChangePerPatient() {
+        TenantQueueFeed feed = new TenantQueueFeed(100);
+        long start = feed.version();
+
+        feed.append(patient("a", "1", "WAITING"), false);
+        feed.append(patient("b", "2", "WAITING"), false);
+        feed.append(patient("a", "1", "CALLING"), false);
+        feed.append(patient("c", "1", "WAITING"), true);
+
+        QueueDeltaResponse delta = feed.deltaSince(start, null);
+
+        assertFalse(delta.isResyncRequired());
+        assertEquals(start + 4, delta.getVersion());
+        assertEquals(List.of("b", "a"), delta.getChanges().stream().map(QueuePatientsResponse::getId).toList());
+        assertEquals("CALLING", delta.getChanges().get(1).getStatus());
+        assertEquals(List.of("c"), delta.getRemovedIds());
+    }
+
+    @Test
+    void deltaSince_filtersByRoomAndWaitsWhenNothingChanged() {
+        TenantQueueFeed feed = new TenantQueueFeed(100);
+        long start = feed.version();
+
+        feed.append(patient("a", "1", "WAITING"), false);
+
+        assertNull(feed.deltaSince(start, "2"));
+        assertNull(feed.deltaSince(feed.version(), null));
+        assertEquals(1, feed.deltaSince(start, "1").getChanges().size());
+    }
+
+    @Test
+    void deltaSince_removesPatientFromPreviousRoomAfterTransfer() {
+        TenantQueueFeed feed = new TenantQueueFeed(100);
+        feed.append(patient("a", "1", "WAITING"), false);
+        long seenByRoom1 = feed.version();
+
+        feed.append(patient("a", "2", "WAITING"), false);
+
+        QueueDeltaResponse room1 = feed.deltaSince(seenByRoom1, "1");
+        assertEquals(List.of(), room1.getChanges());
+        assertEquals(List.of("a"), room1.getRemovedIds());
+
+        QueueDeltaResponse room2 = feed.deltaSince(seenByRoom1, "2");
+        assertEquals("2", room2.getChanges().get(0).getRoomNumber());
+        assertEquals(List.of(), room2.getRemovedIds());
+    }
+
+    @Test
+    void deltaSince_neverReturnsAnOlderRoomChangeAsCurrent() {
+        TenantQueueFeed feed = new TenantQueueFeed(100);
+        long start = feed.version();
+
+        feed.append(patient("a", "1", "WAITING"), false);
+        feed.append(patient("a", "2", "CALLING"), false);
+
+        QueueDeltaResponse room1 = feed.deltaSince(start, "1");
+        assertTrue(room1.getChanges().isEmpty());
+        assertEquals(List.of("a"), room1.getRemovedIds());
+    }
+
+    @Test
+    void append_keepsHistoryWhenTheOriginalIsMutatedLater() {
+        TenantQueueFeed feed = new TenantQueueFeed(100);
+        long start = feed.version();
+        QueuePatientsResponse patient = patient("a", "1", "WAITING");
+
+        feed.append(patient, false);
+        patient.setStatus("CALLING");
+        patient.setRoomNumber("2");
+
+        QueueDeltaResponse delta = feed.deltaSince(start, "1");
+        assertEquals("WAITING", delta.getChanges().get(0).getStatus());
+        assertEquals("1", delta.getChanges().get(0).getRoomNumber());
+    }
+
+    @Test
+    void deltaSince_requiresResyncWhenClientIsTooFarBehind() {
+        TenantQueueFeed feed = new TenantQueueFeed(2);
+        long start = feed.version();
+
+        feed.append(patient("a", "1", "WAITING"), false);
+        feed.append(patient("b", "1", "WAITING"), false);
+        feed.append(patient("c", "1", "WAITING"), false);
+
+        assertTrue(feed.deltaSince(start, null).isResyncRequired());
+        assertTrue(feed.deltaSince(0, null).isResyncRequired());
+        assertFalse(feed.deltaSince(start + 1, null).isResyncRequired());
+    }
+}
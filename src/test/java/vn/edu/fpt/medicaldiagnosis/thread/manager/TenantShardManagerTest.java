@@ -0,0 +1,50 @@
+package vn.edu.fpt.medicaldiagnosis.thread.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantShardManager.ClusterNode;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantShardManager.Ring;
+
+public class TenantShardManagerTest {
+
+    private static final List<String> TENANTS = IntStream.range(0, 2000).mapToObj(i -> "tenant" + i).toList();
+
+    private static ClusterNode node(String id) {
+        return new ClusterNode(id, null);
+    }
+
+    @Test
+    void tenantsAreSpreadAcrossNodes() {
+        Ring ring = Ring.of(List.of(node("a"), node("b"), node("c")), 64);
+
+        Map<String, Integer> counts = new HashMap<>();
+        TENANTS.forEach(t -> counts.merge(ring.ownerOf(t).nodeId(), 1, Integer::sum));
+
+        assertEquals(3, counts.size());
+        counts.values().forEach(c -> assertTrue(c > TENANTS.size() / 6, "lệch quá nhiều: " + counts));
+    }
+
+    @Test
+    void nodeJoin_movesOnlyTenantsToTheNewNode() {
+        Ring before = Ring.of(List.of(node("a"), node("b"), node("c")), 64);
+        Ring after = Ring.of(List.of(node("a"), node("b"), node("c"), node("d")), 64);
+
+        long moved = 0;
+        for (String tenant : TENANTS) {
+            String from = before.ownerOf(tenant).nodeId();
+            String to = after.ownerOf(tenant).nodeId();
+            if (!from.equals(to)) {
+                assertEquals("d", to);
+                moved++;
+            }
+        }
+        assertTrue(moved < TENANTS.size() / 2, "moved: " + moved);
+    }
+}
@@ -0,0 +1,83 @@
+package vn.edu.fpt.medicaldiagnosis.thread.worker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueueDeltaResponse;
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.TenantQueueFeed;
+
+public class QueueStreamClientTest {
+
+    /** Executor chạy tay để kiểm soát thời điểm ghi (mô phỏng client chậm). */
+    private final Deque<Runnable> pending = new ArrayDeque<>();
+    private final Executor manualExecutor = pending::add;
+
+    private final List<Object> sent = new ArrayList<>();
+
+    private final SseEmitter emitter = new SseEmitter() {
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .map(data -> data.getData())
+                    .filter(QueueDeltaResponse.class::isInstance)
+                    .forEach(sent::add);
+        }
+    };
+
+    private static QueuePatientsResponse patient(String id) {
+        return QueuePatientsResponse.builder().id(id).roomNumber("1").status("WAITING").build();
+    }
+
+    @Test
+    void signalsWhileBusy_areCoalescedIntoOneDelta() {
+        TenantQueueFeed feed = new TenantQueueFeed(100);
+        QueueStreamClient client = new QueueStreamClient("tenant", null, emitter, feed,
+                feed.version(), manualExecutor, c -> { });
+
+        for (String id : List.of("a", "b", "c")) {
+            feed.append(patient(id), false);
+            client.signal();
+        }
+
+        assertEquals(1, pending.size());
+        pending.poll().run();
+
+        assertEquals(1, sent.size());
+        QueueDeltaResponse delta = (QueueDeltaResponse) sent.get(0);
+        assertEquals(feed.version(), delta.getVersion());
+        assertEquals(3, delta.getChanges().size());
+    }
+
+    @Test
+    void failedWrite_closesClient() {
+        TenantQueueFeed feed = new TenantQueueFeed(100);
+        AtomicBoolean closed = new AtomicBoolean();
+        SseEmitter broken = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        QueueStreamClient client = new QueueStreamClient("tenant", null, broken, feed,
+                feed.version(), manualExecutor, c -> closed.set(true));
+
+        feed.append(patient("a"), false);
+        client.signal();
+        pending.poll().run();
+
+        assertTrue(closed.get());
+        client.signal();
+        assertTrue(pending.isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package vn.edu.fpt.medicaldiagnosis.thread.worker;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+import vn.edu.fpt.medicaldiagnosis.repository.PatientRepository;
+import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.RoomQueue;
+
+/**
+ * Đếm số truy vấn DB mà các phòng rảnh (chỉ có bệnh nhân WAITING) phát sinh mỗi tick.
+ * Mỗi lần đo đánh thức RoomWorker của mọi phòng (trường hợp xấu nhất, giống vòng poll trước đây)
+ * và chạy đồng bộ trên executor trực tiếp; QueuePatientsService / PatientRepository là proxy đếm mọi lời gọi.
+ * Kết quả mong đợi: dbCalls = 0 với mọi số phòng (trước đây mỗi phòng có bệnh nhân đọc lại DB mỗi vòng 500ms).
+ * Chạy: mvn test-compile rồi chạy main của class này với classpath test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomWorkerIdleBenchmark {
+
+    private static final int PATIENTS_PER_ROOM = 50;
+
+    @Param({"10", "100"})
+    public int rooms;
+
+    private final AtomicLong dbCalls = new AtomicLong();
+    private final List<RoomWorker> workers = new ArrayList<>();
+
+    /** Số truy vấn DB (tổng trong mỗi iteration) — so với số tick (ops) để ra số truy vấn mỗi tick. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long dbCalls;
+    }
+
+    @Setup
+    public void setUp() {
+        QueuePatientsService queuePatientsService = counting(QueuePatientsService.class);
+        PatientRepository patientRepository = counting(PatientRepository.class);
+        for (int room = 1; room <= rooms; room++) {
+            RoomQueue queue = new RoomQueue();
+            for (int i = 0; i < PATIENTS_PER_ROOM; i++) {
+                queue.offer(QueuePatientsResponse.builder()
+                        .id(room + "-" + i)
+                        .patientId("p-" + room + "-" + i)
+                        .status(Status.WAITING.name())
+                        .isPriority(false)
+                        .queueOrder((long) i + 1)
+                        .build());
+            }
+            workers.add(new RoomWorker(room, "tenant", queue, queuePatientsService, null, patientRepository, Runnable::run));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        workers.forEach(RoomWorker::stopWorker);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T counting(Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) return method.invoke(this, args);
+            dbCalls.incrementAndGet();
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void idleTick(Counters counters) {
+        long before = dbCalls.get();
+        for (RoomWorker worker : workers) {
+            worker.signal();
+        }
+        counters.dbCalls += dbCalls.get() - before;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RoomWorkerIdleBenchmark.class.getSimpleName()).build()).run();
+    }
+}
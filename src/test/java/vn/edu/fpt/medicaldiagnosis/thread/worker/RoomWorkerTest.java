@@ -0,0 +1,98 @@
+package vn.edu.fpt.medicaldiagnosis.thread.worker;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import vn.edu.fpt.medicaldiagnosis.dto.response.QueuePatientsResponse;
+import vn.edu.fpt.medicaldiagnosis.enums.Status;
+import vn.edu.fpt.medicaldiagnosis.repository.PatientRepository;
+import vn.edu.fpt.medicaldiagnosis.service.QueuePatientsService;
+import vn.edu.fpt.medicaldiagnosis.service.TextToSpeechService;
+import vn.edu.fpt.medicaldiagnosis.thread.manager.RoomQueue;
+
+@ExtendWith(MockitoExtension.class)
+public class RoomWorkerTest {
+
+    @Mock
+    private QueuePatientsService queuePatientsService;
+
+    @Mock
+    private PatientRepository patientRepository;
+
+    @Mock
+    private TextToSpeechService textToSpeechService;
+
+    private final RoomQueue queue = new RoomQueue();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private RoomWorker worker;
+
+    @AfterEach
+    void tearDown() {
+        if (worker != null) worker.stopWorker();
+        executor.shutdownNow();
+    }
+
+    private void startWorker() {
+        worker = new RoomWorker(1, "tenant", queue, queuePatientsService, textToSpeechService, patientRepository, executor);
+    }
+
+    private QueuePatientsResponse patient(String id, String status) {
+        return QueuePatientsResponse.builder()
+                .id(id)
+                .patientId("p-" + id)
+                .status(status)
+                .queueOrder(1L)
+                .build();
+    }
+
+    @Test
+    void idleRoom_doesNotQueryDatabase() throws InterruptedException {
+        queue.offer(patient("1", Status.WAITING.name()));
+        startWorker();
+        worker.signal();
+
+        Thread.sleep(1500);
+
+        verifyNoInteractions(queuePatientsService, patientRepository);
+    }
+
+    @Test
+    void callingPatient_isProcessedOncePerSignal() throws InterruptedException {
+        when(patientRepository.findByIdAndDeletedAtIsNull(anyString())).thenReturn(Optional.empty());
+        startWorker();
+
+        synchronized (queue) {
+            queue.offer(patient("1", Status.CALLING.name()));
+        }
+        worker.signal();
+
+        verify(queuePatientsService, timeout(1000).times(1)).updateQueuePatients(eq("1"), any());
+
+        // Sự kiện cập nhật message đã được áp dụng → worker không gọi lại DB
+        QueuePatientsResponse withMessage = patient("1", Status.CALLING.name());
+        withMessage.setMessage("Mời bệnh nhân Không rõ tên vào phòng số 1");
+        synchronized (queue) {
+            queue.clear();
+            queue.offer(withMessage);
+        }
+        worker.signal();
+        Thread.sleep(500);
+
+        verify(patientRepository, times(1)).findByIdAndDeletedAtIsNull(anyString());
+        verify(queuePatientsService, times(1)).updateQueuePatients(anyString(), any());
+    }
+}